@@ -0,0 +1,111 @@
+package com.erichamion.racetrack;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Generates the tracks used by the benchmarks, so that the benchmarks
+ * don't depend on any track files. Every track is a square ring of open
+ * track around a solid block of wall, with a finish line across the top
+ * of the ring that has to be crossed moving left, and with the players
+ * lined up just past the finish line. Reaching the finish
+ * requires a full lap.
+ *
+ * Created by me on 10/16/26.
+ */
+public final class BenchmarkTracks {
+    public static final String SMALL = "small";
+    public static final String MEDIUM = "medium";
+    public static final String HUGE = "huge";
+
+    private BenchmarkTracks() {}
+
+    /**
+     * Create one of the standard benchmark tracks.
+     * @param size SMALL, MEDIUM, or HUGE
+     * @param playerCount The number of players. Crowds of more than
+     *                    9 need a track big enough to line them up.
+     * @return A new Track, with its shared distance fields already built
+     */
+    public static Track create(final String size, final int playerCount) {
+        Track track;
+        try {
+            track = TrackLoader.load(createText(size, playerCount).getBytes(StandardCharsets.UTF_8));
+        } catch (InvalidTrackFormatException e) {
+            throw new IllegalStateException(e);
+        }
+        track.getFinishDistances();
+        track.getFinishSteps();
+        return track;
+    }
+
+    /**
+     * Create the text of one of the standard benchmark tracks.
+     * @param size SMALL, MEDIUM, or HUGE
+     * @param playerCount The number of players. Crowds of more than
+     *                    9 need a track big enough to line them up.
+     * @return The track data, in the format of a track file
+     */
+    public static String createText(final String size, final int playerCount) {
+        switch (size) {
+            case SMALL:
+                return createRingText(30, 8, playerCount);
+            case MEDIUM:
+                return createRingText(150, 30, playerCount);
+            case HUGE:
+                return createRingText(600, 100, playerCount);
+            default:
+                throw new IllegalArgumentException("Unknown track size: " + size);
+        }
+    }
+
+    /**
+     * Create the text of a ring track.
+     * @param sideLength The width and height of the track, including the
+     *                   outer walls
+     * @param ringWidth The distance from the outer edge of the track to
+     *                  the inner block of wall
+     * @param playerCount The number of players
+     * @return The track data, in the format of a track file
+     */
+    public static String createRingText(final int sideLength, final int ringWidth, final int playerCount) {
+        char[][] grid = new char[sideLength][sideLength];
+        for (int row = 0; row < sideLength; row++) {
+            for (int col = 0; col < sideLength; col++) {
+                boolean isBorder = row == 0 || col == 0 || row == sideLength - 1 || col == sideLength - 1;
+                boolean isInner = row >= ringWidth && row < sideLength - ringWidth
+                        && col >= ringWidth && col < sideLength - ringWidth;
+                grid[row][col] = (isBorder || isInner) ? '#' : ' ';
+            }
+        }
+
+        int finishCol = sideLength / 2;
+        for (int row = 1; row < ringWidth; row++) {
+            grid[row][finishCol] = '<';
+        }
+        if (playerCount <= 9) {
+            // Players start in a diagonal line, so none of them is directly
+            // behind another.
+            for (int player = 0; player < playerCount; player++) {
+                int row = 1 + (player * (ringWidth - 2)) / playerCount;
+                grid[row][finishCol - 2 - player] = Track.getPlayerSymbol(player);
+            }
+        } else {
+            // Crowds start in columns behind the finish line, with an
+            // empty column between each pair of columns.
+            int rowsPerColumn = ringWidth - 2;
+            if ((playerCount + rowsPerColumn - 1) / rowsPerColumn * 2 > finishCol - 2) {
+                throw new IllegalArgumentException("Too many players for the track: " + playerCount);
+            }
+            for (int player = 0; player < playerCount; player++) {
+                int row = 1 + player % rowsPerColumn;
+                grid[row][finishCol - 2 - 2 * (player / rowsPerColumn)] = '@';
+            }
+        }
+
+        StringBuilder text = new StringBuilder();
+        for (char[] line : grid) {
+            text.append(line).append('\n');
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,54 @@
+package com.erichamion.racetrack;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks races with thousands of cars on the huge track, where every
+ * collision check and turn change has to stay independent of the number
+ * of players.
+ *
+ * Created by me on 10/16/26.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class CrowdBenchmark {
+    @Param({"1000", "5000"})
+    public int mPlayerCount;
+
+    private Track mTrack;
+    private final GridPoint mAcceleration = new GridPoint(0, -1);
+
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        mTrack = BenchmarkTracks.create(BenchmarkTracks.HUGE, mPlayerCount);
+    }
+
+    /**
+     * Copies the starting track and moves every player once.
+     */
+    @Benchmark
+    public Track doPlayerTurnRound() {
+        Track track = new Track(mTrack);
+        for (int player = 0; player < mPlayerCount; player++) {
+            track.doPlayerTurn(mAcceleration);
+        }
+        return track;
+    }
+
+    /**
+     * Checks the space in front of every player for other players.
+     */
+    @Benchmark
+    public int collisionChecks() {
+        int result = 0;
+        for (int player = 0; player < mPlayerCount; player++) {
+            GridPoint position = mTrack.getPlayerPos(player);
+            if (mTrack.isOccupiedByOtherPlayer(player, position.getRow(), position.getCol() - 2)) result++;
+        }
+        return result;
+    }
+}
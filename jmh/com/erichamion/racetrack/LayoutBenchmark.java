@@ -0,0 +1,64 @@
+package com.erichamion.racetrack;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the one-time work of preparing a track: reading the track
+ * data, and building the distance fields and cluster graph that Track
+ * shares among all planners and copies.
+ *
+ * Created by me on 10/16/26.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class LayoutBenchmark {
+    @Param({BenchmarkTracks.SMALL, BenchmarkTracks.MEDIUM, BenchmarkTracks.HUGE})
+    public String mTrackSize;
+
+    private Track mTrack;
+    private String mTrackText;
+    private byte[] mTrackBytes;
+
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        mTrack = BenchmarkTracks.create(mTrackSize, 1);
+        mTrackText = BenchmarkTracks.createText(mTrackSize, 1);
+        mTrackBytes = mTrackText.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public Track loadWithScanner() throws InvalidTrackFormatException {
+        return new Track(new Scanner(mTrackText));
+    }
+
+    @Benchmark
+    public Track loadWithTrackLoader() throws InvalidTrackFormatException {
+        return TrackLoader.load(mTrackBytes);
+    }
+
+    @Benchmark
+    public DistanceField createCostField() {
+        return DistanceField.createCostField(mTrack);
+    }
+
+    @Benchmark
+    public DistanceField createStepField() {
+        return DistanceField.createStepField(mTrack);
+    }
+
+    @Benchmark
+    public ClusterGraph createClusterGraph() {
+        return new ClusterGraph(mTrack);
+    }
+
+    @Benchmark
+    public JumpTable createJumpTable() {
+        return new JumpTable(mTrack);
+    }
+}
@@ -0,0 +1,191 @@
+package com.erichamion.racetrack;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the computer player: finding a path around the track, and
+ * choosing a single move along that path.
+ *
+ * Created by me on 10/16/26.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class PlannerBenchmark {
+    private static final int MONTE_CARLO_ITERATIONS = 1000;
+
+    @Param({BenchmarkTracks.SMALL, BenchmarkTracks.MEDIUM, BenchmarkTracks.HUGE})
+    public String mTrackSize;
+
+    @Param({"1", "4", "9"})
+    public int mPlayerCount;
+
+    private Track mTrack;
+    private PlayerController[] mControllers;
+    private PlayerController[] mMonteCarloPlayers;
+    private int mNextPlayer = 0;
+    // The game played by pathFollowerPlayTurn()
+    private Track mGameTrack;
+    private PlayerController[] mGameControllers;
+    private int mGameTurn;
+
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        mTrack = BenchmarkTracks.create(mTrackSize, mPlayerCount);
+        mTrack.getClusterGraph();
+        mTrack.getJumpTable();
+        mControllers = new PlayerController[mPlayerCount];
+        mMonteCarloPlayers = new PlayerController[mPlayerCount];
+        PlayerController.Factory monteCarloFactory = MonteCarloPlayer.createFactory(MonteCarloPlayer.NO_TIME_LIMIT,
+                MONTE_CARLO_ITERATIONS, 1);
+        for (int player = 0; player < mPlayerCount; player++) {
+            mControllers[player] = PathFollower.FACTORY.create(mTrack, player, player);
+            mMonteCarloPlayers[player] = monteCarloFactory.create(mTrack, player, player);
+        }
+        startGame();
+    }
+
+    /**
+     * Plans a path for one player and takes every waypoint, since
+     * PathFinder finds waypoints only as they are asked for. The track's
+     * shared distance fields are already built, as they are for every
+     * player but the first in a real game.
+     */
+    @Benchmark
+    public int pathFinderConstruction() {
+        int player = nextPlayer();
+        return countWaypoints(new PathFinder(mTrack, player));
+    }
+
+    /**
+     * Plans a path for one player on the track's shared ClusterGraph,
+     * which is already built, and takes every waypoint.
+     */
+    @Benchmark
+    public int hierarchicalPathFinderConstruction() {
+        int player = nextPlayer();
+        return countWaypoints(new PathFinder(mTrack, player, PathFinder.Mode.HIERARCHICAL));
+    }
+
+    /**
+     * Plans a path for one player with Jump Point Search on the track's
+     * shared JumpTable, which is already built, and takes every waypoint.
+     */
+    @Benchmark
+    public int jumpPointPathFinderConstruction() {
+        int player = nextPlayer();
+        return countWaypoints(new PathFinder(mTrack, player, PathFinder.Mode.JUMP_POINT));
+    }
+
+    /**
+     * Chooses the first move for one player. The track never changes, so
+     * after the first call every move ranking comes from the MoveCache.
+     */
+    @Benchmark
+    public GridPoint pathFollowerGetMove() {
+        return mControllers[nextPlayer()].getMove();
+    }
+
+    /**
+     * Chooses and makes the current player's move in a game with a
+     * PathFollower for every player, so each call starts from a new
+     * position and velocity, as in a real game. When the game ends, a new
+     * one starts on a fresh copy of the track; the new players' paths are
+     * found then, and that cost is spread over the game's turns.
+     */
+    @Benchmark
+    public Track pathFollowerPlayTurn() {
+        if (mGameTrack.isGameOver() || mGameTurn >= Simulation.DEFAULT_MAX_TURNS) {
+            startGame();
+        }
+        mGameTrack.doPlayerTurn(mGameControllers[mGameTrack.getCurrentPlayer()].getMove());
+        mGameTurn++;
+        return mGameTrack;
+    }
+
+    /**
+     * Plays a whole game with a VelocityPlannerPlayer for every player,
+     * with the default weight and expansion limit, on a fresh copy of
+     * the track. The turns played are reported next to the time; see
+     * GameTurns.
+     */
+    @Benchmark
+    public GameResult velocityPlannerGame(final GameTurns turns) {
+        return playGame(VelocityPlannerPlayer.FACTORY, turns);
+    }
+
+    /**
+     * Plays a whole game with a PathFollower for every player, for
+     * comparison with velocityPlannerGame().
+     */
+    @Benchmark
+    public GameResult pathFollowerGame(final GameTurns turns) {
+        return playGame(PathFollower.FACTORY, turns);
+    }
+
+    /**
+     * Chooses the first move for one player with a fixed number of Monte
+     * Carlo search iterations on a single thread.
+     */
+    @Benchmark
+    public GridPoint monteCarloGetMove() {
+        return mMonteCarloPlayers[nextPlayer()].getMove();
+    }
+
+    private GameResult playGame(final PlayerController.Factory factory, final GameTurns turns) {
+        GameResult result = Simulation.play(new Track(mTrack), factory, 0, Simulation.DEFAULT_MAX_TURNS);
+        turns.games++;
+        turns.turns += result.getTurnCount();
+        if (result.getWinner() != Track.NO_WINNER) turns.wins++;
+        return result;
+    }
+
+    private void startGame() {
+        mGameTrack = new Track(mTrack);
+        mGameControllers = new PlayerController[mPlayerCount];
+        for (int player = 0; player < mPlayerCount; player++) {
+            mGameControllers[player] = PathFollower.FACTORY.create(mGameTrack, player, player);
+        }
+        mGameTurn = 0;
+    }
+
+    private static int countWaypoints(final PathFinder pathFinder) {
+        int count = 0;
+        while (pathFinder.getNextPathPoint() != null) {
+            count++;
+        }
+        return count;
+    }
+
+    private int nextPlayer() {
+        int player = mNextPlayer;
+        mNextPlayer = (player + 1) % mPlayerCount;
+        return player;
+    }
+
+
+    /**
+     * Counts the games played by the whole-game benchmarks, and the turns
+     * they took, so that each result shows the mean number of turns per
+     * game (turns / games), and how many games somebody won, as well as
+     * the time. A game that reaches Simulation.DEFAULT_MAX_TURNS counts
+     * that many turns.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class GameTurns {
+        public long games;
+        public long turns;
+        public long wins;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            games = 0;
+            turns = 0;
+            wins = 0;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.erichamion.racetrack;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the core Track operations that every turn of every game
+ * depends on: tracing the path of a move, and carrying out a round of
+ * player turns.
+ *
+ * Created by me on 10/16/26.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class TrackBenchmark {
+    private static final int SEGMENT_COUNT = 1024;
+    private static final int MAX_SPEED = 12;
+
+    @Param({BenchmarkTracks.SMALL, BenchmarkTracks.MEDIUM, BenchmarkTracks.HUGE})
+    public String mTrackSize;
+
+    @Param({"1", "4", "9"})
+    public int mPlayerCount;
+
+    private Track mTrack;
+    private GameState mGameState;
+    private final GridPoint[] mSegmentStarts = new GridPoint[SEGMENT_COUNT];
+    private final GridPoint[] mSegmentEnds = new GridPoint[SEGMENT_COUNT];
+    private final GridPoint mAcceleration = new GridPoint(0, -1);
+    private int mNextSegment = 0;
+
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        mTrack = BenchmarkTracks.create(mTrackSize, mPlayerCount);
+        mGameState = new GameState(mTrack);
+
+        // Moves of typical lengths in every direction, starting anywhere
+        // on the track. The same seed gives the same moves every run.
+        Random random = new Random(mTrackSize.hashCode());
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            int row = random.nextInt(mTrack.getHeight());
+            int col = random.nextInt(mTrack.getWidth());
+            mSegmentStarts[i] = new GridPoint(row, col);
+            mSegmentEnds[i] = new GridPoint(row + random.nextInt(2 * MAX_SPEED + 1) - MAX_SPEED,
+                    col + random.nextInt(2 * MAX_SPEED + 1) - MAX_SPEED);
+        }
+    }
+
+    @Benchmark
+    public List<GridPoint> getPath() {
+        int segment = mNextSegment;
+        mNextSegment = (segment + 1) % SEGMENT_COUNT;
+        return mTrack.getPath(mSegmentStarts[segment], mSegmentEnds[segment]);
+    }
+
+    /**
+     * Copies the starting track and moves every player once, which is
+     * what the simulation does at the start of every game.
+     */
+    @Benchmark
+    public Track doPlayerTurnRound() {
+        Track track = new Track(mTrack);
+        for (int player = 0; player < mPlayerCount; player++) {
+            track.doPlayerTurn(mAcceleration);
+        }
+        return track;
+    }
+
+    /**
+     * Does the same round of turns as doPlayerTurnRound() on a GameState,
+     * then undoes them, the way a lookahead search would.
+     */
+    @Benchmark
+    public GameState applyAndUndoRound() {
+        for (int player = 0; player < mPlayerCount; player++) {
+            mGameState.applyMove(mAcceleration);
+        }
+        for (int player = 0; player < mPlayerCount; player++) {
+            mGameState.undoMove();
+        }
+        return mGameState;
+    }
+}
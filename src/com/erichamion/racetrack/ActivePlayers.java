@@ -0,0 +1,100 @@
+package com.erichamion.racetrack;
+
+/**
+ * Keeps the players who haven't crashed in a circular, doubly linked
+ * list in turn order, so finding the next player to move, and taking a
+ * player out when it crashes, take constant time no matter how many
+ * players there are or how many have crashed.
+ *
+ * Taking a player out leaves its own links alone, so the most recent
+ * removal can be reversed with restore(), and a player that just crashed
+ * still knows who comes after it.
+ *
+ * Created by me on 10/16/26.
+ */
+final class ActivePlayers {
+    private final int[] mNext;
+    private final int[] mPrev;
+    private int mCount;
+
+
+    /**
+     * @param isCrashed Whether each player has crashed, in turn order
+     */
+    public ActivePlayers(final boolean[] isCrashed) {
+        int playerCount = isCrashed.length;
+        mNext = new int[playerCount];
+        mPrev = new int[playerCount];
+        mCount = 0;
+        int lastActive = -1;
+        for (int i = 0; i < playerCount; i++) {
+            if (!isCrashed[i]) {
+                mCount++;
+                lastActive = i;
+            }
+        }
+        if (mCount == 0) return;
+
+        // Walk around twice, so every player (crashed or not) gets linked
+        // to the next uncrashed player after it.
+        int nextActive = lastActive;
+        for (int i = 2 * playerCount - 1; i >= 0; i--) {
+            int player = i % playerCount;
+            mNext[player] = nextActive;
+            if (!isCrashed[player]) {
+                mPrev[nextActive] = player;
+                nextActive = player;
+            }
+        }
+    }
+
+    /**
+     * Copy another list.
+     * @param other The list to copy
+     */
+    public ActivePlayers(final ActivePlayers other) {
+        mNext = other.mNext.clone();
+        mPrev = other.mPrev.clone();
+        mCount = other.mCount;
+    }
+
+    /**
+     * Return the number of players who haven't crashed.
+     * @return The number of players in the list
+     */
+    public int getCount() {
+        return mCount;
+    }
+
+    /**
+     * Return the next uncrashed player after a player. Only defined for a
+     * player in the list, or one that was just taken out of it.
+     * @param player The zero-based player number
+     * @return The next player in turn order who hasn't crashed. For the
+     * only player left, that is the player itself.
+     */
+    public int getNext(final int player) {
+        return mNext[player];
+    }
+
+    /**
+     * Take a player who has crashed out of the list.
+     * @param player The zero-based player number
+     */
+    public void remove(final int player) {
+        mNext[mPrev[player]] = mNext[player];
+        mPrev[mNext[player]] = mPrev[player];
+        mCount--;
+    }
+
+    /**
+     * Put back the player most recently taken out by remove(). Removals
+     * must be restored in the reverse of the order they were made.
+     * @param player The zero-based player number
+     */
+    public void restore(final int player) {
+        mNext[mPrev[player]] = player;
+        mPrev[mNext[player]] = player;
+        mCount++;
+    }
+}
@@ -0,0 +1,321 @@
+package com.erichamion.racetrack;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Plans a path from a start space to the finish line within a time limit,
+ * using Anytime Repairing A* (ARA*). The first search inflates its
+ * heuristic, which finds a path quickly that costs at most that many
+ * times the cheapest one. Each later search lowers the inflation and
+ * reuses the work of the ones before it, until the last search (with no
+ * inflation) proves the path is a cheapest one.
+ *
+ * The work is spread over any number of calls to improve(), each of which
+ * stops at its deadline and picks up where the last one left off. The
+ * best path found so far is always available from getBestPath(), so a
+ * caller with a hard time limit can use whatever there is. A caller that
+ * needs the same result every time can limit each call by the amount of
+ * work instead of by time with improveBy().
+ *
+ * The search runs forward from the start, using the same move costs as
+ * PathFinder, and treats every finish line space as a goal. Every step
+ * costs at least 1, so the heuristic is the number of steps to the box
+ * around all of the finish line spaces. Unlike PathFinder, the planner
+ * doesn't need the track's shared DistanceField, whose cost can't be
+ * spread across moves.
+ *
+ * Each planner takes about 28 bytes per space on the track, for the cost
+ * of each space, the space before it, the search that last expanded it,
+ * and its key and place in the queue. They are allocated by the first
+ * call to improve() or improveBy(), so creating a planner is cheap, and
+ * a player pays for them while planning its first move instead.
+ *
+ * Created by me on 10/16/26.
+ */
+public final class AnytimePlanner {
+    public static final int NO_WORK_LIMIT = Integer.MAX_VALUE;
+
+    private static final double INFINITE = Double.POSITIVE_INFINITY;
+    // Lowest cost of any single step, for the heuristic
+    private static final double MIN_STEP_COST = 1.0;
+    private static final double INITIAL_INFLATION = 3.0;
+    private static final double INFLATION_STEP = 0.5;
+    private static final int NO_SPACE = -1;
+    // Spaces expanded between checks of the clock
+    private static final int EXPANSIONS_PER_CLOCK_CHECK = 64;
+    private static final int INITIAL_INCONSISTENT_CAPACITY = 256;
+
+    private final Track mTrack;
+    private final GridPoint mStart;
+    private final int mWidth;
+    // Cheapest known cost from the start to each space (g), and the space
+    // before it on that path. Null until the first call to improve() or
+    // improveBy().
+    private double[] mCosts = null;
+    private int[] mParents;
+    // Spaces to expand, keyed by cost plus inflated heuristic
+    private IndexedMinHeap mOpen;
+    // Number of the search that last expanded each space, so starting a
+    // new search reopens every space at once. A space is closed if this
+    // is mSearch, or -mSearch once it is also in mInconsistent.
+    private int[] mClosedSearch;
+    private int mSearch = 1;
+    // Spaces whose cost dropped after they were expanded during the
+    // current search. They are expanded again in the next search.
+    private int[] mInconsistent = new int[INITIAL_INCONSISTENT_CAPACITY];
+    private int mInconsistentCount = 0;
+    // Box around all finish line spaces, for the heuristic
+    private int mFinishTop = Integer.MAX_VALUE;
+    private int mFinishBottom = Integer.MIN_VALUE;
+    private int mFinishLeft = Integer.MAX_VALUE;
+    private int mFinishRight = Integer.MIN_VALUE;
+
+    private double mInflation = INITIAL_INFLATION;
+    // Inflation of the last search to finish, which bounds how far the
+    // best path can be from the cheapest
+    private double mBound = INFINITE;
+    private int mBestGoal = NO_SPACE;
+    private boolean mIsFinished = false;
+    // Limits of the current call to improve() or improveBy()
+    private boolean mIsTimeLimited;
+    private long mDeadlineNanos;
+    private long mWorkLeft;
+
+
+    /**
+     * @param track The Track to plan on. Only its layout is used.
+     * @param start The space to plan from
+     */
+    public AnytimePlanner(final Track track, final GridPoint start) {
+        mTrack = track;
+        mStart = start;
+        mWidth = track.getWidth();
+    }
+
+    /**
+     * Keep searching for a better path until a deadline, or until the
+     * best path is known to be a cheapest one.
+     * @param deadlineNanos The value of System.nanoTime() to stop at
+     * @return Returns true if the search is finished, and the best path
+     * (if there is one) is a cheapest one, false if time ran out
+     */
+    public boolean improve(final long deadlineNanos) {
+        mIsTimeLimited = true;
+        mDeadlineNanos = deadlineNanos;
+        mWorkLeft = Long.MAX_VALUE;
+        return improve();
+    }
+
+    /**
+     * Keep searching for a better path until a fixed amount of work is
+     * done, or until the best path is known to be a cheapest one. Each
+     * space expanded, and each space queued while preparing for the next
+     * search, is one unit of work. Preparing for a search isn't split
+     * across calls, so a call can go over its limit by the number of
+     * spaces queued. Unlike improve(), the result doesn't depend on how
+     * fast the search runs.
+     * @param workLimit The most units of work to do, or NO_WORK_LIMIT
+     * @return Returns true if the search is finished, and the best path
+     * (if there is one) is a cheapest one, false if the work ran out
+     */
+    public boolean improveBy(final int workLimit) {
+        mIsTimeLimited = false;
+        mWorkLeft = (workLimit == NO_WORK_LIMIT) ? Long.MAX_VALUE : workLimit;
+        return improve();
+    }
+
+    /**
+     * @return Returns true if the best path is known to be a cheapest
+     * one, or if it is known that there is no path
+     */
+    public boolean isFinished() {
+        return mIsFinished;
+    }
+
+    /**
+     * @return The cost of the best path found so far, or
+     * Double.POSITIVE_INFINITY if none has been found. Until the search
+     * finishes, the path from getBestPath() may already cost a little
+     * less, since spaces along it can get cheaper before the search
+     * reaches the finish line through them again.
+     */
+    public double getBestCost() {
+        return (mBestGoal == NO_SPACE) ? INFINITE : mCosts[mBestGoal];
+    }
+
+    /**
+     * @return The most that the best path's cost can be above the
+     * cheapest, as a factor: 1 once the search is finished, or
+     * Double.POSITIVE_INFINITY until the first search has finished
+     */
+    public double getSuboptimalityBound() {
+        return mBound;
+    }
+
+    /**
+     * Return the best path found so far. Searching for a better path
+     * doesn't change a path that has already been returned.
+     * @return Every space on the path, starting with the start and ending
+     * on a finish line space, each a single step from the one before, or
+     * null if no path has been found yet
+     */
+    public List<GridPoint> getBestPath() {
+        if (mBestGoal == NO_SPACE) return null;
+
+        List<GridPoint> result = new ArrayList<>();
+        for (int index = mBestGoal; index != NO_SPACE; index = mParents[index]) {
+            result.add(GridPoint.of(index / mWidth, index % mWidth));
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+
+
+    /**
+     * Run searches with lower and lower inflation until the limits set by
+     * improve(long) or improveBy() run out.
+     */
+    private boolean improve() {
+        if (mCosts == null) initialize();
+        while (!mIsFinished) {
+            if (!search()) return false;
+
+            mBound = mInflation;
+            if (mInflation <= 1.0 || mBestGoal == NO_SPACE) {
+                mIsFinished = true;
+            } else {
+                mInflation = Math.max(1.0, mInflation - INFLATION_STEP);
+                requeue();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Allocate the per-space arrays, find the finish line, and queue the
+     * start.
+     */
+    private void initialize() {
+        int cellCount = mWidth * mTrack.getHeight();
+        mCosts = new double[cellCount];
+        mParents = new int[cellCount];
+        mOpen = new IndexedMinHeap(cellCount);
+        mClosedSearch = new int[cellCount];
+        Arrays.fill(mCosts, INFINITE);
+        for (int row = 0; row < mTrack.getHeight(); row++) {
+            for (int col = 0; col < mWidth; col++) {
+                if (!mTrack.isFinish(row, col)) continue;
+                mFinishTop = Math.min(mFinishTop, row);
+                mFinishBottom = Math.max(mFinishBottom, row);
+                mFinishLeft = Math.min(mFinishLeft, col);
+                mFinishRight = Math.max(mFinishRight, col);
+            }
+        }
+
+        if (mTrack.isWall(mStart.getRow(), mStart.getCol()) || mFinishTop == Integer.MAX_VALUE) {
+            mIsFinished = true;
+            return;
+        }
+        int startIndex = mStart.getRow() * mWidth + mStart.getCol();
+        mCosts[startIndex] = 0.0;
+        mParents[startIndex] = NO_SPACE;
+        if (mTrack.isFinish(mStart.getRow(), mStart.getCol())) {
+            mBestGoal = startIndex;
+        } else {
+            mOpen.insert(startIndex, getKey(startIndex));
+        }
+    }
+
+    /**
+     * Expand spaces in key order until nothing left in the queue could
+     * lead to a cheaper path than the best one (with the current
+     * inflation), or until the limits run out.
+     * @return Returns true if the search finished, false if the limits
+     * ran out
+     */
+    private boolean search() {
+        int expansionCount = 0;
+        while (!mOpen.isEmpty() && mOpen.getKey(mOpen.peekMin()) < getBestCost()) {
+            if (mWorkLeft == 0) return false;
+            if (mIsTimeLimited && ++expansionCount % EXPANSIONS_PER_CLOCK_CHECK == 0
+                    && System.nanoTime() - mDeadlineNanos >= 0) {
+                return false;
+            }
+            mWorkLeft--;
+
+            int index = mOpen.removeMin();
+            mClosedSearch[index] = mSearch;
+            int row = index / mWidth;
+            int col = index % mWidth;
+            for (int dRow = -1; dRow <= 1; dRow++) {
+                for (int dCol = -1; dCol <= 1; dCol++) {
+                    if (dRow == 0 && dCol == 0) continue;
+                    visit(index, row, col, row + dRow, col + dCol);
+                }
+            }
+        }
+        return true;
+    }
+
+    private void visit(final int fromIndex, final int fromRow, final int fromCol, final int toRow,
+                       final int toCol) {
+        double moveCost = PathFinder.getMoveCost(mTrack, fromRow, fromCol, toRow, toCol);
+        if (moveCost >= PathFinder.COST_IMPASSABLE) return;
+
+        int index = toRow * mWidth + toCol;
+        double cost = mCosts[fromIndex] + moveCost;
+        if (cost >= mCosts[index]) return;
+        mCosts[index] = cost;
+        mParents[index] = fromIndex;
+
+        // Finish line spaces end the path, so they are never expanded.
+        if (mTrack.isFinish(toRow, toCol)) {
+            if (cost < getBestCost()) mBestGoal = index;
+        } else if (Math.abs(mClosedSearch[index]) != mSearch) {
+            mOpen.update(index, getKey(index));
+        } else if (mClosedSearch[index] == mSearch) {
+            mClosedSearch[index] = -mSearch;
+            if (mInconsistentCount == mInconsistent.length) {
+                mInconsistent = Arrays.copyOf(mInconsistent, mInconsistentCount * 2);
+            }
+            mInconsistent[mInconsistentCount++] = index;
+        }
+    }
+
+    /**
+     * Prepare the queue for a search with a new inflation, as ARA* does:
+     * recompute the key of every queued space, queue the spaces whose
+     * costs dropped after they were expanded, and reopen every space by
+     * starting a new search number. Only the queued and inconsistent
+     * spaces are touched, not the whole track.
+     */
+    private void requeue() {
+        mSearch++;
+        int queuedCount = mOpen.size();
+        for (int position = 0; position < queuedCount; position++) {
+            int index = mOpen.getIdAt(position);
+            mOpen.setKeyUnordered(index, getKey(index));
+        }
+        mOpen.reorder();
+        for (int i = 0; i < mInconsistentCount; i++) {
+            int index = mInconsistent[i];
+            mOpen.insert(index, getKey(index));
+        }
+        mWorkLeft = Math.max(0, mWorkLeft - queuedCount - mInconsistentCount);
+        mInconsistentCount = 0;
+    }
+
+    private double getKey(final int index) {
+        return mCosts[index] + mInflation * getHeuristic(index / mWidth, index % mWidth);
+    }
+
+    private double getHeuristic(final int row, final int col) {
+        int rowDistance = Math.max(0, Math.max(mFinishTop - row, row - mFinishBottom));
+        int colDistance = Math.max(0, Math.max(mFinishLeft - col, col - mFinishRight));
+        return MIN_STEP_COST * Math.max(rowDistance, colDistance);
+    }
+}
@@ -0,0 +1,238 @@
+package com.erichamion.racetrack;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * Draws a Track on an ANSI terminal, sending only what changed since the
+ * last frame. The first frame clears the screen and draws the whole
+ * board. After that, the track itself never changes, so each frame only
+ * looks at the spaces that held a player in the last frame or hold one
+ * now, and moves the cursor to whichever of those look different. A
+ * frame costs O(players), not O(width * height * players) like
+ * Track.toString().
+ *
+ * In viewport mode, only a window of the board is shown, which scrolls
+ * to keep a chosen player (usually the current one) in view. Scrolling
+ * redraws the window, but still only sends the characters that differ
+ * from what is already on the screen.
+ *
+ * Everything is written to the given Writer, which should be buffered,
+ * and the Writer is flushed once at the end of each frame. The cursor is
+ * left at the start of the line below the board, with the rest of the
+ * screen cleared, so ordinary output can follow.
+ *
+ * Created by me on 10/16/26.
+ */
+public final class BoardRenderer {
+    public static final int FULL_BOARD = 0;
+
+    private static final String ESCAPE = "\033[";
+    // How close the followed player can get to the edge of the viewport,
+    // as a fraction of the viewport size, before it scrolls
+    private static final int SCROLL_MARGIN_DIVISOR = 4;
+
+    private final Track mTrack;
+    private final Writer mOut;
+    private final int mViewRows;
+    private final int mViewCols;
+
+    // What is on the screen now, and what should be on it, for every
+    // space in the viewport
+    private final char[] mScreen;
+    private final char[] mFrame;
+    // Viewport indices of the spaces covered by players in the current
+    // frame, and in the frame before it
+    private int[] mPlayerCells = new int[0];
+    private int mPlayerCellCount = 0;
+    private int[] mOldPlayerCells = new int[0];
+
+    private int mOriginRow = 0;
+    private int mOriginCol = 0;
+    private boolean mIsFrameValid = false;
+    private boolean mIsScreenValid = false;
+    // Where the terminal cursor is, in viewport coordinates, or -1 if
+    // unknown
+    private int mCursorRow = -1;
+    private int mCursorCol = -1;
+
+
+    /**
+     * Create a renderer that shows the whole board.
+     * @param track The Track to draw
+     * @param out Where to send the output
+     */
+    public BoardRenderer(final Track track, final Writer out) {
+        this(track, out, FULL_BOARD, FULL_BOARD);
+    }
+
+    /**
+     * Create a renderer that shows a window of the board.
+     * @param track The Track to draw
+     * @param out Where to send the output
+     * @param viewRows The height of the window, or FULL_BOARD. Limited to
+     *                 the height of the track.
+     * @param viewCols The width of the window, or FULL_BOARD. Limited to
+     *                 the width of the track.
+     */
+    public BoardRenderer(final Track track, final Writer out, final int viewRows, final int viewCols) {
+        if (viewRows < 0 || viewCols < 0) throw new IllegalArgumentException("Viewport size can't be negative");
+        mTrack = track;
+        mOut = out;
+        mViewRows = (viewRows == FULL_BOARD) ? track.getHeight() : Math.min(viewRows, track.getHeight());
+        mViewCols = (viewCols == FULL_BOARD) ? track.getWidth() : Math.min(viewCols, track.getWidth());
+        mScreen = new char[mViewRows * mViewCols];
+        mFrame = new char[mViewRows * mViewCols];
+    }
+
+    /**
+     * Draw the current state of the track.
+     * @param followedPlayer The zero-based player number to keep in view.
+     *                       Ignored when the whole board is shown.
+     * @throws IOException If the output can't be written
+     */
+    public void render(final int followedPlayer) throws IOException {
+        // Other output since the last frame has moved the cursor.
+        mCursorRow = -1;
+        if (!mIsScreenValid) {
+            mOut.write(ESCAPE + "2J");
+            Arrays.fill(mScreen, ' ');
+            mIsScreenValid = true;
+            // A blank screen needs every space drawn, not just the
+            // players.
+            mIsFrameValid = false;
+        }
+
+        if (scrollTo(followedPlayer) || !mIsFrameValid) {
+            drawTrack();
+            drawPlayers();
+            for (int cell = 0; cell < mFrame.length; cell++) {
+                updateCell(cell);
+            }
+            mIsFrameValid = true;
+        } else {
+            // Only spaces that had a player before, or have one now, can
+            // be different.
+            for (int i = 0; i < mPlayerCellCount; i++) {
+                int cell = mPlayerCells[i];
+                mFrame[cell] = getTrackSymbol(cell);
+            }
+            int[] oldCells = mPlayerCells;
+            int oldCount = mPlayerCellCount;
+            mPlayerCells = mOldPlayerCells;
+            mOldPlayerCells = oldCells;
+            drawPlayers();
+            for (int i = 0; i < oldCount; i++) {
+                updateCell(mOldPlayerCells[i]);
+            }
+            for (int i = 0; i < mPlayerCellCount; i++) {
+                updateCell(mPlayerCells[i]);
+            }
+        }
+
+        moveCursor(mViewRows, 0);
+        mOut.write(ESCAPE + "J");
+        mOut.flush();
+    }
+
+    /**
+     * Forget what is on the screen, so the next frame clears it and
+     * draws everything again. Use this after other output has scrolled
+     * the board away.
+     */
+    public void invalidate() {
+        mIsScreenValid = false;
+    }
+
+
+
+    /**
+     * Move the viewport, if needed, to keep a player away from its edges.
+     * Returns true if it moved.
+     */
+    private boolean scrollTo(final int player) {
+        if (mViewRows == mTrack.getHeight() && mViewCols == mTrack.getWidth()) return false;
+
+        GridPoint position = mTrack.getPlayerPos(player);
+        int newOriginRow = scrollAxis(mOriginRow, mViewRows, mTrack.getHeight(), position.getRow());
+        int newOriginCol = scrollAxis(mOriginCol, mViewCols, mTrack.getWidth(), position.getCol());
+        if (newOriginRow == mOriginRow && newOriginCol == mOriginCol) return false;
+
+        mOriginRow = newOriginRow;
+        mOriginCol = newOriginCol;
+        return true;
+    }
+
+    /**
+     * Return the new origin on one axis: unchanged if the position is far
+     * enough inside the view, otherwise centered on the position, and
+     * always within the board.
+     */
+    private static int scrollAxis(final int origin, final int viewSize, final int boardSize, final int position) {
+        int margin = viewSize / SCROLL_MARGIN_DIVISOR;
+        int result = origin;
+        if (position < origin + margin || position >= origin + viewSize - margin) {
+            result = position - viewSize / 2;
+        }
+        return Math.max(0, Math.min(result, boardSize - viewSize));
+    }
+
+    private void drawTrack() {
+        for (int cell = 0; cell < mFrame.length; cell++) {
+            mFrame[cell] = getTrackSymbol(cell);
+        }
+    }
+
+    /**
+     * Draw every player in the viewport into mFrame, and remember where
+     * they are. Players are drawn from last to first, so when players
+     * share a space, the lowest numbered one shows, as in
+     * Track.toString().
+     */
+    private void drawPlayers() {
+        int playerCount = mTrack.getPlayerCount();
+        if (mPlayerCells.length < playerCount) {
+            mPlayerCells = new int[playerCount];
+        }
+        mPlayerCellCount = 0;
+        for (int player = playerCount - 1; player >= 0; player--) {
+            GridPoint position = mTrack.getPlayerPos(player);
+            int row = position.getRow() - mOriginRow;
+            int col = position.getCol() - mOriginCol;
+            if (row < 0 || row >= mViewRows || col < 0 || col >= mViewCols) continue;
+
+            int cell = row * mViewCols + col;
+            mFrame[cell] = mTrack.isPlayerCrashed(player) ? Track.CRASH_INDICATOR : Track.getPlayerSymbol(player);
+            mPlayerCells[mPlayerCellCount++] = cell;
+        }
+    }
+
+    private char getTrackSymbol(final int cell) {
+        int row = mOriginRow + cell / mViewCols;
+        int col = mOriginCol + cell % mViewCols;
+        return mTrack.getSpace(row, col).getSymbol();
+    }
+
+    /**
+     * Send a single space to the terminal if it differs from what is
+     * already there.
+     */
+    private void updateCell(final int cell) throws IOException {
+        char symbol = mFrame[cell];
+        if (mScreen[cell] == symbol) return;
+
+        moveCursor(cell / mViewCols, cell % mViewCols);
+        mOut.write(symbol);
+        mCursorCol++;
+        mScreen[cell] = symbol;
+    }
+
+    private void moveCursor(final int row, final int col) throws IOException {
+        if (row == mCursorRow && col == mCursorCol) return;
+        // ANSI coordinates are one-based.
+        mOut.write(ESCAPE + (row + 1) + ';' + (col + 1) + 'H');
+        mCursorRow = row;
+        mCursorCol = col;
+    }
+}
@@ -0,0 +1,589 @@
+package com.erichamion.racetrack;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A hierarchical abstraction of a Track for finding paths on tracks too
+ * big to flood with a DistanceField (HPA*). The grid is divided into
+ * square clusters of a fixed size. Wherever two side-by-side clusters
+ * have open spaces facing each other across their border, the open run
+ * becomes an entrance, with one pair of abstract nodes (one on each side)
+ * in its middle, or two pairs at its ends if it is long. The abstract
+ * graph connects the two nodes of each pair with a single step, and
+ * connects every pair of nodes inside a cluster with the cost of the
+ * cheapest path between them that stays inside the cluster.
+ *
+ * All costs are PathFinder move costs, so finish lines can only be
+ * entered in their direction. Each node also knows the cheapest way to a
+ * finish line inside its own cluster, and after the graph is built, a
+ * single backward search gives every node its abstract distance to the
+ * finish. Finding a path from a space only needs a search inside the
+ * space's own cluster, then follows the abstract distances downhill,
+ * refining each abstract edge on the way into the actual spaces with
+ * another search inside one cluster. Nothing outside the clusters the
+ * path passes through is ever examined.
+ *
+ * Paths are cheapest at the level of the abstract graph, and usually
+ * close to the true cheapest path. Moves that cross between clusters
+ * diagonally at a corner are not part of the graph.
+ *
+ * Track keeps one, built the first time it is needed, so planners for
+ * every player can share it. Building it takes time in proportion to the
+ * size of the track, spread across the common fork-join pool.
+ *
+ * Created by me on 10/16/26.
+ */
+public final class ClusterGraph {
+    public static final int DEFAULT_CLUSTER_SIZE = 32;
+
+    private static final double INFINITE = Double.POSITIVE_INFINITY;
+    // Entrances at least this long get a pair of nodes at each end,
+    // instead of a single pair in the middle.
+    private static final int LONG_ENTRANCE_LENGTH = 6;
+    // Below this many clusters, a build task works through its clusters
+    // instead of splitting.
+    private static final int CLUSTERS_PER_TASK = 16;
+
+    private final Track mTrack;
+    private final int mWidth;
+    private final int mHeight;
+    private final int mClusterSize;
+    private final int mClusterCols;
+    private final int mClusterCount;
+
+    // Grid index (row * width + col) of each node
+    private final int[] mNodeCells;
+    // Nodes of each cluster c are mClusterNodes[mClusterStarts[c]] up to
+    // (not including) mClusterNodes[mClusterStarts[c + 1]].
+    private final int[] mClusterStarts;
+    private final int[] mClusterNodes;
+    // Edges out of each node n are mEdgeTargets[mEdgeStarts[n]] up to
+    // mEdgeTargets[mEdgeStarts[n + 1]], with the matching mEdgeCosts.
+    private final int[] mEdgeStarts;
+    private final int[] mEdgeTargets;
+    private final double[] mEdgeCosts;
+    // Cheapest way from each node to a finish line without leaving its
+    // cluster, and the finish line space it reaches
+    private final double[] mFinishCosts;
+    private final int[] mFinishCells;
+    // Abstract distance from each node to the finish
+    private final double[] mDistances;
+
+
+    /**
+     * Build a graph with the default cluster size.
+     * @param track The Track to describe
+     */
+    public ClusterGraph(final Track track) {
+        this(track, DEFAULT_CLUSTER_SIZE);
+    }
+
+    /**
+     * Build a graph.
+     * @param track The Track to describe
+     * @param clusterSize The width and height of each cluster, at least 2
+     */
+    public ClusterGraph(final Track track, final int clusterSize) {
+        if (clusterSize < 2) throw new IllegalArgumentException("Cluster size must be at least 2");
+        mTrack = track;
+        mWidth = track.getWidth();
+        mHeight = track.getHeight();
+        mClusterSize = clusterSize;
+        mClusterCols = (mWidth + clusterSize - 1) / clusterSize;
+        int clusterRows = (mHeight + clusterSize - 1) / clusterSize;
+        mClusterCount = mClusterCols * clusterRows;
+
+        // Find the entrances, creating a node for each space on either
+        // side of one, and a single step edge across.
+        Map<Integer, Integer> nodesByCell = new HashMap<>();
+        List<Integer> nodeCells = new ArrayList<>();
+        EdgeList interEdges = new EdgeList();
+        for (int clusterRow = 0; clusterRow < clusterRows; clusterRow++) {
+            for (int clusterCol = 0; clusterCol < mClusterCols; clusterCol++) {
+                int top = clusterRow * clusterSize;
+                int left = clusterCol * clusterSize;
+                int bottom = Math.min(top + clusterSize, mHeight);
+                int right = Math.min(left + clusterSize, mWidth);
+                if (right < mWidth) {
+                    addEntrances(top, right - 1, top, right, 1, 0, bottom - top, nodesByCell, nodeCells, interEdges);
+                }
+                if (bottom < mHeight) {
+                    addEntrances(bottom - 1, left, bottom, left, 0, 1, right - left, nodesByCell, nodeCells,
+                            interEdges);
+                }
+            }
+        }
+
+        int nodeCount = nodeCells.size();
+        mNodeCells = new int[nodeCount];
+        for (int node = 0; node < nodeCount; node++) {
+            mNodeCells[node] = nodeCells.get(node);
+        }
+
+        // Group the nodes by cluster.
+        mClusterStarts = new int[mClusterCount + 1];
+        for (int cell : mNodeCells) {
+            mClusterStarts[getCluster(cell) + 1]++;
+        }
+        for (int cluster = 0; cluster < mClusterCount; cluster++) {
+            mClusterStarts[cluster + 1] += mClusterStarts[cluster];
+        }
+        mClusterNodes = new int[nodeCount];
+        int[] fill = Arrays.copyOf(mClusterStarts, mClusterCount);
+        for (int node = 0; node < nodeCount; node++) {
+            mClusterNodes[fill[getCluster(mNodeCells[node])]++] = node;
+        }
+
+        // Search inside every cluster from each of its nodes.
+        mFinishCosts = new double[nodeCount];
+        mFinishCells = new int[nodeCount];
+        int[][] intraTargets = new int[nodeCount][];
+        double[][] intraCosts = new double[nodeCount][];
+        ForkJoinPool.commonPool().invoke(new ClusterRangeTask(0, mClusterCount, intraTargets, intraCosts));
+
+        // Combine both kinds of edges.
+        mEdgeStarts = new int[nodeCount + 1];
+        for (int i = 0; i < interEdges.mCount; i++) {
+            mEdgeStarts[interEdges.mFrom[i] + 1]++;
+        }
+        for (int node = 0; node < nodeCount; node++) {
+            mEdgeStarts[node + 1] += mEdgeStarts[node] + intraTargets[node].length;
+        }
+        mEdgeTargets = new int[mEdgeStarts[nodeCount]];
+        mEdgeCosts = new double[mEdgeStarts[nodeCount]];
+        fill = Arrays.copyOf(mEdgeStarts, nodeCount);
+        for (int node = 0; node < nodeCount; node++) {
+            System.arraycopy(intraTargets[node], 0, mEdgeTargets, fill[node], intraTargets[node].length);
+            System.arraycopy(intraCosts[node], 0, mEdgeCosts, fill[node], intraCosts[node].length);
+            fill[node] += intraTargets[node].length;
+        }
+        for (int i = 0; i < interEdges.mCount; i++) {
+            int edge = fill[interEdges.mFrom[i]]++;
+            mEdgeTargets[edge] = interEdges.mTo[i];
+            mEdgeCosts[edge] = interEdges.mCost[i];
+        }
+
+        mDistances = findDistances();
+    }
+
+    public int getClusterSize() {
+        return mClusterSize;
+    }
+
+    /**
+     * Return the number of abstract nodes.
+     * @return The number of nodes
+     */
+    public int getNodeCount() {
+        return mNodeCells.length;
+    }
+
+    /**
+     * Return the number of abstract edges, in both directions.
+     * @return The number of edges
+     */
+    public int getEdgeCount() {
+        return mEdgeTargets.length;
+    }
+
+    /**
+     * Find a path from a space to a finish line.
+     * @param start The starting space
+     * @return Every space on the path, starting with the start and ending
+     * on a finish line space, each a single step from the one before, or
+     * null if no finish line can be reached
+     */
+    public List<GridPoint> findPath(final GridPoint start) {
+        int startRow = start.getRow();
+        int startCol = start.getCol();
+        if (mTrack.isWall(startRow, startCol)) return null;
+
+        int startCell = startRow * mWidth + startCol;
+        int cluster = getCluster(startCell);
+        LocalSearch search = new LocalSearch();
+        search.run(cluster, startCell, LocalSearch.NO_TARGET);
+
+        // Either finish inside the start's cluster, or leave it through
+        // whichever node gives the lowest total.
+        double bestCost = search.getFinishCost();
+        int bestNode = -1;
+        for (int i = mClusterStarts[cluster]; i < mClusterStarts[cluster + 1]; i++) {
+            int node = mClusterNodes[i];
+            double cost = search.getCost(mNodeCells[node]) + mDistances[node];
+            if (cost < bestCost) {
+                bestCost = cost;
+                bestNode = node;
+            }
+        }
+        if (bestCost == INFINITE) return null;
+
+        List<GridPoint> result = new ArrayList<>();
+        result.add(start);
+        if (bestNode < 0) {
+            search.appendPath(search.getFinishCell(), result);
+            return result;
+        }
+        search.appendPath(mNodeCells[bestNode], result);
+
+        // Follow the abstract distances downhill, refining each edge.
+        int node = bestNode;
+        while (mFinishCosts[node] != mDistances[node]) {
+            int bestTarget = -1;
+            double bestTotal = INFINITE;
+            for (int edge = mEdgeStarts[node]; edge < mEdgeStarts[node + 1]; edge++) {
+                int target = mEdgeTargets[edge];
+                double total = mEdgeCosts[edge] + mDistances[target];
+                if (total < bestTotal) {
+                    bestTotal = total;
+                    bestTarget = target;
+                }
+            }
+
+            int fromCell = mNodeCells[node];
+            int toCell = mNodeCells[bestTarget];
+            if (getCluster(fromCell) == getCluster(toCell)) {
+                search.run(getCluster(fromCell), fromCell, toCell);
+                search.appendPath(toCell, result);
+            } else {
+                result.add(GridPoint.of(toCell / mWidth, toCell % mWidth));
+            }
+            node = bestTarget;
+        }
+
+        int fromCell = mNodeCells[node];
+        if (mFinishCells[node] != fromCell) {
+            search.run(getCluster(fromCell), fromCell, mFinishCells[node]);
+            search.appendPath(mFinishCells[node], result);
+        }
+        return result;
+    }
+
+
+
+    private int getCluster(final int cell) {
+        int row = cell / mWidth;
+        int col = cell % mWidth;
+        return (row / mClusterSize) * mClusterCols + col / mClusterSize;
+    }
+
+    /**
+     * Add the entrances along one border between two clusters.
+     * (firstRow, firstCol) and (secondRow, secondCol) are the first pair
+     * of spaces facing each other across the border, and (dRow, dCol) is
+     * the step along the border.
+     */
+    private void addEntrances(final int firstRow, final int firstCol, final int secondRow, final int secondCol,
+                              final int dRow, final int dCol, final int length,
+                              final Map<Integer, Integer> nodesByCell, final List<Integer> nodeCells,
+                              final EdgeList interEdges) {
+        int runStart = -1;
+        for (int i = 0; i <= length; i++) {
+            boolean isOpen = i < length
+                    && !mTrack.isWall(firstRow + i * dRow, firstCol + i * dCol)
+                    && !mTrack.isWall(secondRow + i * dRow, secondCol + i * dCol);
+            if (isOpen) {
+                if (runStart < 0) runStart = i;
+                continue;
+            }
+            if (runStart < 0) continue;
+
+            int runLength = i - runStart;
+            if (runLength >= LONG_ENTRANCE_LENGTH) {
+                addTransition(firstRow + runStart * dRow, firstCol + runStart * dCol,
+                        secondRow + runStart * dRow, secondCol + runStart * dCol, nodesByCell, nodeCells,
+                        interEdges);
+                int end = i - 1;
+                addTransition(firstRow + end * dRow, firstCol + end * dCol,
+                        secondRow + end * dRow, secondCol + end * dCol, nodesByCell, nodeCells, interEdges);
+            } else {
+                int middle = runStart + runLength / 2;
+                addTransition(firstRow + middle * dRow, firstCol + middle * dCol,
+                        secondRow + middle * dRow, secondCol + middle * dCol, nodesByCell, nodeCells,
+                        interEdges);
+            }
+            runStart = -1;
+        }
+    }
+
+    private void addTransition(final int firstRow, final int firstCol, final int secondRow, final int secondCol,
+                               final Map<Integer, Integer> nodesByCell, final List<Integer> nodeCells,
+                               final EdgeList interEdges) {
+        int first = getNode(firstRow * mWidth + firstCol, nodesByCell, nodeCells);
+        int second = getNode(secondRow * mWidth + secondCol, nodesByCell, nodeCells);
+        addStep(first, firstRow, firstCol, second, secondRow, secondCol, interEdges);
+        addStep(second, secondRow, secondCol, first, firstRow, firstCol, interEdges);
+    }
+
+    private void addStep(final int fromNode, final int fromRow, final int fromCol,
+                         final int toNode, final int toRow, final int toCol, final EdgeList interEdges) {
+        // Paths end at the first finish line space they reach.
+        if (mTrack.isFinish(fromRow, fromCol)) return;
+        double cost = PathFinder.getMoveCost(mTrack, fromRow, fromCol, toRow, toCol);
+        if (cost < PathFinder.COST_IMPASSABLE) interEdges.add(fromNode, toNode, cost);
+    }
+
+    private static int getNode(final int cell, final Map<Integer, Integer> nodesByCell,
+                               final List<Integer> nodeCells) {
+        Integer node = nodesByCell.get(cell);
+        if (node == null) {
+            node = nodeCells.size();
+            nodesByCell.put(cell, node);
+            nodeCells.add(cell);
+        }
+        return node;
+    }
+
+    /**
+     * Search a cluster from each of its nodes, recording the edges to the
+     * cluster's other nodes and the nearest finish line.
+     */
+    private void searchCluster(final int cluster, final LocalSearch search, final int[][] intraTargets,
+                               final double[][] intraCosts) {
+        int first = mClusterStarts[cluster];
+        int end = mClusterStarts[cluster + 1];
+        for (int i = first; i < end; i++) {
+            int node = mClusterNodes[i];
+            search.run(cluster, mNodeCells[node], LocalSearch.NO_TARGET);
+            mFinishCosts[node] = search.getFinishCost();
+            mFinishCells[node] = search.getFinishCell();
+
+            int[] targets = new int[end - first - 1];
+            double[] costs = new double[targets.length];
+            int count = 0;
+            for (int j = first; j < end; j++) {
+                int target = mClusterNodes[j];
+                double cost = search.getCost(mNodeCells[target]);
+                if (target == node || cost == INFINITE) continue;
+                targets[count] = target;
+                costs[count] = cost;
+                count++;
+            }
+            intraTargets[node] = Arrays.copyOf(targets, count);
+            intraCosts[node] = Arrays.copyOf(costs, count);
+        }
+    }
+
+    /**
+     * Find the abstract distance from every node to the finish, with a
+     * reverse Dijkstra search starting from every node that can reach a
+     * finish line inside its own cluster.
+     */
+    private double[] findDistances() {
+        int nodeCount = mNodeCells.length;
+        // Reverse the edges.
+        int[] reverseStarts = new int[nodeCount + 1];
+        for (int target : mEdgeTargets) {
+            reverseStarts[target + 1]++;
+        }
+        for (int node = 0; node < nodeCount; node++) {
+            reverseStarts[node + 1] += reverseStarts[node];
+        }
+        int[] reverseSources = new int[mEdgeTargets.length];
+        double[] reverseCosts = new double[mEdgeTargets.length];
+        int[] fill = Arrays.copyOf(reverseStarts, nodeCount);
+        for (int node = 0; node < nodeCount; node++) {
+            for (int edge = mEdgeStarts[node]; edge < mEdgeStarts[node + 1]; edge++) {
+                int reverseEdge = fill[mEdgeTargets[edge]]++;
+                reverseSources[reverseEdge] = node;
+                reverseCosts[reverseEdge] = mEdgeCosts[edge];
+            }
+        }
+
+        double[] result = new double[nodeCount];
+        Arrays.fill(result, INFINITE);
+        boolean[] isDone = new boolean[nodeCount];
+        IndexedMinHeap frontier = new IndexedMinHeap(nodeCount);
+        for (int node = 0; node < nodeCount; node++) {
+            if (mFinishCosts[node] != INFINITE) frontier.insert(node, mFinishCosts[node]);
+        }
+        while (!frontier.isEmpty()) {
+            int node = frontier.removeMin();
+            double distance = frontier.getKey(node);
+            result[node] = distance;
+            isDone[node] = true;
+            for (int edge = reverseStarts[node]; edge < reverseStarts[node + 1]; edge++) {
+                int source = reverseSources[edge];
+                if (isDone[source]) continue;
+                double sourceDistance = distance + reverseCosts[edge];
+                if (!frontier.contains(source)) {
+                    frontier.insert(source, sourceDistance);
+                } else if (sourceDistance < frontier.getKey(source)) {
+                    frontier.decreaseKey(source, sourceDistance);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * A growable list of edges.
+     */
+    private static class EdgeList {
+        private int[] mFrom = new int[64];
+        private int[] mTo = new int[64];
+        private double[] mCost = new double[64];
+        private int mCount = 0;
+
+        public void add(final int from, final int to, final double cost) {
+            if (mCount == mFrom.length) {
+                mFrom = Arrays.copyOf(mFrom, mCount * 2);
+                mTo = Arrays.copyOf(mTo, mCount * 2);
+                mCost = Arrays.copyOf(mCost, mCount * 2);
+            }
+            mFrom[mCount] = from;
+            mTo[mCount] = to;
+            mCost[mCount] = cost;
+            mCount++;
+        }
+    }
+
+    /**
+     * A Dijkstra search that stays inside one cluster. Finish line spaces
+     * end the path, so the search never moves on from one (other than the
+     * start). The arrays are sized for a single cluster and reused from
+     * one search to the next.
+     */
+    private class LocalSearch {
+        public static final int NO_TARGET = -1;
+
+        private final double[] mCosts = new double[mClusterSize * mClusterSize];
+        private final int[] mParents = new int[mClusterSize * mClusterSize];
+        private final IndexedMinHeap mFrontier = new IndexedMinHeap(mClusterSize * mClusterSize);
+        private int mTop;
+        private int mLeft;
+        private int mRows;
+        private int mCols;
+        private double mFinishCost;
+        private int mFinishCell;
+
+        /**
+         * Search from a space until the target is reached, or until every
+         * reachable space in the cluster has been found.
+         */
+        public void run(final int cluster, final int startCell, final int targetCell) {
+            mTop = (cluster / mClusterCols) * mClusterSize;
+            mLeft = (cluster % mClusterCols) * mClusterSize;
+            mRows = Math.min(mClusterSize, mHeight - mTop);
+            mCols = Math.min(mClusterSize, mWidth - mLeft);
+            Arrays.fill(mCosts, INFINITE);
+            mFrontier.clear();
+            mFinishCost = INFINITE;
+            mFinishCell = NO_TARGET;
+
+            int startLocal = toLocal(startCell);
+            mFrontier.insert(startLocal, 0.0);
+            mParents[startLocal] = -1;
+            while (!mFrontier.isEmpty()) {
+                int local = mFrontier.removeMin();
+                double cost = mFrontier.getKey(local);
+                mCosts[local] = cost;
+                int row = mTop + local / mCols;
+                int col = mLeft + local % mCols;
+                int cell = row * mWidth + col;
+                if (cell == targetCell) return;
+
+                if (mTrack.isFinish(row, col)) {
+                    if (mFinishCell == NO_TARGET) {
+                        mFinishCost = cost;
+                        mFinishCell = cell;
+                    }
+                    if (local != startLocal) continue;
+                }
+
+                for (int dRow = -1; dRow <= 1; dRow++) {
+                    for (int dCol = -1; dCol <= 1; dCol++) {
+                        if (dRow == 0 && dCol == 0) continue;
+                        int toRow = row + dRow;
+                        int toCol = col + dCol;
+                        if (toRow < mTop || toRow >= mTop + mRows || toCol < mLeft || toCol >= mLeft + mCols) {
+                            continue;
+                        }
+                        int toLocal = (toRow - mTop) * mCols + toCol - mLeft;
+                        if (mCosts[toLocal] != INFINITE) continue;
+
+                        double moveCost = PathFinder.getMoveCost(mTrack, row, col, toRow, toCol);
+                        if (moveCost >= PathFinder.COST_IMPASSABLE) continue;
+                        double toCost = cost + moveCost;
+                        if (!mFrontier.contains(toLocal)) {
+                            mFrontier.insert(toLocal, toCost);
+                            mParents[toLocal] = local;
+                        } else if (toCost < mFrontier.getKey(toLocal)) {
+                            mFrontier.decreaseKey(toLocal, toCost);
+                            mParents[toLocal] = local;
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * Return the cost from the start to a space found by the last
+         * search, or INFINITE if it wasn't reached.
+         */
+        public double getCost(final int cell) {
+            return mCosts[toLocal(cell)];
+        }
+
+        public double getFinishCost() {
+            return mFinishCost;
+        }
+
+        public int getFinishCell() {
+            return mFinishCell;
+        }
+
+        /**
+         * Add the spaces on the path to a space found by the last search
+         * to the end of a list, not including the start.
+         */
+        public void appendPath(final int cell, final List<GridPoint> path) {
+            int insertAt = path.size();
+            for (int local = toLocal(cell); mParents[local] >= 0; local = mParents[local]) {
+                path.add(insertAt, GridPoint.of(mTop + local / mCols, mLeft + local % mCols));
+            }
+        }
+
+        private int toLocal(final int cell) {
+            return (cell / mWidth - mTop) * mCols + cell % mWidth - mLeft;
+        }
+    }
+
+    /**
+     * Searches a range of clusters, splitting it among the pool's workers.
+     */
+    private class ClusterRangeTask extends RecursiveAction {
+        private final int mStart;
+        private final int mEnd;
+        private final int[][] mIntraTargets;
+        private final double[][] mIntraCosts;
+
+        public ClusterRangeTask(final int start, final int end, final int[][] intraTargets,
+                                final double[][] intraCosts) {
+            mStart = start;
+            mEnd = end;
+            mIntraTargets = intraTargets;
+            mIntraCosts = intraCosts;
+        }
+
+        @Override
+        protected void compute() {
+            if (mEnd - mStart <= CLUSTERS_PER_TASK) {
+                LocalSearch search = new LocalSearch();
+                for (int cluster = mStart; cluster < mEnd; cluster++) {
+                    searchCluster(cluster, search, mIntraTargets, mIntraCosts);
+                }
+                return;
+            }
+
+            int middle = (mStart + mEnd) >>> 1;
+            invokeAll(new ClusterRangeTask(mStart, middle, mIntraTargets, mIntraCosts),
+                    new ClusterRangeTask(middle, mEnd, mIntraTargets, mIntraCosts));
+        }
+    }
+}
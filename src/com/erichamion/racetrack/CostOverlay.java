@@ -0,0 +1,171 @@
+package com.erichamion.racetrack;
+
+import java.util.Arrays;
+
+/**
+ * The costs an IncrementalPlanner works with, stored as changes on top of
+ * the track's shared cost DistanceField. Only the spaces whose costs have
+ * been changed, or that are blocked, get an entry, so the memory used
+ * depends on how far the repairs around obstacles spread, not on the
+ * size of the track, and any number of planners can share the field.
+ *
+ * Each space keeps two costs, as D* Lite needs: the cost as of its last
+ * expansion, and the lookahead cost implied by its neighbors. Both start
+ * out as the field's distance. Entries are numbered from 0 in the order
+ * they were added, and keep their numbers until clear(), so they can be
+ * used as ids in an IndexedMinHeap.
+ *
+ * Entries are kept in arrays that grow as needed, found through an
+ * open-addressed hash table of space indices.
+ *
+ * Created by me on 10/16/26.
+ */
+final class CostOverlay {
+    public static final int NO_ENTRY = -1;
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final DistanceField mBase;
+    private final int mWidth;
+    // Entry number plus one for each slot, or 0 if the slot is empty
+    private int[] mTable = new int[INITIAL_CAPACITY * 2];
+    private int[] mSpaces = new int[INITIAL_CAPACITY];
+    private double[] mCosts = new double[INITIAL_CAPACITY];
+    private double[] mLookaheads = new double[INITIAL_CAPACITY];
+    private boolean[] mIsBlocked = new boolean[INITIAL_CAPACITY];
+    private int mCount = 0;
+
+
+    /**
+     * @param base The costs with no changes
+     * @param width The width of the track, to turn space indices into
+     *              rows and columns
+     */
+    public CostOverlay(final DistanceField base, final int width) {
+        mBase = base;
+        mWidth = width;
+    }
+
+    /**
+     * Return the number of entries.
+     * @return The number of spaces that have been changed or blocked
+     * since the last clear(). Entry numbers are below this.
+     */
+    public int size() {
+        return mCount;
+    }
+
+    /**
+     * Find the entry for a space.
+     * @param space The index of the space (row * width + column)
+     * @return The entry number, or NO_ENTRY if the space has none
+     */
+    public int find(final int space) {
+        for (int slot = getSlot(space); ; slot = (slot + 1) & (mTable.length - 1)) {
+            int entry = mTable[slot] - 1;
+            if (entry == NO_ENTRY || mSpaces[entry] == space) return entry;
+        }
+    }
+
+    /**
+     * Find the entry for a space, adding one if needed. A new entry holds
+     * the field's distance for both costs, and isn't blocked.
+     * @param space The index of the space (row * width + column)
+     * @return The entry number
+     */
+    public int getOrAdd(final int space) {
+        int slot = getSlot(space);
+        while (mTable[slot] != 0) {
+            int entry = mTable[slot] - 1;
+            if (mSpaces[entry] == space) return entry;
+            slot = (slot + 1) & (mTable.length - 1);
+        }
+
+        if (mCount == mSpaces.length) {
+            grow();
+            return getOrAdd(space);
+        }
+        int entry = mCount++;
+        double cost = mBase.getDistance(space / mWidth, space % mWidth);
+        mSpaces[entry] = space;
+        mCosts[entry] = cost;
+        mLookaheads[entry] = cost;
+        mIsBlocked[entry] = false;
+        mTable[slot] = entry + 1;
+        return entry;
+    }
+
+    /**
+     * Return the cost of a space as of its last expansion.
+     * @param space The index of the space (row * width + column)
+     * @return The cost, from the field if the space has no entry
+     */
+    public double getCost(final int space) {
+        int entry = find(space);
+        return (entry == NO_ENTRY) ? mBase.getDistance(space / mWidth, space % mWidth) : mCosts[entry];
+    }
+
+    /**
+     * Determine whether a space is blocked.
+     * @param space The index of the space (row * width + column)
+     * @return Returns true if the space has an entry that is blocked
+     */
+    public boolean isBlocked(final int space) {
+        int entry = find(space);
+        return entry != NO_ENTRY && mIsBlocked[entry];
+    }
+
+    public int getSpace(final int entry) {
+        return mSpaces[entry];
+    }
+
+    public double getEntryCost(final int entry) {
+        return mCosts[entry];
+    }
+
+    public void setEntryCost(final int entry, final double cost) {
+        mCosts[entry] = cost;
+    }
+
+    public double getEntryLookahead(final int entry) {
+        return mLookaheads[entry];
+    }
+
+    public void setEntryLookahead(final int entry, final double lookahead) {
+        mLookaheads[entry] = lookahead;
+    }
+
+    public void setEntryBlocked(final int entry, final boolean isBlocked) {
+        mIsBlocked[entry] = isBlocked;
+    }
+
+    /**
+     * Remove every entry, so every space has the field's costs again.
+     */
+    public void clear() {
+        Arrays.fill(mTable, 0);
+        mCount = 0;
+    }
+
+
+
+    /**
+     * Double the room for entries, keeping the table at most half full.
+     */
+    private void grow() {
+        int capacity = mSpaces.length * 2;
+        mSpaces = Arrays.copyOf(mSpaces, capacity);
+        mCosts = Arrays.copyOf(mCosts, capacity);
+        mLookaheads = Arrays.copyOf(mLookaheads, capacity);
+        mIsBlocked = Arrays.copyOf(mIsBlocked, capacity);
+        mTable = new int[capacity * 2];
+        for (int entry = 0; entry < mCount; entry++) {
+            int slot = getSlot(mSpaces[entry]);
+            while (mTable[slot] != 0) slot = (slot + 1) & (mTable.length - 1);
+            mTable[slot] = entry + 1;
+        }
+    }
+
+    private int getSlot(final int space) {
+        return (int) Util.mixSeed(space, 0) & (mTable.length - 1);
+    }
+}
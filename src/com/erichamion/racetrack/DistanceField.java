@@ -0,0 +1,130 @@
+package com.erichamion.racetrack;
+
+import java.util.Arrays;
+
+/**
+ * Holds the distance from every grid space on a Track to the nearest
+ * finish line space, computed once with a reverse Dijkstra search
+ * starting from all of the finish line spaces at the same time. Once
+ * built, any distance can be looked up in constant time, and following
+ * the distances downhill from any space leads to a finish line.
+ *
+ * Two kinds of distance are available. A cost field uses the same move
+ * costs as PathFinder (including its preference for staying away from
+ * walls), and a finish line space can only be entered while moving in
+ * the direction of that finish line. A step field simply counts
+ * 8-connected steps through spaces that aren't walls, ignoring finish
+ * line directions, which makes it a lower bound on the distance any car
+ * has to travel.
+ *
+ * Track keeps one of each, built the first time it is needed, so
+ * planners for every player can share them.
+ *
+ * Created by me on 10/16/26.
+ */
+public final class DistanceField {
+    public static final double UNREACHABLE = Double.POSITIVE_INFINITY;
+
+    private final int mWidth;
+    private final int mHeight;
+    private final double[] mDistances;
+
+
+
+    /**
+     * Build a field of PathFinder move costs to the nearest finish line,
+     * respecting finish line directions.
+     * @param track The Track to measure
+     * @return A new DistanceField
+     */
+    public static DistanceField createCostField(final Track track) {
+        return new DistanceField(track, false);
+    }
+
+    /**
+     * Build a field of 8-connected step counts to the nearest finish line,
+     * ignoring finish line directions.
+     * @param track The Track to measure
+     * @return A new DistanceField
+     */
+    public static DistanceField createStepField(final Track track) {
+        return new DistanceField(track, true);
+    }
+
+
+
+    private DistanceField(final Track track, final boolean isStepField) {
+        mWidth = track.getWidth();
+        mHeight = track.getHeight();
+        mDistances = new double[mWidth * mHeight];
+        Arrays.fill(mDistances, UNREACHABLE);
+
+        IndexedMinHeap frontier = new IndexedMinHeap(mDistances.length);
+        for (int row = 0; row < mHeight; row++) {
+            for (int col = 0; col < mWidth; col++) {
+                if (track.isFinish(row, col)) {
+                    frontier.insert(row * mWidth + col, 0.0);
+                }
+            }
+        }
+
+        // Work backward: when a space is finished, every neighbor that
+        // could move into it gets a chance to improve its own distance.
+        boolean[] isDone = new boolean[mDistances.length];
+        while (!frontier.isEmpty()) {
+            int toIndex = frontier.removeMin();
+            double toDistance = frontier.getKey(toIndex);
+            mDistances[toIndex] = toDistance;
+            isDone[toIndex] = true;
+
+            int toRow = toIndex / mWidth;
+            int toCol = toIndex % mWidth;
+            for (int dRow = -1; dRow <= 1; dRow++) {
+                for (int dCol = -1; dCol <= 1; dCol++) {
+                    if (dRow == 0 && dCol == 0) continue;
+                    int fromRow = toRow - dRow;
+                    int fromCol = toCol - dCol;
+                    if (track.isWall(fromRow, fromCol)) continue;
+
+                    int fromIndex = fromRow * mWidth + fromCol;
+                    if (isDone[fromIndex]) continue;
+
+                    double moveCost = isStepField ? 1.0 :
+                            PathFinder.getMoveCost(track, fromRow, fromCol, toRow, toCol);
+                    if (moveCost >= PathFinder.COST_IMPASSABLE) continue;
+
+                    double fromDistance = toDistance + moveCost;
+                    if (!frontier.contains(fromIndex)) {
+                        frontier.insert(fromIndex, fromDistance);
+                    } else if (fromDistance < frontier.getKey(fromIndex)) {
+                        frontier.decreaseKey(fromIndex, fromDistance);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Return the distance from a space to the nearest finish line.
+     * @param row The row of the space
+     * @param col The column of the space
+     * @return The distance, 0 for a finish line space, or UNREACHABLE if
+     * no finish line can be reached from the space (including if the
+     * space is a wall or is outside the track)
+     */
+    public double getDistance(final int row, final int col) {
+        if (row >= mHeight || row < 0 || col >= mWidth || col < 0) return UNREACHABLE;
+        return mDistances[row * mWidth + col];
+    }
+
+    /**
+     * Determine whether any finish line can be reached from a space.
+     * @param row The row of the space
+     * @param col The column of the space
+     * @return Returns true if the distance from the space is finite,
+     * false otherwise
+     */
+    public boolean isReachable(final int row, final int col) {
+        return getDistance(row, col) != UNREACHABLE;
+    }
+}
@@ -0,0 +1,129 @@
+package com.erichamion.racetrack;
+
+import java.util.Arrays;
+
+/**
+ * The outcome of a single game run by Simulation: who won, how many turns
+ * it took, and where and when each player crashed.
+ *
+ * Created by me on 10/16/26.
+ */
+public final class GameResult {
+    public static final int NOT_CRASHED = -1;
+
+    private final int mWinner;
+    private final int mTurnCount;
+    private final boolean mIsTurnLimitReached;
+    // Indexed by player. mCrashTurns holds NOT_CRASHED for players who
+    // never crashed.
+    private final int[] mCrashTurns;
+    private final int[] mCrashRows;
+    private final int[] mCrashCols;
+
+
+    GameResult(final int winner, final int turnCount, final boolean isTurnLimitReached,
+               final int[] crashTurns, final int[] crashRows, final int[] crashCols) {
+        mWinner = winner;
+        mTurnCount = turnCount;
+        mIsTurnLimitReached = isTurnLimitReached;
+        mCrashTurns = crashTurns;
+        mCrashRows = crashRows;
+        mCrashCols = crashCols;
+    }
+
+    /**
+     * Return the number of players in the game.
+     * @return Number of players
+     */
+    public int getPlayerCount() {
+        return mCrashTurns.length;
+    }
+
+    /**
+     * Return the winner of the game.
+     * @return The zero-based number of the winning player, or
+     * Track.NO_WINNER if every player crashed or the turn limit was
+     * reached
+     */
+    public int getWinner() {
+        return mWinner;
+    }
+
+    /**
+     * Return the number of turns played. Each player's move counts as a
+     * separate turn.
+     * @return Number of turns played
+     */
+    public int getTurnCount() {
+        return mTurnCount;
+    }
+
+    /**
+     * Determine whether the game was stopped by the turn limit before it
+     * was finished.
+     * @return Returns true if the game was unfinished, false otherwise
+     */
+    public boolean isTurnLimitReached() {
+        return mIsTurnLimitReached;
+    }
+
+    /**
+     * Determine whether a player crashed during the game.
+     * @param player The zero-based player number
+     * @return Returns true if the player crashed, false otherwise
+     */
+    public boolean isCrashed(final int player) {
+        return mCrashTurns[player] != NOT_CRASHED;
+    }
+
+    /**
+     * Return the turn on which a player crashed.
+     * @param player The zero-based player number
+     * @return The zero-based turn number of the crash, or NOT_CRASHED
+     */
+    public int getCrashTurn(final int player) {
+        return mCrashTurns[player];
+    }
+
+    /**
+     * Return the location where a player crashed.
+     * @param player The zero-based player number
+     * @return The crash location, or null if the player did not crash
+     */
+    public GridPoint getCrashPosition(final int player) {
+        return isCrashed(player) ? new GridPoint(mCrashRows[player], mCrashCols[player]) : null;
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+        if (!(other instanceof GameResult)) return false;
+        GameResult otherResult = (GameResult) other;
+        return mWinner == otherResult.mWinner && mTurnCount == otherResult.mTurnCount
+                && mIsTurnLimitReached == otherResult.mIsTurnLimitReached
+                && Arrays.equals(mCrashTurns, otherResult.mCrashTurns)
+                && Arrays.equals(mCrashRows, otherResult.mCrashRows)
+                && Arrays.equals(mCrashCols, otherResult.mCrashCols);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = 31 * mWinner + mTurnCount;
+        result = 31 * result + Arrays.hashCode(mCrashTurns);
+        return 31 * result + Arrays.hashCode(mCrashRows) + Arrays.hashCode(mCrashCols);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        result.append("Winner: ").append(mWinner == Track.NO_WINNER ? "none" : Integer.toString(mWinner + 1));
+        result.append("; Turns: ").append(mTurnCount);
+        if (mIsTurnLimitReached) result.append(" (limit reached)");
+        for (int player = 0; player < mCrashTurns.length; player++) {
+            if (isCrashed(player)) {
+                result.append("; Player ").append(player + 1).append(" crashed on turn ").append(mCrashTurns[player])
+                        .append(" at ").append(getCrashPosition(player));
+            }
+        }
+        return result.toString();
+    }
+}
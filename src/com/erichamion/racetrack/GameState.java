@@ -0,0 +1,307 @@
+package com.erichamion.racetrack;
+
+import java.util.Arrays;
+
+/**
+ * A compact, copyable snapshot of everything about a game that changes
+ * from turn to turn: each player's position, velocity, and crash state,
+ * along with the current player and the winner. The unchanging layout
+ * comes from a Track, which is only read, never modified.
+ *
+ * A GameState follows exactly the same rules as Track.doPlayerTurn(), but
+ * it is made of primitive arrays, so copying one is O(players) and
+ * trying out a move allocates nothing. Like Track, it keeps an
+ * OccupancyIndex and an ActivePlayers list, so making or undoing a move
+ * takes constant time no matter how many players there are. Every move can be undone, so a
+ * search can explore many possible futures from a single GameState
+ * without affecting the real game:
+ * <pre>
+ *     state.applyMove(accelRow, accelCol);
+ *     evaluate(state);
+ *     state.undoMove();
+ * </pre>
+ *
+ * Created by me on 10/16/26.
+ */
+public final class GameState {
+    // Values saved for each move, so it can be undone
+    private static final int UNDO_PLAYER = 0;
+    private static final int UNDO_ROW = 1;
+    private static final int UNDO_COL = 2;
+    private static final int UNDO_V_ROW = 3;
+    private static final int UNDO_V_COL = 4;
+    private static final int UNDO_CRASHED = 5;
+    private static final int UNDO_WINNER = 6;
+    private static final int UNDO_ENTRY_SIZE = 7;
+    private static final int INITIAL_UNDO_CAPACITY = 16;
+
+    private final Track mTrack;
+    private final int[] mRows;
+    private final int[] mCols;
+    private final int[] mVRows;
+    private final int[] mVCols;
+    private final boolean[] mIsCrashed;
+    private int mCurrentPlayer;
+    private int mWinner;
+    private OccupancyIndex mOccupancy;
+    private ActivePlayers mActivePlayers;
+
+    private int[] mUndoStack = new int[INITIAL_UNDO_CAPACITY * UNDO_ENTRY_SIZE];
+    private int mUndoCount = 0;
+    private final MoveResolver mMoveResolver = new MoveResolver();
+
+
+    /**
+     * Take a snapshot of the current state of a Track.
+     * @param track The Track. The snapshot uses its layout, but never
+     *              modifies it, and later changes to the Track's players
+     *              don't affect the snapshot.
+     */
+    public GameState(final Track track) {
+        mTrack = track;
+        int playerCount = track.getPlayerCount();
+        mRows = new int[playerCount];
+        mCols = new int[playerCount];
+        mVRows = new int[playerCount];
+        mVCols = new int[playerCount];
+        mIsCrashed = new boolean[playerCount];
+        for (int player = 0; player < playerCount; player++) {
+            GridPoint position = track.getPlayerPos(player);
+            GridPoint velocity = track.getPlayerVelocity(player);
+            mRows[player] = position.getRow();
+            mCols[player] = position.getCol();
+            mVRows[player] = velocity.getRow();
+            mVCols[player] = velocity.getCol();
+            mIsCrashed[player] = track.isPlayerCrashed(player);
+        }
+        mCurrentPlayer = track.getCurrentPlayer();
+        mWinner = track.getWinner();
+        initPlayerIndex();
+    }
+
+    /**
+     * Copy another GameState. The copy starts with no moves to undo.
+     * @param other The GameState to copy
+     */
+    public GameState(final GameState other) {
+        mTrack = other.mTrack;
+        mRows = other.mRows.clone();
+        mCols = other.mCols.clone();
+        mVRows = other.mVRows.clone();
+        mVCols = other.mVCols.clone();
+        mIsCrashed = other.mIsCrashed.clone();
+        mCurrentPlayer = other.mCurrentPlayer;
+        mWinner = other.mWinner;
+        mOccupancy = new OccupancyIndex(other.mOccupancy);
+        mActivePlayers = new ActivePlayers(other.mActivePlayers);
+    }
+
+    /**
+     * Create a GameState from saved values, such as a replay checkpoint.
+     * The arrays are used directly, not copied.
+     */
+    GameState(final Track track, final int[] rows, final int[] cols, final int[] vRows, final int[] vCols,
+              final boolean[] isCrashed, final int currentPlayer, final int winner) {
+        mTrack = track;
+        mRows = rows;
+        mCols = cols;
+        mVRows = vRows;
+        mVCols = vCols;
+        mIsCrashed = isCrashed;
+        mCurrentPlayer = currentPlayer;
+        mWinner = winner;
+        initPlayerIndex();
+    }
+
+    public Track getTrack() {
+        return mTrack;
+    }
+
+    public int getPlayerCount() {
+        return mRows.length;
+    }
+
+    public int getCurrentPlayer() {
+        return mCurrentPlayer;
+    }
+
+    /**
+     * Return the winner of the game.
+     * @return The winning player, or Track.NO_WINNER if nobody has won
+     */
+    public int getWinner() {
+        return mWinner;
+    }
+
+    public int getPlayerRow(final int player) {
+        return mRows[player];
+    }
+
+    public int getPlayerCol(final int player) {
+        return mCols[player];
+    }
+
+    public int getPlayerVelocityRow(final int player) {
+        return mVRows[player];
+    }
+
+    public int getPlayerVelocityCol(final int player) {
+        return mVCols[player];
+    }
+
+    public boolean isPlayerCrashed(final int player) {
+        return mIsCrashed[player];
+    }
+
+    /**
+     * Determine whether the game has ended, either because a player has
+     * won or because every player has crashed.
+     * @return Returns true if no more moves can be made, false otherwise
+     */
+    public boolean isGameOver() {
+        return mWinner != Track.NO_WINNER || mActivePlayers.getCount() == 0;
+    }
+
+    /**
+     * Return the number of moves that can currently be undone.
+     * @return The number of moves applied since this GameState was
+     * created, minus the number undone
+     */
+    public int getUndoCount() {
+        return mUndoCount;
+    }
+
+    /**
+     * Accelerate the current player and carry out the move, exactly as
+     * Track.doPlayerTurn() would.
+     * @param acceleration The acceleration in each direction
+     */
+    public void applyMove(final GridPoint acceleration) {
+        applyMove(acceleration.getRow(), acceleration.getCol());
+    }
+
+    /**
+     * Accelerate the current player and carry out the move, exactly as
+     * Track.doPlayerTurn() would.
+     * @param accelRow The row acceleration
+     * @param accelCol The column acceleration
+     */
+    public void applyMove(final int accelRow, final int accelCol) {
+        final int player = mCurrentPlayer;
+        pushUndo(player);
+        if (mIsCrashed[player] || mWinner != Track.NO_WINNER) return;
+
+        mVRows[player] += accelRow;
+        mVCols[player] += accelCol;
+        mOccupancy.remove(mRows[player], mCols[player]);
+        movePlayer(player);
+        mOccupancy.add(mRows[player], mCols[player]);
+
+        if (mIsCrashed[player]) {
+            mActivePlayers.remove(player);
+            // If only one uncrashed player is left, that player wins.
+            if (mActivePlayers.getCount() == 1) {
+                mWinner = mActivePlayers.getNext(player);
+            }
+        }
+
+        mCurrentPlayer = getNextPlayer();
+    }
+
+    /**
+     * Reverse the most recent move that hasn't already been undone.
+     * @throws IllegalStateException If there is no move to undo
+     */
+    public void undoMove() {
+        if (mUndoCount == 0) throw new IllegalStateException("No move to undo");
+        mUndoCount--;
+        int base = mUndoCount * UNDO_ENTRY_SIZE;
+        int player = mUndoStack[base + UNDO_PLAYER];
+        mOccupancy.remove(mRows[player], mCols[player]);
+        mRows[player] = mUndoStack[base + UNDO_ROW];
+        mCols[player] = mUndoStack[base + UNDO_COL];
+        mOccupancy.add(mRows[player], mCols[player]);
+        mVRows[player] = mUndoStack[base + UNDO_V_ROW];
+        mVCols[player] = mUndoStack[base + UNDO_V_COL];
+        boolean wasCrashed = mUndoStack[base + UNDO_CRASHED] != 0;
+        // Moves are undone in reverse order, so the player is the one most
+        // recently taken out of the list.
+        if (mIsCrashed[player] && !wasCrashed) mActivePlayers.restore(player);
+        mIsCrashed[player] = wasCrashed;
+        mWinner = mUndoStack[base + UNDO_WINNER];
+        mCurrentPlayer = player;
+    }
+
+    /**
+     * Determine whether a player would crash by landing on a space,
+     * either because it is a wall or because another player is there.
+     * Like Track.willPlayerCrash(), only the space itself is checked, not
+     * the path to it.
+     * @param player The zero-based player number
+     * @param row The row of the space
+     * @param col The column of the space
+     * @return Returns true if landing on the space would crash
+     */
+    public boolean willPlayerCrash(final int player, final int row, final int col) {
+        return mTrack.isWall(row, col) || testPlayerCollision(player, row, col);
+    }
+
+
+
+    /**
+     * Set up the occupancy index and the list of uncrashed players from
+     * the player arrays.
+     */
+    private void initPlayerIndex() {
+        mOccupancy = new OccupancyIndex(mRows.length);
+        for (int player = 0; player < mRows.length; player++) {
+            mOccupancy.add(mRows[player], mCols[player]);
+        }
+        mActivePlayers = new ActivePlayers(mIsCrashed);
+    }
+
+    private void pushUndo(final int player) {
+        int base = mUndoCount * UNDO_ENTRY_SIZE;
+        if (base + UNDO_ENTRY_SIZE > mUndoStack.length) {
+            mUndoStack = Arrays.copyOf(mUndoStack, mUndoStack.length * 2);
+        }
+        mUndoStack[base + UNDO_PLAYER] = player;
+        mUndoStack[base + UNDO_ROW] = mRows[player];
+        mUndoStack[base + UNDO_COL] = mCols[player];
+        mUndoStack[base + UNDO_V_ROW] = mVRows[player];
+        mUndoStack[base + UNDO_V_COL] = mVCols[player];
+        mUndoStack[base + UNDO_CRASHED] = mIsCrashed[player] ? 1 : 0;
+        mUndoStack[base + UNDO_WINNER] = mWinner;
+        mUndoCount++;
+    }
+
+    /**
+     * Move a player along its velocity, checking for crashes and wins the
+     * same way as Track.
+     */
+    private void movePlayer(final int player) {
+        // The moving player has already been taken out of the occupancy
+        // index, so anyone there is another player.
+        mMoveResolver.resolve(mTrack, mOccupancy, mRows[player], mCols[player], mVRows[player], mVCols[player]);
+        if (mMoveResolver.isCrashed()) mIsCrashed[player] = true;
+        if (mMoveResolver.isWinner()) mWinner = player;
+        mRows[player] = mMoveResolver.getRow();
+        mCols[player] = mMoveResolver.getCol();
+    }
+
+    private boolean testPlayerCollision(final int player, final int row, final int col) {
+        int count = mOccupancy.getCount(row, col);
+        // Don't count the player itself
+        if (mRows[player] == row && mCols[player] == col) count--;
+        return count > 0;
+    }
+
+    /**
+     * Gets the next player who is still in the game, skipping crashed
+     * players. If everyone has crashed, the current player doesn't
+     * change.
+     */
+    private int getNextPlayer() {
+        return (mActivePlayers.getCount() == 0) ? mCurrentPlayer : mActivePlayers.getNext(mCurrentPlayer);
+    }
+}
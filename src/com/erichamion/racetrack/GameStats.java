@@ -0,0 +1,131 @@
+package com.erichamion.racetrack;
+
+/**
+ * Accumulates the results of many games: win rates, average game length,
+ * crash rates, and throughput.
+ *
+ * Created by me on 10/16/26.
+ */
+public final class GameStats {
+    private final int mPlayerCount;
+    private long mGameCount = 0;
+    private long mTotalTurns = 0;
+    private long mNoWinnerCount = 0;
+    private long mTurnLimitCount = 0;
+    private final long[] mWinCounts;
+    private final long[] mCrashCounts;
+    private long mElapsedNanos = 0;
+
+
+    /**
+     * Create an empty set of statistics.
+     * @param playerCount The number of players in every game that will
+     *                    be added
+     */
+    public GameStats(final int playerCount) {
+        mPlayerCount = playerCount;
+        mWinCounts = new long[playerCount];
+        mCrashCounts = new long[playerCount];
+    }
+
+    /**
+     * Add the result of one game.
+     * @param result The result to add
+     */
+    public void add(final GameResult result) {
+        mGameCount++;
+        mTotalTurns += result.getTurnCount();
+        if (result.getWinner() == Track.NO_WINNER) {
+            mNoWinnerCount++;
+        } else {
+            mWinCounts[result.getWinner()]++;
+        }
+        if (result.isTurnLimitReached()) mTurnLimitCount++;
+        for (int player = 0; player < mPlayerCount; player++) {
+            if (result.isCrashed(player)) mCrashCounts[player]++;
+        }
+    }
+
+    /**
+     * Add to the wall-clock time spent playing the games, for computing
+     * throughput.
+     * @param nanos Elapsed time in nanoseconds
+     */
+    public void addElapsedNanos(final long nanos) {
+        mElapsedNanos += nanos;
+    }
+
+    public int getPlayerCount() {
+        return mPlayerCount;
+    }
+
+    public long getGameCount() {
+        return mGameCount;
+    }
+
+    public long getNoWinnerCount() {
+        return mNoWinnerCount;
+    }
+
+    public long getTurnLimitCount() {
+        return mTurnLimitCount;
+    }
+
+    public long getWinCount(final int player) {
+        return mWinCounts[player];
+    }
+
+    public long getCrashCount(final int player) {
+        return mCrashCounts[player];
+    }
+
+    /**
+     * Return the fraction of games won by a player.
+     * @param player The zero-based player number
+     * @return The win rate, between 0 and 1 (0 if there are no games)
+     */
+    public double getWinRate(final int player) {
+        return (mGameCount == 0) ? 0.0 : (double) mWinCounts[player] / mGameCount;
+    }
+
+    /**
+     * Return the fraction of games in which a player crashed.
+     * @param player The zero-based player number
+     * @return The crash rate, between 0 and 1 (0 if there are no games)
+     */
+    public double getCrashRate(final int player) {
+        return (mGameCount == 0) ? 0.0 : (double) mCrashCounts[player] / mGameCount;
+    }
+
+    /**
+     * Return the average number of turns per game.
+     * @return The mean turn count (0 if there are no games)
+     */
+    public double getMeanTurns() {
+        return (mGameCount == 0) ? 0.0 : (double) mTotalTurns / mGameCount;
+    }
+
+    public long getElapsedNanos() {
+        return mElapsedNanos;
+    }
+
+    /**
+     * Return the number of games played per second of elapsed time.
+     * @return Throughput in games per second (0 if no time was recorded)
+     */
+    public double getGamesPerSecond() {
+        return (mElapsedNanos == 0) ? 0.0 : mGameCount * 1e9 / mElapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        result.append(String.format("Games: %d, mean turns: %.2f, no winner: %d, turn limit: %d, games/s: %.1f",
+                mGameCount, getMeanTurns(), mNoWinnerCount, mTurnLimitCount, getGamesPerSecond()));
+        for (int player = 0; player < mPlayerCount; player++) {
+            result.append(String.format("%n    Player %d: win rate %.4f, crash rate %.4f",
+                    player + 1, getWinRate(player), getCrashRate(player)));
+        }
+        return result.toString();
+    }
+}
@@ -6,11 +6,31 @@ package com.erichamion.racetrack;
  * operations in the same (row, column) coordinate system. I'm not sure of
  * a better name that captures both the point and vector usage.
  *
+ * GridPoints are immutable, so they can be shared freely and used as keys
+ * in hash-based collections. GridPoint.of() returns shared instances for
+ * small vectors (such as accelerations and typical velocities), so the
+ * vector operations only allocate when the result is outside that range.
+ * Code that needs to avoid allocation entirely can work with points
+ * packed into a single long, using the static pack/unpack helpers.
+ *
  * Created by me on 8/17/15.
  */
-public final class GridPoint implements Cloneable {
-    private int mRow;
-    private int mCol;
+public final class GridPoint {
+    // GridPoint.of() shares instances for rows and columns in the range
+    // [-CACHE_RADIUS, CACHE_RADIUS].
+    private static final int CACHE_RADIUS = 16;
+    private static final int CACHE_SIZE = 2 * CACHE_RADIUS + 1;
+    private static final GridPoint[] CACHE = new GridPoint[CACHE_SIZE * CACHE_SIZE];
+    static {
+        for (int row = -CACHE_RADIUS; row <= CACHE_RADIUS; row++) {
+            for (int col = -CACHE_RADIUS; col <= CACHE_RADIUS; col++) {
+                CACHE[(row + CACHE_RADIUS) * CACHE_SIZE + (col + CACHE_RADIUS)] = new GridPoint(row, col);
+            }
+        }
+    }
+
+    private final int mRow;
+    private final int mCol;
 
 
 
@@ -20,16 +40,88 @@ public final class GridPoint implements Cloneable {
     }
 
     /**
-     * Adds two vectors or a point and a vector together, returning a new
-     * GridPoint.
+     * Return a GridPoint with the given coordinates, reusing a shared
+     * instance if the coordinates are small.
+     * @param row The row
+     * @param col The column
+     * @return A GridPoint equal to new GridPoint(row, col)
+     */
+    public static GridPoint of(final int row, final int col) {
+        if (row >= -CACHE_RADIUS && row <= CACHE_RADIUS && col >= -CACHE_RADIUS && col <= CACHE_RADIUS) {
+            return CACHE[(row + CACHE_RADIUS) * CACHE_SIZE + (col + CACHE_RADIUS)];
+        }
+        return new GridPoint(row, col);
+    }
+
+    /**
+     * Pack a row and column into a single long, with the row in the upper
+     * 32 bits and the column in the lower 32 bits. Packed values can be
+     * compared with == and used as primitive keys.
+     * @param row The row
+     * @param col The column
+     * @return The packed value
+     */
+    public static long pack(final int row, final int col) {
+        return ((long) row << 32) | (col & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Return the row of a packed point.
+     * @param packed A value from pack()
+     * @return The row
+     */
+    public static int unpackRow(final long packed) {
+        return (int) (packed >> 32);
+    }
+
+    /**
+     * Return the column of a packed point.
+     * @param packed A value from pack()
+     * @return The column
+     */
+    public static int unpackCol(final long packed) {
+        return (int) packed;
+    }
+
+    /**
+     * Add two packed vectors, or a packed point and a packed vector.
+     * @param packed1 A value from pack()
+     * @param packed2 A value from pack()
+     * @return The packed sum
+     */
+    public static long addPacked(final long packed1, final long packed2) {
+        return pack(unpackRow(packed1) + unpackRow(packed2), unpackCol(packed1) + unpackCol(packed2));
+    }
+
+    /**
+     * Subtract one packed vector or point from another.
+     * @param packed1 A value from pack()
+     * @param packed2 A value from pack(), to subtract from packed1
+     * @return The packed result of (packed1 - packed2)
+     */
+    public static long subtractPacked(final long packed1, final long packed2) {
+        return pack(unpackRow(packed1) - unpackRow(packed2), unpackCol(packed1) - unpackCol(packed2));
+    }
+
+    /**
+     * Return a GridPoint from a packed value.
+     * @param packed A value from pack()
+     * @return An equivalent GridPoint
+     */
+    public static GridPoint fromPacked(final long packed) {
+        return of(unpackRow(packed), unpackCol(packed));
+    }
+
+    /**
+     * Adds two vectors or a point and a vector together.
      * @param obj1 A point or a vector
      * @param obj2 A point or a vector
-     * @return A new GridPoint holding the result of the addition. If both
+     * @return A GridPoint holding the result of the addition. If both
      * arguments are points (not vectors), the result is mathematically
      * correct but meaningless.
      */
     public static GridPoint add(final GridPoint obj1, final GridPoint obj2) {
-        return new GridPoint(obj1.getRow() + obj2.getRow(), obj1.getCol() + obj2.getCol());
+        return of(obj1.getRow() + obj2.getRow(), obj1.getCol() + obj2.getCol());
     }
 
     /**
@@ -39,7 +131,7 @@ public final class GridPoint implements Cloneable {
      * @return The result of (obj1 - obj2).
      */
     public static GridPoint subtract(final GridPoint obj1, final GridPoint obj2) {
-        return new GridPoint(obj1.getRow() - obj2.getRow(), obj1.getCol() - obj2.getCol());
+        return of(obj1.getRow() - obj2.getRow(), obj1.getCol() - obj2.getCol());
     }
 
     /**
@@ -71,9 +163,23 @@ public final class GridPoint implements Cloneable {
      * generally an integer.
      */
     public static double unitDotProduct(final GridPoint vectorA, final GridPoint vectorB) {
-        int dot = dotProduct(vectorA, vectorB);
-        double lengthASquared = Math.pow(vectorA.getRow(), 2) + Math.pow(vectorA.getCol(), 2);
-        double lengthBSquared = Math.pow(vectorB.getRow(), 2) + Math.pow(vectorB.getCol(), 2);
+        return unitDotProduct(vectorA.getRow(), vectorA.getCol(), vectorB.getRow(), vectorB.getCol());
+    }
+
+    /**
+     * Returns the dot product of the unit vectors associated with two
+     * specified 2D vectors, given as separate coordinates. See
+     * unitDotProduct(GridPoint, GridPoint).
+     * @param rowA The row component of the first vector
+     * @param colA The column component of the first vector
+     * @param rowB The row component of the second vector
+     * @param colB The column component of the second vector
+     * @return The dot product of the two unit vectors
+     */
+    public static double unitDotProduct(final int rowA, final int colA, final int rowB, final int colB) {
+        int dot = (rowA * rowB) + (colA * colB);
+        double lengthASquared = (double) rowA * rowA + (double) colA * colA;
+        double lengthBSquared = (double) rowB * rowB + (double) colB * colB;
         return dot / Math.sqrt(lengthASquared * lengthBSquared);
     }
 
@@ -84,51 +190,39 @@ public final class GridPoint implements Cloneable {
         mCol = col;
     }
 
-    public GridPoint(final GridPoint other) {
-        mRow = other.getRow();
-        mCol = other.getCol();
-    }
-
-    public GridPoint() {
-        mRow = 0;
-        mCol = 0;
-    }
-
     public int getRow() {
         return mRow;
     }
 
-    public void setRow(final int row) {
-        this.mRow = row;
-    }
-
     public int getCol() {
         return mCol;
     }
 
-    public void setCol(final int col) {
-        this.mCol = col;
-    }
-
     public int getValueOnAxis(final Axis axis) {
         return (axis == Axis.ROW) ? mRow : mCol;
     }
 
-    public void setValueOnAxis(final Axis axis, int value) {
-        if (axis == Axis.ROW) {
-            mRow = value;
-        } else {
-            mCol = value;
-        }
+    /**
+     * Return this point packed into a single long. See pack().
+     * @return The packed value
+     */
+    public long toPacked() {
+        return pack(mRow, mCol);
     }
 
     @Override
     public boolean equals(final Object other) {
-        if (!(other instanceof GridPoint)) throw new ClassCastException();
+        if (this == other) return true;
+        if (!(other instanceof GridPoint)) return false;
         final GridPoint otherGridPoint = (GridPoint) other;
         return mRow == otherGridPoint.getRow() && mCol == otherGridPoint.getCol();
     }
 
+    @Override
+    public int hashCode() {
+        return 31 * mRow + mCol;
+    }
+
     @Override
     public String toString() {
         return "R " + Integer.toString(mRow) + ", C " + Integer.toString(mCol);
@@ -0,0 +1,329 @@
+package com.erichamion.racetrack;
+
+import java.util.*;
+
+/**
+ * Plans a path to the finish line around temporary obstacles (such as
+ * crashed or parked cars), and repairs the plan incrementally as the
+ * obstacles appear, disappear, and the start moves, using D* Lite.
+ *
+ * The search runs backward from the finish line, using the same move
+ * costs as the track's shared cost DistanceField. With no obstacles, that
+ * field is already the exact answer, so the planner starts from it with
+ * nothing left to search. The planner never copies the field: the costs
+ * it changes, and the blocked spaces, are kept in a sparse CostOverlay,
+ * so each planner only costs memory for the area its repairs reach. When
+ * an obstacle is added or removed,
+ * only the spaces next to it become inconsistent, and the next call to
+ * findPath() repairs the costs outward from them, just far enough to
+ * settle the path from the current start. A heuristic toward the start
+ * (the Chebyshev distance, since every step costs at least 1) keeps the
+ * repair focused on the area between the obstacle and the car.
+ *
+ * An obstacle blocks moving into its space. Like PathFinder, the path
+ * ignores velocity. It is smoothed by string pulling, treating obstacles
+ * like walls for line of sight.
+ *
+ * Created by me on 10/16/26.
+ */
+public final class IncrementalPlanner {
+    private static final double INFINITE = Double.POSITIVE_INFINITY;
+    // Lowest cost of any single step, for the heuristic
+    private static final double MIN_STEP_COST = 1.0;
+    private static final double TIE_EPSILON = 1e-9;
+
+    private final Track mTrack;
+    private final int mWidth;
+    private final int mHeight;
+    // Cost from each space to the finish, as of the last expansion (g),
+    // and as implied by its neighbors (rhs), where they differ from the
+    // shared field. A space is consistent when the two match.
+    private final CostOverlay mOverlay;
+    // Inconsistent spaces, by overlay entry, keyed by their D* Lite
+    // priority
+    private final IndexedMinHeap mOpen = new IndexedMinHeap(0);
+    private final Set<GridPoint> mObstacles = new HashSet<>();
+    private final PathCursor mPathCursor = new PathCursor();
+
+    private int mStartIndex = -1;
+    // Accumulated heuristic change from moving the start, so that keys
+    // already in the queue stay valid (km in D* Lite)
+    private double mKeyModifier = 0.0;
+
+
+    /**
+     * @param track The Track to plan on. Builds the track's shared cost
+     *              DistanceField if it doesn't exist yet.
+     */
+    public IncrementalPlanner(final Track track) {
+        mTrack = track;
+        mWidth = track.getWidth();
+        mHeight = track.getHeight();
+        mOverlay = new CostOverlay(track.getFinishDistances(), mWidth);
+    }
+
+    /**
+     * Replace the set of temporary obstacles. Only the spaces that were
+     * added or removed since the last call affect the search.
+     * @param obstacles The spaces that are currently blocked
+     */
+    public void setObstacles(final Collection<GridPoint> obstacles) {
+        Iterator<GridPoint> iterator = mObstacles.iterator();
+        while (iterator.hasNext()) {
+            GridPoint obstacle = iterator.next();
+            if (!obstacles.contains(obstacle)) {
+                iterator.remove();
+                setBlocked(obstacle, false);
+            }
+        }
+        for (GridPoint obstacle : obstacles) {
+            if (mObstacles.add(obstacle)) {
+                setBlocked(obstacle, true);
+            }
+        }
+
+        // Without obstacles, the shared field is exact again, so drop
+        // every change instead of letting the overlay keep growing.
+        if (mObstacles.isEmpty()) {
+            mOverlay.clear();
+            mOpen.clear();
+            mKeyModifier = 0.0;
+            mStartIndex = -1;
+        }
+    }
+
+    /**
+     * Find a path from a start space to the finish line that avoids the
+     * current obstacles, repairing the search only as much as needed.
+     * @param start The starting space
+     * @return The waypoints of the smoothed path, not including the start
+     * and ending on a finish line space, or null if no finish line can be
+     * reached
+     */
+    public Deque<GridPoint> findPath(final GridPoint start) {
+        if (mTrack.isWall(start.getRow(), start.getCol())) return null;
+
+        int startIndex = start.getRow() * mWidth + start.getCol();
+        if (mStartIndex >= 0) {
+            mKeyModifier += getHeuristic(mStartIndex, startIndex);
+        }
+        mStartIndex = startIndex;
+        computeCosts();
+        if (mOverlay.getCost(startIndex) == INFINITE) return null;
+
+        List<GridPoint> steps = followCosts(startIndex);
+        return (steps == null) ? null : pullString(steps);
+    }
+
+
+
+    private void setBlocked(final GridPoint space, final boolean isBlocked) {
+        int row = space.getRow();
+        int col = space.getCol();
+        if (mTrack.isWall(row, col)) return;
+        mOverlay.setEntryBlocked(addEntry(row * mWidth + col), isBlocked);
+
+        // Blocking a space changes the cost of moving into it, so every
+        // neighbor needs to recheck its own cost.
+        for (int dRow = -1; dRow <= 1; dRow++) {
+            for (int dCol = -1; dCol <= 1; dCol++) {
+                if (dRow == 0 && dCol == 0) continue;
+                updateSpace(row + dRow, col + dCol);
+            }
+        }
+    }
+
+    /**
+     * The main D* Lite loop. Settles inconsistent spaces in priority
+     * order until the start is consistent and nothing in the queue could
+     * still lower its cost.
+     */
+    private void computeCosts() {
+        while (!mOpen.isEmpty()) {
+            int entry = mOpen.peekMin();
+            double oldKey = mOpen.getKey(entry);
+            if (oldKey >= getStartKey() && isStartConsistent()) break;
+
+            double newKey = getKey(entry);
+            int index = mOverlay.getSpace(entry);
+            int row = index / mWidth;
+            int col = index % mWidth;
+            if (oldKey < newKey) {
+                mOpen.update(entry, newKey);
+            } else if (mOverlay.getEntryCost(entry) > mOverlay.getEntryLookahead(entry)) {
+                mOverlay.setEntryCost(entry, mOverlay.getEntryLookahead(entry));
+                mOpen.remove(entry);
+                updateNeighbors(row, col);
+            } else {
+                mOverlay.setEntryCost(entry, INFINITE);
+                updateSpace(row, col);
+                updateNeighbors(row, col);
+            }
+        }
+    }
+
+    /**
+     * Return the start's key, or the lowest possible key if the start
+     * has no entry (and so has the field's cost for both costs).
+     */
+    private double getStartKey() {
+        int entry = mOverlay.find(mStartIndex);
+        if (entry == CostOverlay.NO_ENTRY) return mOverlay.getCost(mStartIndex) + mKeyModifier;
+        return getKey(entry);
+    }
+
+    private boolean isStartConsistent() {
+        int entry = mOverlay.find(mStartIndex);
+        return entry == CostOverlay.NO_ENTRY
+                || mOverlay.getEntryCost(entry) == mOverlay.getEntryLookahead(entry);
+    }
+
+    private void updateNeighbors(final int row, final int col) {
+        for (int dRow = -1; dRow <= 1; dRow++) {
+            for (int dCol = -1; dCol <= 1; dCol++) {
+                if (dRow == 0 && dCol == 0) continue;
+                updateSpace(row + dRow, col + dCol);
+            }
+        }
+    }
+
+    /**
+     * Recompute a space's lookahead cost from its neighbors, and queue it
+     * if it has become inconsistent.
+     */
+    private void updateSpace(final int row, final int col) {
+        // Walls never change, and finish line spaces are always goals.
+        if (mTrack.isWall(row, col) || mTrack.isFinish(row, col)) return;
+
+        int index = row * mWidth + col;
+        double best = INFINITE;
+        for (int dRow = -1; dRow <= 1; dRow++) {
+            for (int dCol = -1; dCol <= 1; dCol++) {
+                if (dRow == 0 && dCol == 0) continue;
+                int toRow = row + dRow;
+                int toCol = col + dCol;
+                double moveCost = getMoveCost(row, col, toRow, toCol);
+                if (moveCost == INFINITE) continue;
+                best = Math.min(best, mOverlay.getCost(toRow * mWidth + toCol) + moveCost);
+            }
+        }
+
+        int entry = mOverlay.find(index);
+        if (entry == CostOverlay.NO_ENTRY) {
+            // Still consistent with the field, so nothing to store
+            if (mOverlay.getCost(index) == best) return;
+            entry = addEntry(index);
+        }
+        mOverlay.setEntryLookahead(entry, best);
+
+        if (mOverlay.getEntryCost(entry) != best) {
+            mOpen.update(entry, getKey(entry));
+        } else {
+            mOpen.remove(entry);
+        }
+    }
+
+    /**
+     * Return the cost of moving between neighboring spaces, or INFINITE if
+     * the move is impossible or the destination is blocked.
+     */
+    private double getMoveCost(final int fromRow, final int fromCol, final int toRow, final int toCol) {
+        if (toRow < 0 || toRow >= mHeight || toCol < 0 || toCol >= mWidth) return INFINITE;
+        if (mOverlay.isBlocked(toRow * mWidth + toCol)) return INFINITE;
+        double cost = PathFinder.getMoveCost(mTrack, fromRow, fromCol, toRow, toCol);
+        return (cost >= PathFinder.COST_IMPASSABLE) ? INFINITE : cost;
+    }
+
+    /**
+     * Find or add the overlay entry for a space, making sure the queue
+     * has room for it.
+     */
+    private int addEntry(final int index) {
+        int entry = mOverlay.getOrAdd(index);
+        mOpen.ensureCapacity(mOverlay.size());
+        return entry;
+    }
+
+    private double getKey(final int entry) {
+        return Math.min(mOverlay.getEntryCost(entry), mOverlay.getEntryLookahead(entry))
+                + getHeuristic(mStartIndex, mOverlay.getSpace(entry)) + mKeyModifier;
+    }
+
+    private double getHeuristic(final int fromIndex, final int toIndex) {
+        int rowDistance = Math.abs(fromIndex / mWidth - toIndex / mWidth);
+        int colDistance = Math.abs(fromIndex % mWidth - toIndex % mWidth);
+        return MIN_STEP_COST * Math.max(rowDistance, colDistance);
+    }
+
+    /**
+     * Follow the settled costs downhill from the start to a finish line,
+     * preferring to keep going straight when two moves are equally good.
+     */
+    private List<GridPoint> followCosts(final int startIndex) {
+        List<GridPoint> result = new ArrayList<>();
+        int row = startIndex / mWidth;
+        int col = startIndex % mWidth;
+        int prevDRow = 0;
+        int prevDCol = 0;
+        result.add(GridPoint.of(row, col));
+        // A consistent path can never be longer than the number of spaces.
+        long maxSteps = (long) mWidth * mHeight;
+        while (!mTrack.isFinish(row, col)) {
+            if (maxSteps-- == 0) return null;
+
+            int bestDRow = 0;
+            int bestDCol = 0;
+            double bestCost = INFINITE;
+            for (int dRow = -1; dRow <= 1; dRow++) {
+                for (int dCol = -1; dCol <= 1; dCol++) {
+                    if (dRow == 0 && dCol == 0) continue;
+                    double moveCost = getMoveCost(row, col, row + dRow, col + dCol);
+                    if (moveCost == INFINITE) continue;
+                    double cost = moveCost + mOverlay.getCost((row + dRow) * mWidth + col + dCol);
+                    boolean isStraight = dRow == prevDRow && dCol == prevDCol;
+                    if (cost < bestCost - TIE_EPSILON || (isStraight && cost < bestCost + TIE_EPSILON)) {
+                        bestCost = cost;
+                        bestDRow = dRow;
+                        bestDCol = dCol;
+                    }
+                }
+            }
+            if (bestCost == INFINITE) return null;
+
+            row += bestDRow;
+            col += bestDCol;
+            prevDRow = bestDRow;
+            prevDCol = bestDCol;
+            result.add(GridPoint.of(row, col));
+        }
+        return result;
+    }
+
+    /**
+     * Keep only the points where the path has to turn: starting from an
+     * anchor, skip ahead as long as the next point is still in sight, and
+     * make the last visible point the new anchor.
+     */
+    private Deque<GridPoint> pullString(final List<GridPoint> steps) {
+        Deque<GridPoint> result = new ArrayDeque<>();
+        GridPoint anchor = steps.get(0);
+        for (int i = 1; i < steps.size() - 1; i++) {
+            if (!hasLineOfSight(anchor, steps.get(i + 1))) {
+                anchor = steps.get(i);
+                result.addLast(anchor);
+            }
+        }
+        if (steps.size() > 1) result.addLast(steps.get(steps.size() - 1));
+        return result;
+    }
+
+    private boolean hasLineOfSight(final GridPoint start, final GridPoint end) {
+        mPathCursor.reset(start, end);
+        while (mPathCursor.next()) {
+            int row = mPathCursor.getRow();
+            int col = mPathCursor.getCol();
+            if (mTrack.isWall(row, col) || mOverlay.isBlocked(row * mWidth + col)) return false;
+        }
+        return true;
+    }
+}
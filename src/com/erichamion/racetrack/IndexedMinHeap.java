@@ -0,0 +1,249 @@
+package com.erichamion.racetrack;
+
+import java.util.Arrays;
+
+/**
+ * A binary min-heap of integer ids in the range [0, capacity), each with
+ * a double key. Unlike java.util.PriorityQueue, it can find an element,
+ * check whether it is present, and lower its key in O(log n) (or O(1)
+ * for lookups) without scanning the queue, and it never boxes ids or
+ * keys.
+ *
+ * The key of an id remains available from getKey() after the id is
+ * removed, until the id is inserted again or the heap is cleared. This
+ * lets a search use the heap keys as its cost table.
+ *
+ * Created by me on 10/16/26.
+ */
+public final class IndexedMinHeap {
+    private static final int NOT_IN_HEAP = -1;
+    private static final int INITIAL_HEAP_CAPACITY = 256;
+
+    private double[] mKeys;
+    // Position of each id within mHeap, or NOT_IN_HEAP
+    private int[] mPositions;
+    private int[] mHeap = new int[INITIAL_HEAP_CAPACITY];
+    private int mSize = 0;
+
+
+    /**
+     * Create an empty heap.
+     * @param capacity One more than the largest id that will be stored
+     */
+    public IndexedMinHeap(final int capacity) {
+        mKeys = new double[capacity];
+        mPositions = new int[capacity];
+        Arrays.fill(mPositions, NOT_IN_HEAP);
+    }
+
+    /**
+     * Make room for more ids, for callers that hand out ids as they go.
+     * @param capacity One more than the largest id that will be stored.
+     *                 Does nothing if the heap already has room.
+     */
+    public void ensureCapacity(final int capacity) {
+        if (capacity <= mPositions.length) return;
+        int newCapacity = Math.max(capacity, mPositions.length * 2);
+        int oldCapacity = mPositions.length;
+        mKeys = Arrays.copyOf(mKeys, newCapacity);
+        mPositions = Arrays.copyOf(mPositions, newCapacity);
+        Arrays.fill(mPositions, oldCapacity, newCapacity, NOT_IN_HEAP);
+    }
+
+    public boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * Determine whether an id is currently in the heap.
+     * @param id The id to look for
+     * @return Returns true if the id has been inserted and not yet
+     * removed, false otherwise
+     */
+    public boolean contains(final int id) {
+        return mPositions[id] != NOT_IN_HEAP;
+    }
+
+    /**
+     * Return the key most recently associated with an id.
+     * @param id The id whose key to retrieve
+     * @return The key. Only meaningful if the id is in the heap or has
+     * previously been removed from it.
+     */
+    public double getKey(final int id) {
+        return mKeys[id];
+    }
+
+    /**
+     * Add an id to the heap. The id must not already be in the heap.
+     * @param id The id to add
+     * @param key The key that determines the priority of the id. Lower
+     *            keys are removed first.
+     */
+    public void insert(final int id, final double key) {
+        if (mSize == mHeap.length) {
+            mHeap = Arrays.copyOf(mHeap, mHeap.length * 2);
+        }
+        mKeys[id] = key;
+        mHeap[mSize] = id;
+        mPositions[id] = mSize;
+        siftUp(mSize++);
+    }
+
+    /**
+     * Lower the key of an id that is already in the heap.
+     * @param id The id to update
+     * @param key The new key, which must not be greater than the current
+     *            key
+     */
+    public void decreaseKey(final int id, final double key) {
+        mKeys[id] = key;
+        siftUp(mPositions[id]);
+    }
+
+    /**
+     * Set the key of an id, inserting the id if it isn't already in the
+     * heap. Unlike decreaseKey(), the key may go up or down.
+     * @param id The id to add or update
+     * @param key The new key
+     */
+    public void update(final int id, final double key) {
+        if (!contains(id)) {
+            insert(id, key);
+            return;
+        }
+        double oldKey = mKeys[id];
+        mKeys[id] = key;
+        if (key < oldKey) {
+            siftUp(mPositions[id]);
+        } else {
+            siftDown(mPositions[id]);
+        }
+    }
+
+    /**
+     * Remove an id from anywhere in the heap. The key is still available
+     * from getKey().
+     * @param id The id to remove. Does nothing if the id isn't in the
+     *           heap.
+     */
+    public void remove(final int id) {
+        int position = mPositions[id];
+        if (position == NOT_IN_HEAP) return;
+        mPositions[id] = NOT_IN_HEAP;
+        mSize--;
+        if (position < mSize) {
+            int lastId = mHeap[mSize];
+            mHeap[position] = lastId;
+            mPositions[lastId] = position;
+            siftDown(position);
+            siftUp(mPositions[lastId]);
+        }
+    }
+
+    /**
+     * Return the id with the lowest key, without removing it.
+     * @return The id with the lowest key. The heap must not be empty.
+     */
+    public int peekMin() {
+        return mHeap[0];
+    }
+
+    /**
+     * Remove and return the id with the lowest key. The key is still
+     * available from getKey().
+     * @return The id with the lowest key. The heap must not be empty.
+     */
+    public int removeMin() {
+        int result = mHeap[0];
+        mPositions[result] = NOT_IN_HEAP;
+        mSize--;
+        if (mSize > 0) {
+            mHeap[0] = mHeap[mSize];
+            mPositions[mHeap[0]] = 0;
+            siftDown(0);
+        }
+        return result;
+    }
+
+    /**
+     * Return the id at a position in the heap, for visiting every id in
+     * no particular order. Positions only change when the heap does.
+     * @param position The position, from 0 to size() - 1
+     * @return The id at the position
+     */
+    public int getIdAt(final int position) {
+        return mHeap[position];
+    }
+
+    /**
+     * Change the key of an id in the heap without restoring the heap
+     * order, for changing many keys at once. Nothing else may be done
+     * with the heap until reorder() is called, except further calls to
+     * this, getIdAt(), and size().
+     * @param id The id to update, which must be in the heap
+     * @param key The new key
+     */
+    public void setKeyUnordered(final int id, final double key) {
+        mKeys[id] = key;
+    }
+
+    /**
+     * Restore the heap order after setKeyUnordered(), in O(n) time.
+     */
+    public void reorder() {
+        for (int position = mSize / 2 - 1; position >= 0; position--) {
+            siftDown(position);
+        }
+    }
+
+    /**
+     * Remove all ids from the heap.
+     */
+    public void clear() {
+        for (int i = 0; i < mSize; i++) {
+            mPositions[mHeap[i]] = NOT_IN_HEAP;
+        }
+        mSize = 0;
+    }
+
+
+
+    private void siftUp(int position) {
+        final int id = mHeap[position];
+        final double key = mKeys[id];
+        while (position > 0) {
+            int parentPosition = (position - 1) / 2;
+            int parentId = mHeap[parentPosition];
+            if (mKeys[parentId] <= key) break;
+            mHeap[position] = parentId;
+            mPositions[parentId] = position;
+            position = parentPosition;
+        }
+        mHeap[position] = id;
+        mPositions[id] = position;
+    }
+
+    private void siftDown(int position) {
+        final int id = mHeap[position];
+        final double key = mKeys[id];
+        while (true) {
+            int childPosition = 2 * position + 1;
+            if (childPosition >= mSize) break;
+            if (childPosition + 1 < mSize && mKeys[mHeap[childPosition + 1]] < mKeys[mHeap[childPosition]]) {
+                childPosition++;
+            }
+            int childId = mHeap[childPosition];
+            if (mKeys[childId] >= key) break;
+            mHeap[position] = childId;
+            mPositions[childId] = position;
+            position = childPosition;
+        }
+        mHeap[position] = id;
+        mPositions[id] = position;
+    }
+}
@@ -0,0 +1,31 @@
+package com.erichamion.racetrack;
+
+import java.io.IOException;
+
+/**
+ * Thrown when replay data doesn't follow the format written by
+ * ReplayWriter.
+ *
+ * Created by me on 10/16/26.
+ */
+public class InvalidReplayFormatException extends IOException {
+    private final long mOffset;
+
+    /**
+     * @param message A description of the problem
+     * @param offset The zero-based byte offset in the replay data where
+     *               the problem was found
+     */
+    InvalidReplayFormatException(final String message, final long offset) {
+        super(message + " (at byte offset " + Long.toString(offset) + ")");
+        mOffset = offset;
+    }
+
+    /**
+     * Return the location of the problem in the replay data.
+     * @return The zero-based byte offset where the problem was found
+     */
+    public long getOffset() {
+        return mOffset;
+    }
+}
@@ -4,7 +4,31 @@ package com.erichamion.racetrack;
  * Created by me on 8/16/15.
  */
 public class InvalidTrackFormatException extends Exception {
+    public static final long UNKNOWN_OFFSET = -1;
+
+    private final long mOffset;
+
     InvalidTrackFormatException(final String message) {
         super(message);
+        mOffset = UNKNOWN_OFFSET;
+    }
+
+    /**
+     * @param message A description of the problem
+     * @param offset The zero-based byte offset in the track data where
+     *               the problem was found
+     */
+    InvalidTrackFormatException(final String message, final long offset) {
+        super(message + " (at byte offset " + Long.toString(offset) + ")");
+        mOffset = offset;
+    }
+
+    /**
+     * Return the location of the problem in the track data.
+     * @return The zero-based byte offset where the problem was found, or
+     * UNKNOWN_OFFSET if the track wasn't read from raw bytes
+     */
+    public long getOffset() {
+        return mOffset;
     }
 }
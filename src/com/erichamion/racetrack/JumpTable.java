@@ -0,0 +1,341 @@
+package com.erichamion.racetrack;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Precomputed jump distances for finding paths with Jump Point Search
+ * (JPS+), which crosses wide open areas in a few long jumps instead of
+ * visiting every space.
+ *
+ * Jump Point Search relies on every move costing the same, which is only
+ * true of open spaces: plain track far enough from the walls that
+ * PathFinder charges its lowest cost to move in (see
+ * PathFinder.isOpenSpace()). For jumping, every other space counts as
+ * blocked. For each open space and each of the 8 directions, the table
+ * holds the number of steps to the next jump point in that direction (a
+ * space where a path may have to turn because of a blocked space beside
+ * it), or, if a blocked space comes first, the number of open spaces
+ * before it as a negative number. A diagonal jump also stops where a
+ * straight jump along either of its components would find a jump point.
+ *
+ * The search is A* over jump points. From an open space, it jumps in the
+ * directions that Jump Point Search doesn't prune, and a jump that runs
+ * into a blocked space stops on the last open space before it. Spaces
+ * near walls and finish line spaces are searched like an ordinary grid,
+ * one step at a time with PathFinder move costs, so finish lines can
+ * only be entered in their direction. Every space costs at least one
+ * step, so the heuristic is the number of steps to the box around all of
+ * the finish line spaces.
+ *
+ * Paths are cheapest or very close to it. A path running along the edge
+ * of an open area can only leave it at a jump point or at the end of a
+ * jump, so it may spend a little longer near a wall than it has to.
+ *
+ * Track keeps one, built the first time it is needed, so planners for
+ * every player can share it.
+ *
+ * Created by me on 10/16/26.
+ */
+public final class JumpTable {
+    // Directions, clockwise from up
+    private static final int DIRECTION_COUNT = 8;
+    private static final int[] DIRECTION_ROWS = {-1, -1, 0, 1, 1, 1, 0, -1};
+    private static final int[] DIRECTION_COLS = {0, 1, 1, 1, 0, -1, -1, -1};
+    private static final int NO_DIRECTION = -1;
+    // Jumps longer than this stop partway, at a space that acts as a jump
+    // point, so that the distances fit in a short.
+    private static final int MAX_JUMP = Short.MAX_VALUE - 1;
+
+    private final Track mTrack;
+    private final int mWidth;
+    private final int mHeight;
+    // Indexed by direction * (width * height) + (row * width + col)
+    private final short[] mJumps;
+    private final boolean[] mIsOpen;
+    // One bit per direction, set if the neighbor in that direction is open
+    private final byte[] mOpenNeighbors;
+    // Box around all finish line spaces, for the heuristic
+    private int mFinishTop = Integer.MAX_VALUE;
+    private int mFinishBottom = Integer.MIN_VALUE;
+    private int mFinishLeft = Integer.MAX_VALUE;
+    private int mFinishRight = Integer.MIN_VALUE;
+
+
+    /**
+     * Build the table.
+     * @param track The Track to describe
+     */
+    public JumpTable(final Track track) {
+        mTrack = track;
+        mWidth = track.getWidth();
+        mHeight = track.getHeight();
+        mIsOpen = new boolean[mWidth * mHeight];
+        for (int row = 0; row < mHeight; row++) {
+            for (int col = 0; col < mWidth; col++) {
+                mIsOpen[row * mWidth + col] = PathFinder.isOpenSpace(track, row, col);
+                if (track.isFinish(row, col)) {
+                    mFinishTop = Math.min(mFinishTop, row);
+                    mFinishBottom = Math.max(mFinishBottom, row);
+                    mFinishLeft = Math.min(mFinishLeft, col);
+                    mFinishRight = Math.max(mFinishRight, col);
+                }
+            }
+        }
+        mOpenNeighbors = new byte[mWidth * mHeight];
+        for (int row = 0; row < mHeight; row++) {
+            for (int col = 0; col < mWidth; col++) {
+                int neighbors = 0;
+                for (int direction = 0; direction < DIRECTION_COUNT; direction++) {
+                    if (isOpen(row + DIRECTION_ROWS[direction], col + DIRECTION_COLS[direction])) {
+                        neighbors |= 1 << direction;
+                    }
+                }
+                mOpenNeighbors[row * mWidth + col] = (byte) neighbors;
+            }
+        }
+
+        // Straight directions first, since diagonal jumps depend on them.
+        // Each jump depends on the one from the next space in the same
+        // direction, so visit the spaces starting from the far end.
+        mJumps = new short[mWidth * mHeight * DIRECTION_COUNT];
+        for (int direction = 0; direction < DIRECTION_COUNT; direction += 2) {
+            fillJumps(direction);
+        }
+        for (int direction = 1; direction < DIRECTION_COUNT; direction += 2) {
+            fillJumps(direction);
+        }
+    }
+
+    /**
+     * Find a path from a space to a finish line.
+     * @param start The starting space
+     * @return Every space on the path, starting with the start and ending
+     * on a finish line space, each a single step from the one before, or
+     * null if no finish line can be reached
+     */
+    public List<GridPoint> findPath(final GridPoint start) {
+        if (mTrack.isWall(start.getRow(), start.getCol()) || mFinishTop == Integer.MAX_VALUE) return null;
+
+        Map<Integer, SearchNode> nodes = new HashMap<>();
+        PriorityQueue<SearchNode> open = new PriorityQueue<>();
+        int startCell = start.getRow() * mWidth + start.getCol();
+        SearchNode startNode = new SearchNode(startCell, NO_DIRECTION, 0.0, null);
+        nodes.put(startCell, startNode);
+        open.add(startNode);
+
+        while (!open.isEmpty()) {
+            SearchNode node = open.poll();
+            if (node.mIsClosed) continue;
+            node.mIsClosed = true;
+
+            int row = node.mCell / mWidth;
+            int col = node.mCell % mWidth;
+            if (mTrack.isFinish(row, col)) return buildPath(node);
+
+            if (mIsOpen[node.mCell]) {
+                expandOpen(node, row, col, nodes, open);
+            }
+            // Step into every neighbor that can't be reached by jumping.
+            for (int direction = 0; direction < DIRECTION_COUNT; direction++) {
+                int toRow = row + DIRECTION_ROWS[direction];
+                int toCol = col + DIRECTION_COLS[direction];
+                if (mTrack.isWall(toRow, toCol)) continue;
+                if (mIsOpen[node.mCell] && mIsOpen[toRow * mWidth + toCol]) continue;
+
+                double moveCost = PathFinder.getMoveCost(mTrack, row, col, toRow, toCol);
+                if (moveCost >= PathFinder.COST_IMPASSABLE) continue;
+                visit(node, toRow, toCol, direction, moveCost, nodes, open);
+            }
+        }
+        return null;
+    }
+
+
+
+    private boolean isOpen(final int row, final int col) {
+        return row >= 0 && row < mHeight && col >= 0 && col < mWidth && mIsOpen[row * mWidth + col];
+    }
+
+    /**
+     * Fill in the jumps in one direction for every open space.
+     */
+    private void fillJumps(final int direction) {
+        int dRow = DIRECTION_ROWS[direction];
+        int dCol = DIRECTION_COLS[direction];
+        int firstRow = (dRow > 0) ? mHeight - 1 : 0;
+        int firstCol = (dCol > 0) ? mWidth - 1 : 0;
+        int rowStep = (dRow > 0) ? -1 : 1;
+        int colStep = (dCol > 0) ? -1 : 1;
+        int offset = direction * mIsOpen.length;
+        int nextOffset = dRow * mWidth + dCol;
+        for (int row = firstRow; row >= 0 && row < mHeight; row += rowStep) {
+            for (int col = firstCol; col >= 0 && col < mWidth; col += colStep) {
+                int cell = row * mWidth + col;
+                if (!mIsOpen[cell] || !isNeighborOpen(cell, direction)) continue;
+
+                int next = cell + nextOffset;
+                int jump;
+                if (isJumpPoint(next, direction)) {
+                    jump = 1;
+                } else {
+                    int nextJump = mJumps[offset + next];
+                    if (Math.abs(nextJump) >= MAX_JUMP) {
+                        jump = 1;
+                    } else {
+                        jump = (nextJump > 0) ? nextJump + 1 : nextJump - 1;
+                    }
+                }
+                mJumps[offset + cell] = (short) jump;
+            }
+        }
+    }
+
+    /**
+     * Determine whether a jump in a direction has to stop at an open
+     * space: it has a forced neighbor, or (for a diagonal direction) a
+     * straight jump along either component finds a jump point.
+     */
+    private boolean isJumpPoint(final int cell, final int direction) {
+        if (hasForcedNeighbor(cell, direction)) return true;
+        if (direction % 2 == 0) return false;
+
+        return mJumps[((direction + 7) % DIRECTION_COUNT) * mIsOpen.length + cell] > 0
+                || mJumps[((direction + 1) % DIRECTION_COUNT) * mIsOpen.length + cell] > 0;
+    }
+
+    /**
+     * Determine whether a space, entered moving in a direction, has a
+     * neighbor that can only be reached cheaply through it, because a
+     * blocked space beside the path is in the way of the other routes.
+     */
+    private boolean hasForcedNeighbor(final int cell, final int direction) {
+        if (direction % 2 == 0) {
+            // Blocked to one side, but open diagonally ahead on that side
+            return (!isNeighborOpen(cell, direction + 2) && isNeighborOpen(cell, direction + 1))
+                    || (!isNeighborOpen(cell, direction + 6) && isNeighborOpen(cell, direction + 7));
+        }
+        // Blocked on one side behind, but open beyond it
+        return (!isNeighborOpen(cell, direction + 5) && isNeighborOpen(cell, direction + 6))
+                || (!isNeighborOpen(cell, direction + 3) && isNeighborOpen(cell, direction + 2));
+    }
+
+    /**
+     * Determine whether a space's neighbor in a direction is open.
+     * Directions past the last one wrap around to the first.
+     */
+    private boolean isNeighborOpen(final int cell, final int direction) {
+        return (mOpenNeighbors[cell] & (1 << (direction & (DIRECTION_COUNT - 1)))) != 0;
+    }
+
+    /**
+     * Jump from an open space in every direction that isn't pruned.
+     */
+    private void expandOpen(final SearchNode node, final int row, final int col,
+                            final Map<Integer, SearchNode> nodes, final PriorityQueue<SearchNode> open) {
+        for (int direction = 0; direction < DIRECTION_COUNT; direction++) {
+            if (!isSuccessor(node.mCell, node.mDirection, direction)) continue;
+
+            int jump = mJumps[direction * mIsOpen.length + node.mCell];
+            int distance = Math.abs(jump);
+            if (distance == 0) continue;
+            visit(node, row + DIRECTION_ROWS[direction] * distance, col + DIRECTION_COLS[direction] * distance,
+                    direction, distance, nodes, open);
+        }
+    }
+
+    /**
+     * Determine whether Jump Point Search keeps a direction out of an
+     * open space, given the direction the space was entered in: the same
+     * direction, its components if it is diagonal, and any forced
+     * neighbors.
+     */
+    private boolean isSuccessor(final int cell, final int from, final int to) {
+        if (from == NO_DIRECTION || from == to) return true;
+
+        int turn = (to - from + DIRECTION_COUNT) % DIRECTION_COUNT;
+        if (from % 2 == 0) {
+            // Diagonally ahead, past a blocked space to the side
+            return (turn == 1 && !isNeighborOpen(cell, from + 2))
+                    || (turn == 7 && !isNeighborOpen(cell, from + 6));
+        }
+        if (turn == 1 || turn == 7) return true;
+        // Diagonally sideways, past a blocked space behind
+        return (turn == 6 && !isNeighborOpen(cell, from + 5))
+                || (turn == 2 && !isNeighborOpen(cell, from + 3));
+    }
+
+    private void visit(final SearchNode from, final int row, final int col, final int direction,
+                       final double cost, final Map<Integer, SearchNode> nodes,
+                       final PriorityQueue<SearchNode> open) {
+        int cell = row * mWidth + col;
+        double costSoFar = from.mCostSoFar + cost;
+        SearchNode existing = nodes.get(cell);
+        if (existing != null && (existing.mIsClosed || existing.mCostSoFar <= costSoFar)) return;
+        if (existing != null) {
+            // Leave the old entry in the queue, but mark it as replaced.
+            existing.mIsClosed = true;
+        }
+
+        SearchNode node = new SearchNode(cell, direction, costSoFar, from);
+        node.mEstimate = costSoFar + getHeuristic(row, col);
+        nodes.put(cell, node);
+        open.add(node);
+    }
+
+    private int getHeuristic(final int row, final int col) {
+        int rowDistance = Math.max(0, Math.max(mFinishTop - row, row - mFinishBottom));
+        int colDistance = Math.max(0, Math.max(mFinishLeft - col, col - mFinishRight));
+        return Math.max(rowDistance, colDistance);
+    }
+
+    /**
+     * Fill in every space along the jumps from the start to a node.
+     */
+    private List<GridPoint> buildPath(final SearchNode end) {
+        List<GridPoint> result = new ArrayList<>();
+        SearchNode node = end;
+        for (; node.mPrev != null; node = node.mPrev) {
+            int row = node.mCell / mWidth;
+            int col = node.mCell % mWidth;
+            int prevCell = node.mPrev.mCell;
+            int dRow = Integer.signum(prevCell / mWidth - row);
+            int dCol = Integer.signum(prevCell % mWidth - col);
+            while (row * mWidth + col != prevCell) {
+                result.add(GridPoint.of(row, col));
+                row += dRow;
+                col += dCol;
+            }
+        }
+        result.add(GridPoint.of(node.mCell / mWidth, node.mCell % mWidth));
+        Collections.reverse(result);
+        return result;
+    }
+
+    private static class SearchNode implements Comparable<SearchNode> {
+        private final int mCell;
+        // The direction the node was entered in
+        private final int mDirection;
+        private final double mCostSoFar;
+        private final SearchNode mPrev;
+        private double mEstimate;
+        private boolean mIsClosed = false;
+
+        public SearchNode(final int cell, final int direction, final double costSoFar, final SearchNode prev) {
+            mCell = cell;
+            mDirection = direction;
+            mCostSoFar = costSoFar;
+            mPrev = prev;
+            mEstimate = costSoFar;
+        }
+
+        @Override
+        public int compareTo(final SearchNode other) {
+            return Double.compare(mEstimate, other.mEstimate);
+        }
+    }
+}
@@ -0,0 +1,469 @@
+package com.erichamion.racetrack;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.*;
+
+/**
+ * A computer player that chooses each move with Monte Carlo tree search
+ * (UCT). Unlike PathFollower, it looks ahead at the moves of every player,
+ * so it accounts for opponents' positions and for the physics of the game
+ * several turns in advance.
+ *
+ * Every search starts from a GameState snapshot of the live Track, and
+ * each iteration applies moves to that snapshot and undoes them
+ * afterward, so the search never touches the real game and allocates
+ * almost nothing per iteration. Beyond the tree, playouts use a fast
+ * greedy policy: head for the lowest value in the track's shared distance
+ * field, while staying slow enough to stop before the nearest wall. A
+ * playout ends when someone wins or after a fixed number of turns, when
+ * each player is scored by how quickly it is expected to finish.
+ *
+ * Playouts and scoring read the track's shared cost and step
+ * DistanceFields, which take 8 bytes per space each, and are built on
+ * the first move if nothing has built them yet. That includes tracks
+ * big enough that PathFinder searches them hierarchically to avoid
+ * building a field, where the two fields are the biggest cost of
+ * playing: 1.6 GB on a 10000x10000 track, on top of the ClusterGraph.
+ *
+ * Each move has a budget of wall-clock time, iterations, or both. With
+ * more than one thread, the search uses root parallelism: each thread
+ * grows its own tree from the current position with its own random
+ * numbers, and the visit counts of the first moves are added together at
+ * the end. With an iteration budget and no time limit, the same seed and
+ * thread count always give the same moves.
+ *
+ * Created by me on 10/16/26.
+ */
+public class MonteCarloPlayer implements PlayerController {
+    public static final long NO_TIME_LIMIT = 0;
+    public static final int NO_ITERATION_LIMIT = Integer.MAX_VALUE;
+
+    public static final long DEFAULT_TIME_BUDGET_MILLIS = 50;
+    public static final int DEFAULT_ROLLOUT_ROUNDS = 12;
+
+    private static final double EXPLORATION = 0.7;
+    // Chance that a playout move is random instead of greedy
+    private static final double ROLLOUT_RANDOMNESS = 0.1;
+    // Best possible reward for a player that hasn't won yet
+    private static final double PROGRESS_REWARD_SCALE = 0.9;
+
+    private static final int[] ACCELERATION_ROWS = {-1, -1, -1, 0, 0, 0, 1, 1, 1};
+    private static final int[] ACCELERATION_COLS = {-1, 0, 1, -1, 0, 1, -1, 0, 1};
+    private static final int ACCELERATION_COUNT = ACCELERATION_ROWS.length;
+
+    // Shared by all players for the extra search threads. Idle threads
+    // exit on their own, and they never keep the program running.
+    private static final ExecutorService SEARCH_EXECUTOR = Executors.newCachedThreadPool(new ThreadFactory() {
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            Thread thread = new Thread(runnable, "MonteCarloPlayer search");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    /**
+     * Creates players that search for DEFAULT_TIME_BUDGET_MILLIS per move
+     * on a single thread.
+     */
+    public static final PlayerController.Factory FACTORY =
+            createFactory(DEFAULT_TIME_BUDGET_MILLIS, NO_ITERATION_LIMIT, 1);
+
+    private final Track mTrack;
+    private final int mPlayerIndex;
+    private final long mTimeBudgetNanos;
+    private final int mIterationBudget;
+    private final int mThreadCount;
+    private final int mRolloutRounds;
+    private final long mSeed;
+    private int mMoveCount = 0;
+
+
+
+    /**
+     * Create a Factory for players with the given budget.
+     * @param timeBudgetMillis Wall-clock time to search for each move, or
+     *                         NO_TIME_LIMIT
+     * @param iterationBudget Total number of search iterations for each
+     *                        move (across all threads), or
+     *                        NO_ITERATION_LIMIT
+     * @param threadCount Number of threads to search with
+     * @return A new Factory
+     */
+    public static PlayerController.Factory createFactory(final long timeBudgetMillis, final int iterationBudget,
+                                                         final int threadCount) {
+        return new PlayerController.Factory() {
+            @Override
+            public PlayerController create(final Track track, final int playerIndex, final long seed) {
+                return new MonteCarloPlayer(track, playerIndex, seed, timeBudgetMillis, iterationBudget,
+                        threadCount, DEFAULT_ROLLOUT_ROUNDS);
+            }
+        };
+    }
+
+    /**
+     * @param track The Track the game is played on
+     * @param playerIndex The zero-based player number to control
+     * @param seed A seed for the search's random choices
+     * @param timeBudgetMillis Wall-clock time to search for each move, or
+     *                         NO_TIME_LIMIT
+     * @param iterationBudget Total number of search iterations for each
+     *                        move (across all threads), or
+     *                        NO_ITERATION_LIMIT. At least one of the
+     *                        budgets must be limited.
+     * @param threadCount Number of threads to search with, at least 1
+     * @param rolloutRounds Maximum length of a playout, in rounds (one
+     *                      move by each player)
+     */
+    public MonteCarloPlayer(final Track track, final int playerIndex, final long seed, final long timeBudgetMillis,
+                            final int iterationBudget, final int threadCount, final int rolloutRounds) {
+        if (timeBudgetMillis == NO_TIME_LIMIT && iterationBudget == NO_ITERATION_LIMIT) {
+            throw new IllegalArgumentException("The search needs a time budget, an iteration budget, or both");
+        }
+        if (threadCount < 1) throw new IllegalArgumentException("Thread count must be at least 1");
+
+        mTrack = track;
+        mPlayerIndex = playerIndex;
+        mSeed = seed;
+        mTimeBudgetNanos = TimeUnit.MILLISECONDS.toNanos(timeBudgetMillis);
+        mIterationBudget = iterationBudget;
+        mThreadCount = threadCount;
+        mRolloutRounds = rolloutRounds;
+    }
+
+    @Override
+    public GridPoint getMove() {
+        final GameState rootState = new GameState(mTrack);
+        final long deadline = (mTimeBudgetNanos == NO_TIME_LIMIT) ? 0 : System.nanoTime() + mTimeBudgetNanos;
+        final long moveSeed = Util.mixSeed(mSeed, mMoveCount++);
+
+        List<Future<Search>> futures = new ArrayList<>(mThreadCount - 1);
+        for (int thread = 1; thread < mThreadCount; thread++) {
+            final Search search = new Search(rootState, Util.mixSeed(moveSeed, thread),
+                    getThreadIterations(thread), deadline);
+            futures.add(SEARCH_EXECUTOR.submit(new Callable<Search>() {
+                @Override
+                public Search call() {
+                    search.run();
+                    return search;
+                }
+            }));
+        }
+        Search mainSearch = new Search(rootState, Util.mixSeed(moveSeed, 0), getThreadIterations(0), deadline);
+        mainSearch.run();
+
+        // Combine the first level of every tree.
+        long[] visits = new long[ACCELERATION_COUNT];
+        double[] rewards = new double[ACCELERATION_COUNT];
+        mainSearch.addRootStatistics(visits, rewards);
+        for (Future<Search> future : futures) {
+            try {
+                future.get().addRootStatistics(visits, rewards);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Search thread failed", e.getCause());
+            }
+        }
+
+        int best = 4; // No acceleration
+        for (int action = 0; action < ACCELERATION_COUNT; action++) {
+            if (visits[action] > visits[best] || (visits[action] == visits[best]
+                    && rewards[action] * visits[best] > rewards[best] * visits[action])) {
+                best = action;
+            }
+        }
+        return GridPoint.of(ACCELERATION_ROWS[best], ACCELERATION_COLS[best]);
+    }
+
+    /**
+     * Split the iteration budget as evenly as possible among the threads.
+     */
+    private int getThreadIterations(final int thread) {
+        if (mIterationBudget == NO_ITERATION_LIMIT) return NO_ITERATION_LIMIT;
+        int result = mIterationBudget / mThreadCount;
+        if (thread < mIterationBudget % mThreadCount) result++;
+        return Math.max(1, result);
+    }
+
+
+
+    /**
+     * A node in a search tree, reached by one move of one player. Holds
+     * the total reward of that player over all iterations that passed
+     * through the node.
+     */
+    private static class Node {
+        private final int mMover;
+        private int mVisits = 0;
+        private double mTotalReward = 0.0;
+        // Indexed by acceleration. Null until the node is expanded.
+        private Node[] mChildren;
+        // Accelerations that don't immediately crash, or all of them if
+        // every one crashes. Determined when the node is expanded.
+        private int[] mActions;
+        private int mUntriedCount;
+
+        public Node(final int mover) {
+            mMover = mover;
+        }
+    }
+
+    /**
+     * A single tree search, run on one thread.
+     */
+    private class Search {
+        private final GameState mState;
+        private final Random mRandom;
+        private final int mMaxIterations;
+        private final long mDeadline;
+        // Move costs to the finish, for ranking playout moves
+        private final DistanceField mDistances;
+        // Steps to the finish, for estimating turns
+        private final DistanceField mSteps;
+        private final Node mRoot;
+        // Best total turns each player could hope for from the root, for
+        // scoring playouts
+        private final double[] mRootEstimates;
+        private final int[] mMovesMade;
+        private final double[] mRewards;
+        private Node[] mPath = new Node[64];
+
+
+        public Search(final GameState rootState, final long seed, final int maxIterations, final long deadline) {
+            mState = new GameState(rootState);
+            mRandom = new Random(seed);
+            mMaxIterations = maxIterations;
+            mDeadline = deadline;
+            mDistances = mTrack.getFinishDistances();
+            mSteps = mTrack.getFinishSteps();
+            mRoot = new Node(-1);
+
+            int playerCount = mState.getPlayerCount();
+            mRootEstimates = new double[playerCount];
+            mMovesMade = new int[playerCount];
+            mRewards = new double[playerCount];
+            for (int player = 0; player < playerCount; player++) {
+                mRootEstimates[player] = estimateTurns(player);
+            }
+        }
+
+        public void run() {
+            for (int iteration = 0; iteration < mMaxIterations; iteration++) {
+                // Check the clock only every few iterations, but always
+                // finish at least one.
+                if (mDeadline != 0 && (iteration & 0xF) == 0 && iteration > 0 && System.nanoTime() >= mDeadline) {
+                    break;
+                }
+                runIteration();
+            }
+        }
+
+        public void addRootStatistics(final long[] visits, final double[] rewards) {
+            if (mRoot.mChildren == null) return;
+            for (int action = 0; action < ACCELERATION_COUNT; action++) {
+                Node child = mRoot.mChildren[action];
+                if (child == null) continue;
+                visits[action] += child.mVisits;
+                rewards[action] += child.mTotalReward;
+            }
+        }
+
+        private void runIteration() {
+            Arrays.fill(mMovesMade, 0);
+            int depth = 0;
+            Node node = mRoot;
+            pushPath(depth++, node);
+
+            // Selection and expansion
+            while (!mState.isGameOver()) {
+                if (node.mChildren == null) expand(node);
+
+                Node child;
+                int action;
+                if (node.mUntriedCount > 0) {
+                    // Try an untried move, chosen at random.
+                    int choice = mRandom.nextInt(node.mUntriedCount);
+                    action = node.mActions[choice];
+                    node.mActions[choice] = node.mActions[node.mUntriedCount - 1];
+                    node.mActions[node.mUntriedCount - 1] = action;
+                    node.mUntriedCount--;
+                    child = new Node(mState.getCurrentPlayer());
+                    node.mChildren[action] = child;
+                } else {
+                    action = selectAction(node);
+                    child = node.mChildren[action];
+                }
+
+                applyMove(action);
+                node = child;
+                pushPath(depth++, node);
+                if (child.mVisits == 0) break;
+            }
+
+            // Simulation
+            rollout();
+            score();
+
+            // Backpropagation
+            for (int i = 0; i < depth; i++) {
+                Node pathNode = mPath[i];
+                pathNode.mVisits++;
+                if (pathNode.mMover >= 0) pathNode.mTotalReward += mRewards[pathNode.mMover];
+            }
+            while (mState.getUndoCount() > 0) {
+                mState.undoMove();
+            }
+        }
+
+        private void pushPath(final int depth, final Node node) {
+            if (depth == mPath.length) {
+                mPath = Arrays.copyOf(mPath, mPath.length * 2);
+            }
+            mPath[depth] = node;
+        }
+
+        /**
+         * Find the moves worth considering from a node, discarding any
+         * that crash right away.
+         */
+        private void expand(final Node node) {
+            int player = mState.getCurrentPlayer();
+            int[] actions = new int[ACCELERATION_COUNT];
+            int count = 0;
+            for (int action = 0; action < ACCELERATION_COUNT; action++) {
+                mState.applyMove(ACCELERATION_ROWS[action], ACCELERATION_COLS[action]);
+                boolean isCrashed = mState.isPlayerCrashed(player);
+                mState.undoMove();
+                if (!isCrashed) actions[count++] = action;
+            }
+            if (count == 0) {
+                // Every move crashes. Consider all of them anyway.
+                for (int action = 0; action < ACCELERATION_COUNT; action++) {
+                    actions[action] = action;
+                }
+                count = ACCELERATION_COUNT;
+            }
+
+            node.mChildren = new Node[ACCELERATION_COUNT];
+            node.mActions = Arrays.copyOf(actions, count);
+            node.mUntriedCount = count;
+        }
+
+        /**
+         * Choose the child with the best upper confidence bound (UCB1)
+         * for the player who is moving.
+         */
+        private int selectAction(final Node node) {
+            double logVisits = Math.log(node.mVisits);
+            int bestAction = node.mActions[0];
+            double bestValue = Double.NEGATIVE_INFINITY;
+            for (int action : node.mActions) {
+                Node child = node.mChildren[action];
+                double value = child.mTotalReward / child.mVisits
+                        + EXPLORATION * Math.sqrt(logVisits / child.mVisits);
+                if (value > bestValue) {
+                    bestValue = value;
+                    bestAction = action;
+                }
+            }
+            return bestAction;
+        }
+
+        private void applyMove(final int action) {
+            mMovesMade[mState.getCurrentPlayer()]++;
+            mState.applyMove(ACCELERATION_ROWS[action], ACCELERATION_COLS[action]);
+        }
+
+        /**
+         * Play out the game with the greedy playout policy until someone
+         * wins, everyone crashes, or the playout length runs out.
+         */
+        private void rollout() {
+            int remainingMoves = mRolloutRounds * mState.getPlayerCount();
+            while (remainingMoves-- > 0 && !mState.isGameOver()) {
+                if (mRandom.nextDouble() < ROLLOUT_RANDOMNESS) {
+                    applyMove(mRandom.nextInt(ACCELERATION_COUNT));
+                } else {
+                    applyMove(chooseRolloutAction());
+                }
+            }
+        }
+
+        /**
+         * Pick the acceleration that lands closest to the finish, among
+         * those that leave enough room to stop before reaching the
+         * nearest wall. Only the landing space is examined, not the path
+         * to it, so this is fast but imperfect.
+         */
+        private int chooseRolloutAction() {
+            final int player = mState.getCurrentPlayer();
+            final int row = mState.getPlayerRow(player);
+            final int col = mState.getPlayerCol(player);
+            int bestAction = -1;
+            double bestDistance = Double.POSITIVE_INFINITY;
+            int fallbackAction = 4; // No acceleration
+            int fallbackWallDistance = -1;
+            for (int action = 0; action < ACCELERATION_COUNT; action++) {
+                int vRow = mState.getPlayerVelocityRow(player) + ACCELERATION_ROWS[action];
+                int vCol = mState.getPlayerVelocityCol(player) + ACCELERATION_COLS[action];
+                int landingRow = row + vRow;
+                int landingCol = col + vCol;
+                double distance = mDistances.getDistance(landingRow, landingCol);
+                if (distance == DistanceField.UNREACHABLE) continue;
+
+                int speed = Math.max(Math.abs(vRow), Math.abs(vCol));
+                int wallDistance = mTrack.getWallDistance(landingRow, landingCol);
+                if (wallDistance > speed * (speed - 1) / 2) {
+                    // Add a little noise to break ties.
+                    distance += mRandom.nextDouble() * 0.01;
+                    if (distance < bestDistance) {
+                        bestDistance = distance;
+                        bestAction = action;
+                    }
+                } else if (wallDistance > fallbackWallDistance) {
+                    fallbackWallDistance = wallDistance;
+                    fallbackAction = action;
+                }
+            }
+            return (bestAction >= 0) ? bestAction : fallbackAction;
+        }
+
+        /**
+         * Fill in mRewards, between 0 and 1, for every player. A winner
+         * scores 1 and everyone else 0. Without a winner, a crashed player
+         * scores 0, and everyone else scores by how their expected total
+         * number of turns compares to the best they could have hoped for
+         * at the start of the search.
+         */
+        private void score() {
+            int winner = mState.getWinner();
+            for (int player = 0; player < mRewards.length; player++) {
+                if (winner != Track.NO_WINNER) {
+                    mRewards[player] = (player == winner) ? 1.0 : 0.0;
+                } else if (mState.isPlayerCrashed(player)) {
+                    mRewards[player] = 0.0;
+                } else {
+                    double expectedTurns = mMovesMade[player] + estimateTurns(player);
+                    mRewards[player] = PROGRESS_REWARD_SCALE * Math.min(1.0, mRootEstimates[player] / expectedTurns);
+                }
+            }
+        }
+
+        /**
+         * Estimate the number of turns a player needs to finish from the
+         * current state. Uses the step count, not the move cost, which can
+         * be up to twice as high near walls.
+         */
+        private double estimateTurns(final int player) {
+            double steps = mSteps.getDistance(mState.getPlayerRow(player), mState.getPlayerCol(player));
+            if (steps == DistanceField.UNREACHABLE) return Double.POSITIVE_INFINITY;
+            int speed = Math.max(Math.abs(mState.getPlayerVelocityRow(player)),
+                    Math.abs(mState.getPlayerVelocityCol(player)));
+            return VelocityPlanner.estimateTurns((int) steps, speed);
+        }
+    }
+}
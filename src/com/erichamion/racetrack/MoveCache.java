@@ -0,0 +1,144 @@
+package com.erichamion.racetrack;
+
+/**
+ * A bounded, direct-mapped cache of the parts of a PathFollower move
+ * decision that depend only on the car's own state: for a given position,
+ * velocity, and goal, the order in which the nine accelerations are
+ * preferred, and which of them land on a wall. Neither changes during a
+ * game, because the track layout never changes. Collisions with other
+ * players do change from turn to turn, so they are never cached.
+ *
+ * Each entry is packed into a single long: four bits per acceleration for
+ * the ranking (best first), then one bit per acceleration for the wall
+ * mask, then a flag marking the entry as filled. The cache has a fixed
+ * number of slots, and a new entry simply replaces whatever was in its
+ * slot, so lookups and insertions are O(1) and memory never grows.
+ *
+ * Nothing in an entry depends on the player, so every PathFollower on a
+ * track layout shares a cache with the others on the same thread (see
+ * Track.getMoveCache()). Players on the same path, or in later games on
+ * the same track, reuse each other's work, and since a game is played on
+ * a single thread, no locking is needed. The number of slots grows with
+ * the number of players, up to MAX_CAPACITY.
+ *
+ * Created by me on 10/16/26.
+ */
+final class MoveCache {
+    public static final int MAX_CAPACITY = 1 << 16;
+    public static final int ACCELERATION_COUNT = 9;
+    public static final long MISSING = 0;
+
+    private static final int MIN_CAPACITY = 1 << 8;
+    private static final int CAPACITY_PER_PLAYER = 1 << 8;
+
+    private static final int RANK_BITS = 4;
+    private static final int RANK_MASK = (1 << RANK_BITS) - 1;
+    private static final int WALL_SHIFT = RANK_BITS * ACCELERATION_COUNT;
+    private static final long FILLED_FLAG = 1L << 63;
+
+    private final int mSlotMask;
+    private final long[] mPositions;
+    private final long[] mVelocities;
+    private final long[] mGoals;
+    private final long[] mEntries;
+
+
+    /**
+     * @param capacity The number of entries to hold. Rounded up to a power
+     *                 of two.
+     */
+    public MoveCache(final int capacity) {
+        if (capacity < 1) throw new IllegalArgumentException("Capacity must be at least 1");
+        int slotCount = Integer.highestOneBit(capacity);
+        if (slotCount < capacity) slotCount <<= 1;
+        mSlotMask = slotCount - 1;
+        mPositions = new long[slotCount];
+        mVelocities = new long[slotCount];
+        mGoals = new long[slotCount];
+        mEntries = new long[slotCount];
+    }
+
+    /**
+     * Return the capacity for a cache shared by a number of players.
+     * @param playerCount The number of players on the track
+     * @return The capacity to pass to the constructor
+     */
+    public static int getCapacity(final int playerCount) {
+        return (int) Math.min(MAX_CAPACITY, Math.max(MIN_CAPACITY, (long) playerCount * CAPACITY_PER_PLAYER));
+    }
+
+    /**
+     * Pack a ranking and a wall mask into a cache entry.
+     * @param ranking Acceleration indices in order of preference, best
+     *                first. Must hold every index from 0 to
+     *                ACCELERATION_COUNT - 1 exactly once.
+     * @param wallMask Bit i is set if acceleration i lands on a wall
+     * @return The packed entry, which is never MISSING
+     */
+    public static long createEntry(final int[] ranking, final int wallMask) {
+        long result = FILLED_FLAG | ((long) wallMask << WALL_SHIFT);
+        for (int rank = 0; rank < ACCELERATION_COUNT; rank++) {
+            result |= (long) ranking[rank] << (rank * RANK_BITS);
+        }
+        return result;
+    }
+
+    /**
+     * Return the acceleration index at a given rank in an entry.
+     * @param entry An entry from get() or createEntry()
+     * @param rank 0 for the most preferred acceleration, up to
+     *             ACCELERATION_COUNT - 1
+     * @return The acceleration index
+     */
+    public static int getRanked(final long entry, final int rank) {
+        return (int) (entry >>> (rank * RANK_BITS)) & RANK_MASK;
+    }
+
+    /**
+     * Determine whether an acceleration lands on a wall.
+     * @param entry An entry from get() or createEntry()
+     * @param acceleration The acceleration index
+     * @return Returns true if the acceleration lands on a wall
+     */
+    public static boolean isWall(final long entry, final int acceleration) {
+        return ((entry >>> (WALL_SHIFT + acceleration)) & 1) != 0;
+    }
+
+    /**
+     * Look up an entry.
+     * @param position The packed position
+     * @param velocity The packed velocity
+     * @param goal The packed goal
+     * @return The entry, or MISSING if it isn't in the cache
+     */
+    public long get(final long position, final long velocity, final long goal) {
+        int slot = getSlot(position, velocity, goal);
+        if (mEntries[slot] != MISSING && mPositions[slot] == position && mVelocities[slot] == velocity
+                && mGoals[slot] == goal) {
+            return mEntries[slot];
+        }
+        return MISSING;
+    }
+
+    /**
+     * Store an entry, replacing anything else in the same slot.
+     * @param position The packed position
+     * @param velocity The packed velocity
+     * @param goal The packed goal
+     * @param entry An entry from createEntry()
+     */
+    public void put(final long position, final long velocity, final long goal, final long entry) {
+        int slot = getSlot(position, velocity, goal);
+        mPositions[slot] = position;
+        mVelocities[slot] = velocity;
+        mGoals[slot] = goal;
+        mEntries[slot] = entry;
+    }
+
+
+
+    private int getSlot(final long position, final long velocity, final long goal) {
+        long hash = Util.mixSeed(Util.mixSeed(position, velocity), goal);
+        return (int) hash & mSlotMask;
+    }
+}
@@ -0,0 +1,143 @@
+package com.erichamion.racetrack;
+
+/**
+ * Works out what happens when a player moves along its velocity: where
+ * it ends up, whether it crashes, and whether it wins. This is the one
+ * place the movement rules live, so Track and GameState can't drift
+ * apart.
+ *
+ * The player follows the straight line from its position to the end of
+ * its move. Touching a wall crashes it on the spot. Otherwise, if the
+ * line crosses any open track and the end of the move is taken by
+ * another player, it crashes there. Crossing a finish line space in the
+ * finish line's direction wins, and the player stops on that space, even
+ * if it also crashed into another player.
+ *
+ * Usage:
+ * <pre>
+ *     resolver.resolve(track, others, row, col, velocityRow, velocityCol);
+ *     if (resolver.isCrashed()) ...
+ *     if (resolver.isWinner()) ...
+ *     moveTo(resolver.getRow(), resolver.getCol());
+ * </pre>
+ *
+ * Created by me on 10/16/26.
+ */
+final class MoveResolver {
+    private final PathCursor mPathCursor = new PathCursor();
+    private int mRow;
+    private int mCol;
+    private boolean mIsCrashed;
+    private boolean mIsWinner;
+
+
+    /**
+     * Work out a single move. The results are available from the getters
+     * until the next call.
+     * @param track The Track whose layout the move is made on
+     * @param others Where the other players are. Must not include the
+     *               moving player.
+     * @param row The row the player starts on
+     * @param col The column the player starts on
+     * @param velocityRow The row velocity, after this turn's acceleration
+     * @param velocityCol The column velocity, after this turn's
+     *                    acceleration
+     */
+    public void resolve(final Track track, final OccupancyIndex others, final int row, final int col,
+                        final int velocityRow, final int velocityCol) {
+        final int endRow = row + velocityRow;
+        final int endCol = col + velocityCol;
+        mIsCrashed = false;
+        mIsWinner = false;
+
+        boolean isOverTrack = false;
+        boolean isOverFinish = false;
+        int winRow = 0;
+        int winCol = 0;
+        int winDirectionRow = 0;
+        int winDirectionCol = 0;
+        mPathCursor.reset(row, col, endRow, endCol);
+        while (mPathCursor.next()) {
+            int pathRow = mPathCursor.getRow();
+            int pathCol = mPathCursor.getCol();
+            switch (track.getSpace(pathRow, pathCol)) {
+                case TRACK:
+                    // As long as we don't collide with another car, do
+                    // nothing.
+                    isOverTrack = true;
+                    break;
+                case WALL:
+                    // Crash, and move directly to the location that
+                    // caused the crash. No need to keep going
+                    mIsCrashed = true;
+                    mRow = pathRow;
+                    mCol = pathCol;
+                    return;
+                case FINISH_UP:
+                    // For all of the finishes, set up a potential win,
+                    // but don't act on it yet. We still might crash.
+                    winDirectionRow = -1;
+                    isOverFinish = true;
+                    winRow = pathRow;
+                    winCol = pathCol;
+                    break;
+                case FINISH_DOWN:
+                    winDirectionRow = 1;
+                    isOverFinish = true;
+                    winRow = pathRow;
+                    winCol = pathCol;
+                    break;
+                case FINISH_LEFT:
+                    winDirectionCol = -1;
+                    isOverFinish = true;
+                    winRow = pathRow;
+                    winCol = pathCol;
+                    break;
+                case FINISH_RIGHT:
+                    winDirectionCol = 1;
+                    isOverFinish = true;
+                    winRow = pathRow;
+                    winCol = pathCol;
+                    break;
+            }
+        }
+
+        if (isOverTrack && others.getCount(endRow, endCol) > 0) {
+            mIsCrashed = true;
+        }
+
+        if (isOverFinish
+                && (winDirectionRow == 0 || Util.isSignSame(winDirectionRow, velocityRow))
+                && (winDirectionCol == 0 || Util.isSignSame(winDirectionCol, velocityCol))) {
+            mIsWinner = true;
+            mRow = winRow;
+            mCol = winCol;
+            return;
+        }
+
+        mRow = endRow;
+        mCol = endCol;
+    }
+
+    /**
+     * @return The row where the player ends up
+     */
+    public int getRow() {
+        return mRow;
+    }
+
+    /**
+     * @return The column where the player ends up
+     */
+    public int getCol() {
+        return mCol;
+    }
+
+    public boolean isCrashed() {
+        return mIsCrashed;
+    }
+
+    public boolean isWinner() {
+        return mIsWinner;
+    }
+}
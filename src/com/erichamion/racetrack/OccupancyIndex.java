@@ -0,0 +1,137 @@
+package com.erichamion.racetrack;
+
+import java.util.Arrays;
+
+/**
+ * Counts the players in each occupied grid space, so that checking a
+ * space for other players takes constant time no matter how many players
+ * there are. More than one player can share a space (a player that
+ * crashes into another ends up on the same space, and crashed players can
+ * pile up on the same wall).
+ *
+ * Spaces are kept in an open-addressed hash table of packed GridPoints
+ * rather than in a grid, so the memory and copying cost depend on the
+ * number of players, not the size of the track. The number of players
+ * never changes, so the table never needs to grow.
+ *
+ * Created by me on 10/16/26.
+ */
+final class OccupancyIndex {
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private final long[] mSpaces;
+    private final int[] mCounts;
+    private final int mMask;
+
+
+    /**
+     * Create an empty index.
+     * @param playerCount The most players that will ever be in the index
+     *                    at once
+     */
+    public OccupancyIndex(final int playerCount) {
+        // Keep the table at most half full, so probe sequences stay short.
+        int capacity = Integer.highestOneBit(Math.max(2, playerCount) * 2 - 1) << 1;
+        mSpaces = new long[capacity];
+        mCounts = new int[capacity];
+        mMask = capacity - 1;
+        Arrays.fill(mSpaces, EMPTY);
+    }
+
+    /**
+     * Copy another index.
+     * @param other The index to copy
+     */
+    public OccupancyIndex(final OccupancyIndex other) {
+        mSpaces = other.mSpaces.clone();
+        mCounts = other.mCounts.clone();
+        mMask = other.mMask;
+    }
+
+    /**
+     * Return the number of players in a space.
+     * @param row The row of the space
+     * @param col The column of the space
+     * @return The number of players, 0 if the space is empty
+     */
+    public int getCount(final int row, final int col) {
+        long space = GridPoint.pack(row, col);
+        for (int slot = getSlot(space); ; slot = (slot + 1) & mMask) {
+            long current = mSpaces[slot];
+            if (current == space) return mCounts[slot];
+            if (current == EMPTY) return 0;
+        }
+    }
+
+    /**
+     * Record one more player in a space.
+     * @param position The space
+     */
+    public void add(final GridPoint position) {
+        add(position.getRow(), position.getCol());
+    }
+
+    /**
+     * Record one more player in a space.
+     * @param row The row of the space
+     * @param col The column of the space
+     */
+    public void add(final int row, final int col) {
+        long space = GridPoint.pack(row, col);
+        int slot = getSlot(space);
+        while (mSpaces[slot] != EMPTY && mSpaces[slot] != space) {
+            slot = (slot + 1) & mMask;
+        }
+        mSpaces[slot] = space;
+        mCounts[slot]++;
+    }
+
+    /**
+     * Record one fewer player in a space. The space must have been added.
+     * @param position The space
+     */
+    public void remove(final GridPoint position) {
+        remove(position.getRow(), position.getCol());
+    }
+
+    /**
+     * Record one fewer player in a space. The space must have been added.
+     * @param row The row of the space
+     * @param col The column of the space
+     */
+    public void remove(final int row, final int col) {
+        long space = GridPoint.pack(row, col);
+        int slot = getSlot(space);
+        while (mSpaces[slot] != space) {
+            if (mSpaces[slot] == EMPTY) {
+                throw new IllegalStateException("Space is not occupied: " + GridPoint.of(row, col));
+            }
+            slot = (slot + 1) & mMask;
+        }
+        if (--mCounts[slot] > 0) return;
+
+        // Delete by shifting later entries of the same probe sequence
+        // back, so that lookups never stop early at a gap.
+        int gap = slot;
+        for (int next = (gap + 1) & mMask; mSpaces[next] != EMPTY; next = (next + 1) & mMask) {
+            int home = getSlot(mSpaces[next]);
+            // Move the entry into the gap unless its home slot lies
+            // (cyclically) after the gap and at or before its current
+            // slot.
+            boolean isHomeBetween = (gap <= next) ? (gap < home && home <= next) : (gap < home || home <= next);
+            if (!isHomeBetween) {
+                mSpaces[gap] = mSpaces[next];
+                mCounts[gap] = mCounts[next];
+                gap = next;
+            }
+        }
+        mSpaces[gap] = EMPTY;
+        mCounts[gap] = 0;
+    }
+
+
+
+    private int getSlot(final long space) {
+        return (int) Util.mixSeed(space, 0) & mMask;
+    }
+}
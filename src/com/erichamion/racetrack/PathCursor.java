@@ -0,0 +1,186 @@
+package com.erichamion.racetrack;
+
+/**
+ * Steps through all of the grid spaces crossed by a straight line of
+ * motion between two spaces, in order of travel, starting with the
+ * starting space and ending with the ending space. Each space is visited
+ * once. A single PathCursor can be reused for any number of paths, and
+ * stepping through a path does not allocate anything, so callers can
+ * cheaply stop at the first space they are interested in (for example,
+ * the first wall).
+ *
+ * Usage:
+ * <pre>
+ *     cursor.reset(startRow, startCol, endRow, endCol);
+ *     while (cursor.next()) {
+ *         doSomething(cursor.getRow(), cursor.getCol());
+ *     }
+ * </pre>
+ *
+ * To find the spaces, pick the axis that has the largest movement. For
+ * every grid boundary along that axis, test the line of motion at both
+ * the center and the edges of the cell, identifying the position along
+ * the other axis. If the
+ * position is within a grid cell, that cell is on the path. If the
+ * position is exactly on the boundary between two cells, neither cell is
+ * added. This means we can squeeze through diagonal corners under the
+ * right conditions. All of the arithmetic is done on integers, so the
+ * boundary test is exact.
+ *
+ * Created by me on 10/16/26.
+ */
+public final class PathCursor {
+    // Where we are within a single step along the main axis
+    private static final int PHASE_CENTER = 0;
+    private static final int PHASE_EDGE_NEAR = 1;
+    private static final int PHASE_EDGE_FAR = 2;
+
+    private boolean mIsMainAxisRow;
+    private int mStartMain;
+    private int mStartSecond;
+    private int mStepDirection;
+    private long mMainDistance;
+    private long mSecondDifference;
+
+    private long mStep;
+    private int mPhase;
+    private int mEdgeSecond;
+    private boolean mIsDone = true;
+
+    private int mRow;
+    private int mCol;
+    private boolean mHasCurrent;
+
+
+    /**
+     * Start a new path, discarding any path in progress. The first call
+     * to next() will move to the starting space.
+     * @param startRow Row of the starting space
+     * @param startCol Column of the starting space
+     * @param endRow Row of the ending space
+     * @param endCol Column of the ending space
+     */
+    public void reset(final int startRow, final int startCol, final int endRow, final int endCol) {
+        int rowDifference = endRow - startRow;
+        int colDifference = endCol - startCol;
+        mIsMainAxisRow = Math.abs(rowDifference) > Math.abs(colDifference);
+        int mainDifference = mIsMainAxisRow ? rowDifference : colDifference;
+
+        mStartMain = mIsMainAxisRow ? startRow : startCol;
+        mStartSecond = mIsMainAxisRow ? startCol : startRow;
+        mStepDirection = (mainDifference >= 0) ? 1 : -1;
+        mMainDistance = Math.abs(mainDifference);
+        mSecondDifference = mIsMainAxisRow ? colDifference : rowDifference;
+
+        mStep = 0;
+        mPhase = PHASE_CENTER;
+        mIsDone = false;
+        mHasCurrent = false;
+    }
+
+    /**
+     * Start a new path, discarding any path in progress.
+     * @param startPoint The starting space
+     * @param endPoint The ending space
+     */
+    public void reset(final GridPoint startPoint, final GridPoint endPoint) {
+        reset(startPoint.getRow(), startPoint.getCol(), endPoint.getRow(), endPoint.getCol());
+    }
+
+    /**
+     * Move to the next space along the path.
+     * @return Returns true if there is a next space, which is now
+     * available from getRow() and getCol(). Returns false if the end of
+     * the path has already been passed.
+     */
+    public boolean next() {
+        while (!mIsDone) {
+            int main = mStartMain + mStepDirection * (int) mStep;
+            int second;
+
+            if (mPhase == PHASE_CENTER) {
+                if (mStep == mMainDistance) {
+                    // The ending space is always part of the path.
+                    mIsDone = true;
+                    second = mStartSecond + (int) mSecondDifference;
+                } else {
+                    // Integer coordinate - if applicable, use just the
+                    // single grid space.
+                    mPhase = PHASE_EDGE_NEAR;
+                    long numerator = mSecondDifference * mStep;
+                    if (isHalfInteger(numerator, mMainDistance)) continue;
+                    second = mStartSecond + round(numerator, mMainDistance);
+                }
+
+            } else if (mPhase == PHASE_EDGE_NEAR) {
+                // Half-integer coordinate - if applicable, use the grid
+                // spaces to either side.
+                long numerator = mSecondDifference * (2 * mStep + 1);
+                long denominator = 2 * mMainDistance;
+                if (isHalfInteger(numerator, denominator)) {
+                    mStep++;
+                    mPhase = PHASE_CENTER;
+                    continue;
+                }
+                mEdgeSecond = mStartSecond + round(numerator, denominator);
+                mPhase = PHASE_EDGE_FAR;
+                second = mEdgeSecond;
+
+            } else {
+                main += mStepDirection;
+                second = mEdgeSecond;
+                mStep++;
+                mPhase = PHASE_CENTER;
+            }
+
+            int row = mIsMainAxisRow ? main : second;
+            int col = mIsMainAxisRow ? second : main;
+            // Neighboring tests frequently land in the same space. Only
+            // report each space once.
+            if (mHasCurrent && row == mRow && col == mCol) continue;
+
+            mRow = row;
+            mCol = col;
+            mHasCurrent = true;
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Return the row of the current space. Only valid after next() has
+     * returned true.
+     * @return The row of the current space
+     */
+    public int getRow() {
+        return mRow;
+    }
+
+    /**
+     * Return the column of the current space. Only valid after next()
+     * has returned true.
+     * @return The column of the current space
+     */
+    public int getCol() {
+        return mCol;
+    }
+
+
+
+    /**
+     * Determine whether numerator / denominator is exactly (n + 0.5) for
+     * some integer n. The denominator must be positive.
+     */
+    private static boolean isHalfInteger(final long numerator, final long denominator) {
+        return Math.floorMod(2 * numerator, 2 * denominator) == denominator;
+    }
+
+    /**
+     * Round numerator / denominator to the nearest integer, rounding
+     * halves up like Math.round. The denominator must be positive.
+     */
+    private static int round(final long numerator, final long denominator) {
+        return (int) Math.floorDiv(2 * numerator + denominator, 2 * denominator);
+    }
+}
@@ -8,28 +8,136 @@ import java.util.*;
 public class PathFinder {
     // Give impassable nodes a cost too high for anything else to match,
     // but not so high as to create any possibility of overflow.
-    private static final double COST_IMPASSABLE = Double.MAX_VALUE / 1e6;
+    static final double COST_IMPASSABLE = Double.MAX_VALUE / 1e6;
     private static final double COST_OPEN = 1.0;
     private static final double COST_NEAR_WALL = 2.0;
+    // Base cost of moving into a space, indexed by the space's distance
+    // to the nearest wall. Spaces farther away than the last entry use
+    // the last entry.
+    private static final double[] COST_BY_WALL_DISTANCE = {COST_IMPASSABLE, COST_NEAR_WALL, COST_OPEN};
     private static final double COST_DIRECTION_CONSTANT = 0.001;
+    // Tracks with at least this many spaces are searched hierarchically
+    // by default, rather than flooded with a DistanceField.
+    private static final long HIERARCHICAL_THRESHOLD = 1 << 22;
+    // Smoothing never looks more than this many steps past the last
+    // waypoint, so long straight stretches are split into waypoints this
+    // far apart.
+    private static final int SMOOTHING_WINDOW = 512;
 
-    private Deque<GridPoint> mPath = new LinkedList<>();
+    /**
+     * How a PathFinder finds its path.
+     */
+    public enum Mode {
+        /**
+         * Follow the track's shared DistanceField downhill. The field
+         * covers every space on the track, so this is best while the
+         * track is small enough to build one.
+         */
+        DISTANCE_FIELD,
+        /**
+         * Search the track's shared ClusterGraph, which only looks at the
+         * clusters the path passes through.
+         */
+        HIERARCHICAL,
+        /**
+         * Search with the track's shared JumpTable, which crosses open
+         * areas in long jumps. Much faster than building a DistanceField
+         * on tracks with wide open areas, but the path may cost slightly
+         * more, so it is never the default. PathFollower.createFactory()
+         * creates players that use it.
+         */
+        JUMP_POINT;
+
+        /**
+         * Return the mode used when none is given.
+         * @param track The Track to find a path on
+         * @return HIERARCHICAL for very large tracks, DISTANCE_FIELD for
+         * anything else
+         */
+        public static Mode getDefault(final Track track) {
+            return ((long) track.getWidth() * track.getHeight() >= HIERARCHICAL_THRESHOLD) ?
+                    HIERARCHICAL : DISTANCE_FIELD;
+        }
+
+        /**
+         * Build the track's shared data that this mode searches with, and
+         * nothing else, so that the first search doesn't have to.
+         * @param track The Track to prepare
+         */
+        public void prepare(final Track track) {
+            switch (this) {
+                case HIERARCHICAL:
+                    track.getClusterGraph();
+                    break;
+                case JUMP_POINT:
+                    track.getJumpTable();
+                    break;
+                default:
+                    track.getFinishDistances();
+                    break;
+            }
+        }
+    }
+
+    private final Track mTrack;
+    // The unsmoothed path, one step at a time
+    private final Iterator<GridPoint> mSteps;
+    // A step taken from mSteps that smoothing hasn't used yet
+    private GridPoint mPendingStep = null;
+    // The waypoint that the next one is smoothed from
+    private GridPoint mLastWaypoint = null;
+    // The next waypoint, if peekNextPathPoint() has already found it
+    private GridPoint mNextWaypoint = null;
+    private final PathCursor mPathCursor = new PathCursor();
 
 
 
     public PathFinder(final Track track, final int playerIndex) {
-        PathNode pathEnd = findBestPath(track, track.getPlayerPos(playerIndex));
-        if (pathEnd != null) {
-            //noinspection StatementWithEmptyBody
-            while (smoothPath(track, pathEnd)) {}
-
-            PathNode currentNode = pathEnd;
-            while (currentNode != null) {
-                mPath.addFirst(currentNode.getPosition());
-                currentNode = currentNode.getPrev();
-            }
+        this(track, playerIndex, Mode.getDefault(track));
+    }
+
+    public PathFinder(final Track track, final int playerIndex, final Mode mode) {
+        this(track, track.getPlayerPos(playerIndex), mode);
+    }
+
+    /**
+     * Find a path from a given space. Only the track layout is read, so
+     * this is safe to run on another thread while the game goes on.
+     *
+     * With DISTANCE_FIELD, the path is found lazily: the constructor only
+     * makes sure the track's shared DistanceField is built, and each
+     * waypoint is found when it is asked for, by walking downhill just
+     * far enough to smooth it. Nothing but the current position is kept,
+     * so memory use doesn't grow with the length of the path. The other
+     * modes search for the whole path up front, and smooth it lazily.
+     * @param track The Track to find a path on
+     * @param start The space to start from
+     * @param mode How to find the path
+     */
+    public PathFinder(final Track track, final GridPoint start, final Mode mode) {
+        mTrack = track;
+        switch (mode) {
+            case HIERARCHICAL:
+                mSteps = iterate(track.getClusterGraph().findPath(start));
+                break;
+            case JUMP_POINT:
+                mSteps = iterate(track.getJumpTable().findPath(start));
+                break;
+            default:
+                mSteps = new DownhillSteps(track, start);
+                break;
         }
+    }
 
+    /**
+     * Smooth a path found some other way, such as by an AnytimePlanner.
+     * @param track The Track the path is on
+     * @param steps Every space on the path, each a single step from the
+     *              one before
+     */
+    public PathFinder(final Track track, final List<GridPoint> steps) {
+        mTrack = track;
+        mSteps = iterate(steps);
     }
 
     /**
@@ -38,7 +146,10 @@ public class PathFinder {
      * @return The next point on the path
      */
     public GridPoint peekNextPathPoint() {
-        return (mPath.isEmpty()) ? null : mPath.peekFirst();
+        if (mNextWaypoint == null) {
+            mNextWaypoint = findNextWaypoint();
+        }
+        return mNextWaypoint;
     }
 
     /**
@@ -46,242 +157,204 @@ public class PathFinder {
      * @return The next point on the path
      */
     public GridPoint getNextPathPoint() {
-        return (mPath.isEmpty()) ? null : mPath.removeFirst();
+        GridPoint result = peekNextPathPoint();
+        mNextWaypoint = null;
+        return result;
     }
 
 
-    private static PathNode findBestPath(final Track track, final GridPoint start) {
-        // Since we don't know where our goals are, use Dijkstra's algorithm.
-        PriorityQueue<PathNode> frontier = new PriorityQueue<>(PathNode.costComparator);
-        frontier.add(new PathNode(start, null, 0.0));
-        Set<PathNode> visited = new TreeSet<>(PathNode.gridPointComparator);
-
-        PathNode endNode = null;
-        while (!frontier.isEmpty()) {
-            PathNode currentNode = frontier.remove();
-
-            // Fail when we run out of passable locations, or succeed when
-            // we reach a finish line.
-            if (currentNode.getTotalCost() >= COST_IMPASSABLE) {
-                break;
-            }
-            Track.SpaceType spaceType = track.getSpace(currentNode.getPosition());
-            if (spaceType == Track.SpaceType.FINISH_UP || spaceType == Track.SpaceType.FINISH_DOWN ||
-                    spaceType == Track.SpaceType.FINISH_LEFT || spaceType == Track.SpaceType.FINISH_RIGHT) {
-                endNode = currentNode;
-                break;
-            }
-
-            PathNode[] neighbors = getNeighbors(currentNode);
-            for (PathNode neighbor : neighbors) {
-                if (visited.contains(neighbor)) continue;
-
-                PathNode realNeighborNode = Util.getObjectFromIterable(frontier, neighbor);
-                boolean needsRemovedFromFrontier = true;
-                if (realNeighborNode == null) {
-                    realNeighborNode = neighbor;
-                    needsRemovedFromFrontier = false;
-                }
-                double totalCostToNeighbor = getMoveCost(track, currentNode, realNeighborNode) + currentNode.getTotalCost();
-                if (totalCostToNeighbor < realNeighborNode.getTotalCost()) {
-                    if (needsRemovedFromFrontier) frontier.remove(realNeighborNode);
+    private static Iterator<GridPoint> iterate(final List<GridPoint> path) {
+        return (path == null) ? Collections.<GridPoint>emptyIterator() : path.iterator();
+    }
 
-                    realNeighborNode.setPrev(currentNode);
-                    realNeighborNode.setTotalCost(totalCostToNeighbor);
-                    frontier.add(realNeighborNode);
-                }
+    /**
+     * Find the next waypoint by smoothing the path in a sliding window.
+     * The first waypoint is the start. After that, steps are taken for as
+     * long as the last waypoint has a clear line of sight to them, and
+     * the last of those becomes the next waypoint. The window is at most
+     * SMOOTHING_WINDOW steps long. Each step in the window costs a line
+     * of sight check as long as its distance from the last waypoint, so
+     * a waypoint costs O(SMOOTHING_WINDOW^2) at worst, on a long straight
+     * stretch, and a whole path of n steps costs O(n * SMOOTHING_WINDOW)
+     * instead of growing quadratically with n.
+     * @return The next waypoint, or null at the end of the path
+     */
+    private GridPoint findNextWaypoint() {
+        GridPoint result = takeStep();
+        if (result != null && mLastWaypoint != null) {
+            for (int stepCount = 1; stepCount < SMOOTHING_WINDOW; stepCount++) {
+                GridPoint step = peekStep();
+                if (step == null || !hasLineOfSight(mLastWaypoint, step)) break;
+                result = takeStep();
             }
-
-            visited.add(currentNode);
         }
-
-        return endNode;
+        if (result != null) {
+            mLastWaypoint = result;
+        }
+        return result;
     }
 
-    private boolean smoothPath(final Track track, final PathNode pathEnd) {
-        boolean madeChanges = false;
-        PathNode middleNode = pathEnd.getPrev();
-        if (middleNode == null) {
-            // pathEnd is also the path start, can't change anything
-            return madeChanges;
-        }
-        PathNode anchorNode = middleNode.getPrev();
-        if (anchorNode == null) {
-            // middleNode is the path start, can't remove it
-            return madeChanges;
+    private GridPoint peekStep() {
+        if (mPendingStep == null && mSteps.hasNext()) {
+            mPendingStep = mSteps.next();
         }
+        return mPendingStep;
+    }
 
-        boolean hasLineOfSight = true;
-        for (GridPoint point : track.getPath(pathEnd.getPosition(), anchorNode.getPosition())) {
-            if (track.getSpace(point) == Track.SpaceType.WALL) {
-                hasLineOfSight = false;
-                break;
-            }
-        }
+    private GridPoint takeStep() {
+        GridPoint result = peekStep();
+        mPendingStep = null;
+        return result;
+    }
 
-        if (hasLineOfSight) {
-            pathEnd.setPrev(anchorNode);
-            madeChanges = true;
+    private boolean hasLineOfSight(final GridPoint start, final GridPoint end) {
+        mPathCursor.reset(start, end);
+        while (mPathCursor.next()) {
+            if (mTrack.isWall(mPathCursor.getRow(), mPathCursor.getCol())) return false;
         }
-
-        return madeChanges || smoothPath(track, pathEnd.getPrev());
+        return true;
     }
 
 
 
     /**
-     * Retrieves all 8 neighbors of a node. Does not check the neighboring
-     * nodes for validity in any way.
-     * @param centerNode The central node for which to get neighbors
-     * @return A List containing 8 PathNodes, each representing a
-     * neighbor (horizontal, vertical, or diagonal) of the original node.
-     * The GridPoints may represent locations that are outside of the
-     * track or otherwise invalid.
+     * Returns true if a space is plain track far enough from the walls
+     * that moving into it always costs the lowest amount, from any
+     * direction. Used by the track's JumpTable.
      */
-    private static PathNode[] getNeighbors(final PathNode centerNode) {
-        PathNode[] result = new PathNode[8];
-
-        int arrayIndex = 0;
-        GridPoint displacement = new GridPoint(-1, -1);
-        for (; displacement.getRow() <= 1; displacement.setRow(displacement.getRow() + 1)) {
-            for (displacement.setCol(-1); displacement.getCol() <= 1; displacement.setCol(displacement.getCol() + 1)) {
-                if (displacement.getRow() == 0 && displacement.getCol() == 0) continue;
-
-                GridPoint point = GridPoint.add(centerNode.getPosition(), displacement);
-                result[arrayIndex++] = new PathNode(point, centerNode, Double.MAX_VALUE);
-            }
-        }
+    static boolean isOpenSpace(final Track track, final int row, final int col) {
+        return track.getWallDistance(row, col) >= COST_BY_WALL_DISTANCE.length - 1
+                && track.getSpace(row, col) == Track.SpaceType.TRACK;
+    }
 
-        return result;
+    /**
+     * Returns the cost of moving from one space to a neighboring space,
+     * when the first space is the start of the path. Also used to build
+     * the track's DistanceField.
+     */
+    static double getMoveCost(final Track track, final int fromRow, final int fromCol,
+                                      final int toRow, final int toCol) {
+        return getMoveCost(track, fromRow, fromCol, fromRow, fromCol, toRow, toCol);
     }
 
-    private static double getMoveCost(final Track track, final PathNode fromNode, final PathNode toNode) {
-        switch (track.getSpace(toNode.getPosition())) {
+    /**
+     * Returns the cost of moving from one space to a neighboring space,
+     * given the space before that. If the previous space is the same as
+     * the from space, there is no direction change penalty.
+     */
+    private static double getMoveCost(final Track track, final int prevRow, final int prevCol,
+                                      final int fromRow, final int fromCol, final int toRow, final int toCol) {
+        switch (track.getSpace(toRow, toCol)) {
             case WALL:
                 return COST_IMPASSABLE;
             case TRACK:
-                return getOpenSpaceMoveCost(track, fromNode, toNode);
+                return getOpenSpaceMoveCost(track, prevRow, prevCol, fromRow, fromCol, toRow, toCol);
             case FINISH_UP:
-                return (GridPoint.subtract(toNode.getPosition(), fromNode.getPosition()).getRow() == -1) ?
-                        getOpenSpaceMoveCost(track, fromNode, toNode) : COST_IMPASSABLE;
+                return (toRow - fromRow == -1) ?
+                        getOpenSpaceMoveCost(track, prevRow, prevCol, fromRow, fromCol, toRow, toCol) :
+                        COST_IMPASSABLE;
             case FINISH_DOWN:
-                return (GridPoint.subtract(toNode.getPosition(), fromNode.getPosition()).getRow() == 1) ?
-                        getOpenSpaceMoveCost(track, fromNode, toNode) : COST_IMPASSABLE;
+                return (toRow - fromRow == 1) ?
+                        getOpenSpaceMoveCost(track, prevRow, prevCol, fromRow, fromCol, toRow, toCol) :
+                        COST_IMPASSABLE;
             case FINISH_LEFT:
-                return (GridPoint.subtract(toNode.getPosition(), fromNode.getPosition()).getCol() == -1) ?
-                        getOpenSpaceMoveCost(track, fromNode, toNode) : COST_IMPASSABLE;
+                return (toCol - fromCol == -1) ?
+                        getOpenSpaceMoveCost(track, prevRow, prevCol, fromRow, fromCol, toRow, toCol) :
+                        COST_IMPASSABLE;
             case FINISH_RIGHT:
-                return (GridPoint.subtract(toNode.getPosition(), fromNode.getPosition()).getCol() == 1) ?
-                        getOpenSpaceMoveCost(track, fromNode, toNode) : COST_IMPASSABLE;
+                return (toCol - fromCol == 1) ?
+                        getOpenSpaceMoveCost(track, prevRow, prevCol, fromRow, fromCol, toRow, toCol) :
+                        COST_IMPASSABLE;
             default:
                 // Should never happen
                 return COST_IMPASSABLE;
         }
     }
 
-    private static double getOpenSpaceMoveCost(final Track track, final PathNode fromNode, final PathNode toNode) {
+    private static double getOpenSpaceMoveCost(final Track track, final int prevRow, final int prevCol,
+                                               final int fromRow, final int fromCol,
+                                               final int toRow, final int toCol) {
         // Prefer straight paths that don't hug the walls
-        double baseCost = isNearWall(track, toNode) ? COST_NEAR_WALL : COST_OPEN;
+        int wallDistance = Math.min(track.getWallDistance(toRow, toCol), COST_BY_WALL_DISTANCE.length - 1);
+        double baseCost = COST_BY_WALL_DISTANCE[wallDistance];
         double directionPenalty = 0.0;
-        if (fromNode.getPrev() != null) {
-            GridPoint oldDirection =
-                    GridPoint.subtract(fromNode.getPosition(), fromNode.getPrev().getPosition());
-            GridPoint newDirection = GridPoint.subtract(toNode.getPosition(), fromNode.getPosition());
-            directionPenalty = COST_DIRECTION_CONSTANT * (1 - GridPoint.unitDotProduct(oldDirection, newDirection));
+        if (prevRow != fromRow || prevCol != fromCol) {
+            directionPenalty = COST_DIRECTION_CONSTANT * (1 - GridPoint.unitDotProduct(
+                    fromRow - prevRow, fromCol - prevCol, toRow - fromRow, toCol - fromCol));
         }
         return baseCost + directionPenalty;
     }
 
-    private static boolean isNearWall(final Track track, final PathNode node) {
-        PathNode[] neighbors = getNeighbors(node);
-        for (PathNode neighbor : neighbors) {
-            if (track.getSpace(neighbor.getPosition()) == Track.SpaceType.WALL) {
-                return true;
-            }
-        }
-        return false;
-    }
-
-
-    private static class PathNode {
-        private GridPoint mPosition;
-        private PathNode mPrev;
-        private Double mTotalCost;
-
-        /**
-         * Compares nodes based on the total cost from the starting point
-         * to each node. Note that this Comparator is NOT consistent with
-         * PathNode#equals.
-         */
-        public static final Comparator<PathNode> costComparator = new Comparator<PathNode>() {
-            @Override
-            public int compare(PathNode o1, PathNode o2) {
-                return o1.getTotalCost().compareTo(o2.getTotalCost());
-            }
-        };
-
-        /**
-         * Compares nodes based on their location on the grid.
-         */
-        public static final Comparator<PathNode> gridPointComparator = new Comparator<PathNode>() {
-            @Override
-            public int compare(PathNode o1, PathNode o2) {
-                // I don't care too much about what the actual order is,
-                // as long as it is well defined.
-                // Directly access the mPosition members to avoid creating
-                // new copies.
-                int result = o1.mPosition.getRow() - o2.mPosition.getRow();
-                if (result == 0) {
-                    result = o1.mPosition.getCol() - o2.mPosition.getCol();
-                }
-                return result;
-            }
-        };
-
-        public PathNode() { }
-
-        public PathNode(final GridPoint pos, final PathNode prev, final double totalCost) {
-            mPosition = new GridPoint(pos);
-            mPrev = prev;
-            mTotalCost = totalCost;
-        }
-
-        public Double getTotalCost() {
-            return mTotalCost;
-        }
-
-        public void setTotalCost(final double totalCost) {
-            mTotalCost = totalCost;
-        }
-
-        public GridPoint getPosition() {
-            return mPosition;
-        }
-
-        public PathNode getPrev() {
-            return mPrev;
+    /**
+     * Walks a cheapest path from the start to a finish line by following
+     * the track's shared distance field downhill, one step per call to
+     * next(). Each step goes to the neighbor with the lowest move cost
+     * plus remaining distance. The direction change penalty is included
+     * in the comparison, which breaks ties in favor of straight lines.
+     */
+    private static class DownhillSteps implements Iterator<GridPoint> {
+        private final Track mTrack;
+        private final DistanceField mField;
+        private int mPrevRow;
+        private int mPrevCol;
+        private int mRow;
+        private int mCol;
+        private boolean mIsStarted = false;
+        private boolean mHasNext;
+
+        public DownhillSteps(final Track track, final GridPoint start) {
+            mTrack = track;
+            mField = track.getFinishDistances();
+            mRow = start.getRow();
+            mCol = start.getCol();
+            mPrevRow = mRow;
+            mPrevCol = mCol;
+            mHasNext = mField.isReachable(mRow, mCol);
         }
 
-        public void setPrev(final PathNode prev) {
-            mPrev = prev;
+        @Override
+        public boolean hasNext() {
+            return mHasNext;
         }
 
         @Override
-        public boolean equals(final Object obj) {
-            if (obj instanceof PathNode) {
-                PathNode secondNode = (PathNode) obj;
-                return gridPointComparator.compare(this, secondNode) == 0;
-            } else if (obj instanceof GridPoint) {
-                GridPoint point = (GridPoint) obj;
-                return this.mPosition.equals(point);
+        public GridPoint next() {
+            if (!mHasNext) throw new NoSuchElementException();
+            if (mIsStarted) {
+                step();
             } else {
-                throw new ClassCastException();
+                mIsStarted = true;
             }
+            mHasNext = !mTrack.isFinish(mRow, mCol);
+            return GridPoint.of(mRow, mCol);
         }
 
-        @Override
-        public String toString() {
-            return "Location: " + mPosition.toString() + "; Cost: " + mTotalCost.toString();
+        private void step() {
+            int bestRow = mRow;
+            int bestCol = mCol;
+            double bestCost = DistanceField.UNREACHABLE;
+            for (int dRow = -1; dRow <= 1; dRow++) {
+                for (int dCol = -1; dCol <= 1; dCol++) {
+                    if (dRow == 0 && dCol == 0) continue;
+                    int neighborRow = mRow + dRow;
+                    int neighborCol = mCol + dCol;
+
+                    double moveCost = getMoveCost(mTrack, mPrevRow, mPrevCol, mRow, mCol, neighborRow, neighborCol);
+                    if (moveCost >= COST_IMPASSABLE) continue;
+
+                    double totalCost = moveCost + mField.getDistance(neighborRow, neighborCol);
+                    if (totalCost < bestCost) {
+                        bestCost = totalCost;
+                        bestRow = neighborRow;
+                        bestCol = neighborCol;
+                    }
+                }
+            }
+
+            mPrevRow = mRow;
+            mPrevCol = mCol;
+            mRow = bestRow;
+            mCol = bestCol;
         }
     }
 }
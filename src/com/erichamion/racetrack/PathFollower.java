@@ -1,15 +1,75 @@
 package com.erichamion.racetrack;
 
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Created by me on 8/19/15.
  */
-public class PathFollower {
-    private final PathFinder mPathFinder;
+public class PathFollower implements PlayerController {
+    /**
+     * Creates a PathFinder and a PathFollower for each player. PathFollowers
+     * make no random choices, so the seed is ignored.
+     */
+    public static final PlayerController.Factory FACTORY = new PlayerController.Factory() {
+        @Override
+        public PlayerController create(final Track track, final int playerIndex, final long seed) {
+            return new PathFollower(track, new PathFinder(track, playerIndex), playerIndex);
+        }
+    };
+
+    /**
+     * Creates PathFollowers that find their paths a given way instead of
+     * the default one for the track (see PathFinder.Mode.getDefault()).
+     * PathFollowers make no random choices, so the seed is ignored.
+     * @param mode How to find each player's path
+     * @return The Factory
+     */
+    public static PlayerController.Factory createFactory(final PathFinder.Mode mode) {
+        return new PlayerController.Factory() {
+            @Override
+            public PlayerController create(final Track track, final int playerIndex, final long seed) {
+                return new PathFollower(track, new PathFinder(track, playerIndex, mode), playerIndex);
+            }
+        };
+    }
+
+    public static final long NO_TIME_LIMIT = 0;
+    public static final long DEFAULT_MOVE_TIME_LIMIT_MILLIS = 50;
+
+    /**
+     * Creates PathFollowers that plan with an AnytimePlanner for up to
+     * DEFAULT_MOVE_TIME_LIMIT_MILLIS per move.
+     */
+    public static final PlayerController.Factory ANYTIME_FACTORY =
+            createAnytimeFactory(DEFAULT_MOVE_TIME_LIMIT_MILLIS);
+
+    // Null until mPendingPathFinder is done, or until mPlanner finds a
+    // path
+    private PathFinder mPathFinder;
+    private final Future<PathFinder> mPendingPathFinder;
+    private final AnytimePlanner mPlanner;
+    private final long mMoveTimeLimitNanos;
+    private final int mMoveWorkLimit;
+    // Cost of the AnytimePlanner path being followed
+    private double mPlanCost = Double.POSITIVE_INFINITY;
     private final Track mTrack;
     private final int mPlayerIndex;
     private GridPoint mGoal;
+    // Shared with the other PathFollowers on the track layout and the
+    // same thread. Taken on the first move, from the thread the game is
+    // played on.
+    private MoveCache mMoveCache = null;
+    // Created the first time the path is blocked
+    private IncrementalPlanner mReplanner = null;
+    // Replaces the rest of the PathFinder's path once a replan succeeds
+    private Deque<GridPoint> mReplannedPath = null;
+    private final Set<GridPoint> mObstacles = new HashSet<>();
+    private final PathCursor mPathCursor = new PathCursor();
     // private GridPoint mNextGoal;
     // private GridPoint mNextGoalDiff;
 
@@ -18,27 +78,162 @@ public class PathFollower {
         int i = 0;
         for (int row = -1; row <= 1; row++) {
             for (int col = -1; col <= 1; col++) {
-                ALL_DIRECTIONS[i++] = new GridPoint(row, col);
+                ALL_DIRECTIONS[i++] = GridPoint.of(row, col);
             }
         }
     }
 
+    /**
+     * Returns a Factory that finds each player's path on an executor
+     * instead of while creating the PathFollower, so creating them takes
+     * almost no time no matter how many players or how big the track.
+     * Until its path is ready, each PathFollower makes a fallback move
+     * (see getMove()). PathFollowers make no random choices, so the seed
+     * is ignored.
+     * @param executor The executor to find the paths on. It must keep
+     *                 running until every path is found.
+     * @return The Factory
+     */
+    public static PlayerController.Factory createAsyncFactory(final ExecutorService executor) {
+        return new PlayerController.Factory() {
+            @Override
+            public PlayerController create(final Track track, final int playerIndex, final long seed) {
+                // The game may move players before the path is found, so
+                // take the start now.
+                final GridPoint start = track.getPlayerPos(playerIndex);
+                Future<PathFinder> pathFinder = executor.submit(new Callable<PathFinder>() {
+                    @Override
+                    public PathFinder call() {
+                        return new PathFinder(track, start, PathFinder.Mode.getDefault(track));
+                    }
+                });
+                return new PathFollower(track, pathFinder, playerIndex);
+            }
+        };
+    }
+
+    /**
+     * Returns a Factory for PathFollowers that plan with an
+     * AnytimePlanner instead of a PathFinder. Each call to getMove()
+     * improves the plan until the time limit, then moves along the best
+     * path found so far, switching whenever a cheaper one turns up. The
+     * limit covers only the planning, not choosing the move. Until there
+     * is any path, each PathFollower makes a fallback move (see
+     * getMove()). PathFollowers make no random choices, so the seed is
+     * ignored.
+     * @param moveTimeLimitMillis Wall-clock time to plan for each move
+     * @return The Factory
+     */
+    public static PlayerController.Factory createAnytimeFactory(final long moveTimeLimitMillis) {
+        return new PlayerController.Factory() {
+            @Override
+            public PlayerController create(final Track track, final int playerIndex, final long seed) {
+                return new PathFollower(track, new AnytimePlanner(track, track.getPlayerPos(playerIndex)),
+                        playerIndex, moveTimeLimitMillis, AnytimePlanner.NO_WORK_LIMIT);
+            }
+        };
+    }
+
+    /**
+     * Returns a Factory like createAnytimeFactory(), but each call to
+     * getMove() improves the plan by a fixed amount of work instead of
+     * for a fixed time (see AnytimePlanner.improveBy()). The moves don't
+     * depend on how fast the machine is, so the same game always plays
+     * out the same way.
+     * @param moveWorkLimit Units of planning work for each move
+     * @return The Factory
+     */
+    public static PlayerController.Factory createFixedWorkAnytimeFactory(final int moveWorkLimit) {
+        return new PlayerController.Factory() {
+            @Override
+            public PlayerController create(final Track track, final int playerIndex, final long seed) {
+                return new PathFollower(track, new AnytimePlanner(track, track.getPlayerPos(playerIndex)),
+                        playerIndex, NO_TIME_LIMIT, moveWorkLimit);
+            }
+        };
+    }
+
     public PathFollower(final Track track, final PathFinder pathFinder, final int playerIndex) {
         mTrack = track;
         mPathFinder = pathFinder;
+        mPendingPathFinder = null;
+        mPlanner = null;
+        mMoveTimeLimitNanos = 0;
+        mMoveWorkLimit = 0;
         mPlayerIndex = playerIndex;
         updateGoal();
     }
 
+    /**
+     * Create a PathFollower whose path is still being found.
+     * @param track The Track
+     * @param pathFinder The PathFinder, once it has found the path from
+     *                   the player's starting position
+     * @param playerIndex The player to control
+     */
+    public PathFollower(final Track track, final Future<PathFinder> pathFinder, final int playerIndex) {
+        mTrack = track;
+        mPathFinder = null;
+        mPendingPathFinder = pathFinder;
+        mPlanner = null;
+        mMoveTimeLimitNanos = 0;
+        mMoveWorkLimit = 0;
+        mPlayerIndex = playerIndex;
+    }
+
+    /**
+     * Create a PathFollower that plans a little more on each move, for
+     * either a fixed time or a fixed amount of work. Temporary obstacles
+     * are only avoided by the usual move checks, not by replanning, since
+     * replanning needs the track's shared DistanceField, which takes too
+     * long to build within a move.
+     * @param track The Track
+     * @param planner An AnytimePlanner started from the player's starting
+     *                position
+     * @param playerIndex The player to control
+     * @param moveTimeLimitMillis Wall-clock time to plan for each move, or
+     *                            NO_TIME_LIMIT
+     * @param moveWorkLimit Units of planning work for each move (see
+     *                      AnytimePlanner.improveBy()), or
+     *                      AnytimePlanner.NO_WORK_LIMIT. Exactly one of
+     *                      the limits must be given.
+     */
+    public PathFollower(final Track track, final AnytimePlanner planner, final int playerIndex,
+                        final long moveTimeLimitMillis, final int moveWorkLimit) {
+        if ((moveTimeLimitMillis == NO_TIME_LIMIT) == (moveWorkLimit == AnytimePlanner.NO_WORK_LIMIT)) {
+            throw new IllegalArgumentException("Planning needs either a time limit or a work limit");
+        }
+        mTrack = track;
+        mPathFinder = null;
+        mPendingPathFinder = null;
+        mPlanner = planner;
+        mMoveTimeLimitNanos = TimeUnit.MILLISECONDS.toNanos(moveTimeLimitMillis);
+        mMoveWorkLimit = moveWorkLimit;
+        mPlayerIndex = playerIndex;
+    }
+
     /**
      * Calculate the acceleration needed for the next move. Will attempt
      * to follow the path that was supplied as a PathFinder argument to
-     * this object's constructor.
+     * this object's constructor, or the best path from the
+     * AnytimePlanner. If the PathFinder is still finding the path, or the
+     * AnytimePlanner hasn't found one yet, this doesn't wait for it, but
+     * slows down instead, which keeps a player that hasn't moved yet on
+     * the start.
      * @return A GridPoint containing the row and column acceleration to
      * apply. The acceleration in each dimension will be in the range
      * [-1, 1].
      */
+    @Override
     public GridPoint getMove() {
+        if (mPlanner != null) {
+            followBestPlan();
+        }
+        if (mPathFinder == null && !takePathFinder()) return getFallbackMove();
+
+        // Without any path, there's nothing to aim for.
+        if (mGoal == null) return GridPoint.of(0, 0);
+
         GridPoint currentPosition = mTrack.getPlayerPos(mPlayerIndex);
         GridPoint currentVelocity = mTrack.getPlayerVelocity(mPlayerIndex);
 
@@ -46,6 +241,115 @@ public class PathFollower {
             updateGoal();
         }
 
+        // Tracks big enough for HIERARCHICAL paths are too big to replan
+        // on within a move, so there the usual move checks have to do.
+        if (mPlanner == null && PathFinder.Mode.getDefault(mTrack) != PathFinder.Mode.HIERARCHICAL
+                && isRouteBlocked(currentPosition)) {
+            replan(currentPosition);
+        }
+
+        long packedPosition = currentPosition.toPacked();
+        long packedVelocity = currentVelocity.toPacked();
+        long packedGoal = mGoal.toPacked();
+        if (mMoveCache == null) {
+            mMoveCache = mTrack.getMoveCache();
+        }
+        long entry = mMoveCache.get(packedPosition, packedVelocity, packedGoal);
+        if (entry == MoveCache.MISSING) {
+            entry = rankMoves(currentPosition, currentVelocity);
+            mMoveCache.put(packedPosition, packedVelocity, packedGoal, entry);
+        }
+
+        // Get the best move that doesn't crash immediately into a wall or
+        // another player. Walls come from the cache, but other players
+        // move, so they have to be checked every turn.
+        GridPoint result = null;
+        for (int rank = 0; rank < ALL_DIRECTIONS.length && result == null; rank++) {
+            int candidate = MoveCache.getRanked(entry, rank);
+            if (MoveCache.isWall(entry, candidate)) continue;
+
+            GridPoint direction = ALL_DIRECTIONS[candidate];
+            int row = currentPosition.getRow() + currentVelocity.getRow() + direction.getRow();
+            int col = currentPosition.getCol() + currentVelocity.getCol() + direction.getCol();
+            if (!mTrack.isOccupiedByOtherPlayer(mPlayerIndex, row, col)) {
+                result = direction;
+            }
+        }
+
+        return (result == null) ? GridPoint.of(0, 0) : result;
+    }
+
+
+
+    /**
+     * Start following the pending PathFinder's path if it is ready.
+     * @return True if the path is ready, false if it is still being found
+     */
+    private boolean takePathFinder() {
+        if (mPendingPathFinder == null || !mPendingPathFinder.isDone()) return false;
+
+        try {
+            mPathFinder = mPendingPathFinder.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while finding a path", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Finding a path failed", e.getCause());
+        }
+        updateGoal();
+        return true;
+    }
+
+    /**
+     * Improve the AnytimePlanner's plan for the time or work allowed per
+     * move, and switch to its best path if it is cheaper than the one
+     * being followed. The plan starts where the player started, so the
+     * new path is joined at its space nearest to the player.
+     */
+    private void followBestPlan() {
+        if (!mPlanner.isFinished()) {
+            if (mMoveTimeLimitNanos == NO_TIME_LIMIT) {
+                mPlanner.improveBy(mMoveWorkLimit);
+            } else {
+                mPlanner.improve(System.nanoTime() + mMoveTimeLimitNanos);
+            }
+        }
+        if (mPlanner.getBestCost() >= mPlanCost) return;
+
+        mPlanCost = mPlanner.getBestCost();
+        List<GridPoint> steps = mPlanner.getBestPath();
+        GridPoint position = mTrack.getPlayerPos(mPlayerIndex);
+        int nearest = 0;
+        int nearestDistance = Integer.MAX_VALUE;
+        for (int i = 0; i < steps.size(); i++) {
+            GridPoint step = steps.get(i);
+            int distance = Math.max(Math.abs(step.getRow() - position.getRow()),
+                    Math.abs(step.getCol() - position.getCol()));
+            if (distance < nearestDistance) {
+                nearest = i;
+                nearestDistance = distance;
+            }
+        }
+        mPathFinder = new PathFinder(mTrack, steps.subList(nearest, steps.size()));
+        mReplannedPath = null;
+        updateGoal();
+    }
+
+    /**
+     * Returns the acceleration that brings the velocity closest to zero,
+     * which needs no path.
+     */
+    private GridPoint getFallbackMove() {
+        GridPoint velocity = mTrack.getPlayerVelocity(mPlayerIndex);
+        return GridPoint.of(-Integer.signum(velocity.getRow()), -Integer.signum(velocity.getCol()));
+    }
+
+    /**
+     * Rank every acceleration from the current state toward the current
+     * goal, and find the ones that land on a wall.
+     * @return A MoveCache entry
+     */
+    private long rankMoves(final GridPoint currentPosition, final GridPoint currentVelocity) {
         MoveMap moveMap = new MoveMap(currentPosition, mGoal, currentVelocity, ALL_DIRECTIONS);
         Comparator<GridPoint> comparator;
 
@@ -67,26 +371,73 @@ public class PathFollower {
 
         }
 
-        Queue<GridPoint> candidates = new PriorityQueue<>(ALL_DIRECTIONS.length, comparator);
-        Collections.addAll(candidates, ALL_DIRECTIONS);
+        Queue<Integer> candidates = new PriorityQueue<>(ALL_DIRECTIONS.length, new DirectionIndexComparator(comparator));
+        for (int i = 0; i < ALL_DIRECTIONS.length; i++) {
+            candidates.add(i);
+        }
 
-        // Get the best move that doesn't crash immediately into a wall or
-        // another player.
-        GridPoint result = null;
-        do {
-            GridPoint candidate = candidates.remove();
-            if (!mTrack.willPlayerCrash(mPlayerIndex, moveMap.getPosition(candidate))) {
-                result = candidate;
+        int[] ranking = new int[ALL_DIRECTIONS.length];
+        int wallMask = 0;
+        for (int rank = 0; rank < ranking.length; rank++) {
+            int candidate = candidates.remove();
+            ranking[rank] = candidate;
+            if (mTrack.getSpace(moveMap.getPosition(ALL_DIRECTIONS[candidate])) == Track.SpaceType.WALL) {
+                wallMask |= 1 << candidate;
             }
-        } while (result == null && !candidates.isEmpty());
+        }
+        return MoveCache.createEntry(ranking, wallMask);
+    }
 
-        return (result == null) ? new GridPoint(0, 0) : result;
+    /**
+     * Determine whether a crashed or stopped player sits on the straight
+     * line to the current goal. Each space is checked in constant time,
+     * so this doesn't depend on the number of players.
+     */
+    private boolean isRouteBlocked(final GridPoint currentPosition) {
+        mPathCursor.reset(currentPosition, mGoal);
+        while (mPathCursor.next()) {
+            if (mTrack.isBlockedByOtherPlayer(mPlayerIndex, mPathCursor.getRow(), mPathCursor.getCol())) {
+                return true;
+            }
+        }
+        return false;
     }
 
+    /**
+     * Find a new route around every crashed or stopped player, and follow
+     * it instead of the rest of the current path. If there is no way
+     * around, keep the current path.
+     */
+    private void replan(final GridPoint currentPosition) {
+        if (mReplanner == null) {
+            mReplanner = new IncrementalPlanner(mTrack);
+        }
+        // Only needed once the route is blocked, which is rare enough
+        // that looking at every player is fine.
+        mObstacles.clear();
+        for (int player = 0; player < mTrack.getPlayerCount(); player++) {
+            if (player == mPlayerIndex) continue;
+            GridPoint position = mTrack.getPlayerPos(player);
+            if (mTrack.isBlockedByOtherPlayer(mPlayerIndex, position.getRow(), position.getCol())) {
+                mObstacles.add(position);
+            }
+        }
+        mReplanner.setObstacles(mObstacles);
+        Deque<GridPoint> path = mReplanner.findPath(currentPosition);
+        if (path == null || path.isEmpty()) return;
 
+        mReplannedPath = path;
+        mGoal = mReplannedPath.removeFirst();
+    }
 
     private void updateGoal() {
-        mGoal = mPathFinder.getNextPathPoint();
+        // Once the path runs out, keep aiming for the last point (which
+        // is on the finish line).
+        GridPoint nextGoal = (mReplannedPath == null) ?
+                mPathFinder.getNextPathPoint() : mReplannedPath.pollFirst();
+        if (nextGoal != null) {
+            mGoal = nextGoal;
+        }
 //        mNextGoal = mPathFinder.peekNextPathPoint();
 //        if (mNextGoal != null) {
 //            mNextGoalDiff = GridPoint.subtract(mNextGoal, mGoal);
@@ -109,15 +460,9 @@ public class PathFollower {
         // S + (S - 1) + (S - 2) + ... + 2 + 1
         // This sum is equal to S * (S + 1) / 2
 
-        GridPoint result = new GridPoint();
-        for (GridPoint.Axis axis : GridPoint.Axis.values()) {
-            int velocity = startVelocity.getValueOnAxis(axis);
-            int speed = Math.abs(velocity);
-            int distanceNeeded = speed * (speed + 1) / 2;
-            result.setValueOnAxis(axis, distanceNeeded);
-        }
-
-        return result;
+        int rowSpeed = Math.abs(startVelocity.getRow());
+        int colSpeed = Math.abs(startVelocity.getCol());
+        return GridPoint.of(rowSpeed * (rowSpeed + 1) / 2, colSpeed * (colSpeed + 1) / 2);
     }
 
     /**
@@ -311,6 +656,24 @@ public class PathFollower {
     }
 
 
+    /**
+     * Orders indices into ALL_DIRECTIONS the same way another comparator
+     * orders the directions themselves.
+     */
+    private static class DirectionIndexComparator implements Comparator<Integer> {
+        private final Comparator<GridPoint> mDirectionComparator;
+
+        public DirectionIndexComparator(final Comparator<GridPoint> directionComparator) {
+            mDirectionComparator = directionComparator;
+        }
+
+        @Override
+        public int compare(Integer o1, Integer o2) {
+            return mDirectionComparator.compare(ALL_DIRECTIONS[o1], ALL_DIRECTIONS[o2]);
+        }
+    }
+
+
     private static class MoveMap {
         private static final int VEL = 0;
         private static final int POS = 1;
@@ -5,7 +5,7 @@ package com.erichamion.racetrack;
  */
 public class Player {
     private GridPoint mPosition;
-    private GridPoint mVelocity = new GridPoint(0, 0);
+    private GridPoint mVelocity = GridPoint.of(0, 0);
     private boolean mIsCrashed = false;
 
     public Player(final GridPoint position) {
@@ -16,8 +16,31 @@ public class Player {
         mPosition = new GridPoint(row, col);
     }
 
+    /**
+     * Create a Player in the middle of a game.
+     * @param position The current position
+     * @param velocity The current velocity
+     * @param isCrashed Whether the Player has crashed
+     */
+    public Player(final GridPoint position, final GridPoint velocity, final boolean isCrashed) {
+        mPosition = position;
+        mVelocity = velocity;
+        mIsCrashed = isCrashed;
+    }
+
+    /**
+     * Create a copy of another Player, with the same position, velocity,
+     * and crash state.
+     * @param other The Player to copy
+     */
+    public Player(final Player other) {
+        mPosition = other.mPosition;
+        mVelocity = other.mVelocity;
+        mIsCrashed = other.mIsCrashed;
+    }
+
     public GridPoint getPos() {
-        return new GridPoint(mPosition);
+        return mPosition;
     }
 
     /**
@@ -36,11 +59,11 @@ public class Player {
      * @param pos The new position
      */
     public void setPos(final GridPoint pos) {
-        mPosition = new GridPoint(pos);
+        mPosition = pos;
     }
 
     public GridPoint getVelocity() {
-        return new GridPoint(mVelocity);
+        return mVelocity;
     }
 
     /**
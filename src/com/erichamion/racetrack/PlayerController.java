@@ -0,0 +1,37 @@
+package com.erichamion.racetrack;
+
+/**
+ * Chooses the moves for one player on one Track. Implemented by the
+ * computer players, so anything that runs a game (the text game, or a
+ * headless Simulation) can drive any of them the same way.
+ *
+ * Created by me on 10/16/26.
+ */
+public interface PlayerController {
+    /**
+     * Calculate the acceleration for the controlled player's next move.
+     * Only called when it is the controlled player's turn.
+     * @return A GridPoint containing the row and column acceleration to
+     * apply. The acceleration in each dimension must be in the range
+     * [-1, 1].
+     */
+    GridPoint getMove();
+
+
+    /**
+     * Creates PlayerControllers, so that a fresh set of controllers can
+     * be made for every game in a batch.
+     */
+    interface Factory {
+        /**
+         * Create a controller for a single player.
+         * @param track The Track the game will be played on
+         * @param playerIndex The zero-based player number to control
+         * @param seed A seed for any random choices the controller makes.
+         *             The same seed must always give the same moves, so
+         *             that games can be reproduced.
+         * @return A new PlayerController
+         */
+        PlayerController create(Track track, int playerIndex, long seed);
+    }
+}
@@ -1,26 +1,42 @@
 package com.erichamion.racetrack;
 
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.io.PrintStream;
+import java.io.Writer;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Pattern;
 
 public class RacetrackNoGui {
 
     private static final Map<Character, GridPoint> KEYMAP = new HashMap<>();
     private static final Scanner STDIN = new Scanner(System.in);
-    private static final Map<Integer, PathFollower> mComputerPlayers = new HashMap<>();
+    private static final Map<Integer, PlayerController> mComputerPlayers = new HashMap<>();
+    // Player numbers are one-based, and there can't be more players than
+    // Track.MAX_PLAYERS, so five digits is always enough.
+    private static final Pattern PLAYER_NUMBER_PATTERN = Pattern.compile("[1-9][0-9]{0,4}");
+    private static final Pattern PLAYER_RANGE_PATTERN = Pattern.compile("[1-9][0-9]{0,4}-[1-9][0-9]{0,4}");
+    private static final Pattern VIEWPORT_PATTERN = Pattern.compile("[1-9][0-9]{0,4}x[1-9][0-9]{0,4}");
+    // Draws the board with ANSI escapes, or null to print it as plain text
+    private static BoardRenderer mRenderer = null;
+    // Records the game, or null to not record it
+    private static ReplayWriter mRecorder = null;
 
     static {
-        KEYMAP.put('1', new GridPoint(1, -1));
-        KEYMAP.put('2', new GridPoint(1, 0));
-        KEYMAP.put('3', new GridPoint(1, 1));
-        KEYMAP.put('4', new GridPoint(0, -1));
-        KEYMAP.put('5', new GridPoint(0, 0));
-        KEYMAP.put('6', new GridPoint(0, 1));
-        KEYMAP.put('7', new GridPoint(-1, -1));
-        KEYMAP.put('8', new GridPoint(-1, 0));
-        KEYMAP.put('9', new GridPoint(-1, 1));
+        KEYMAP.put('1', GridPoint.of(1, -1));
+        KEYMAP.put('2', GridPoint.of(1, 0));
+        KEYMAP.put('3', GridPoint.of(1, 1));
+        KEYMAP.put('4', GridPoint.of(0, -1));
+        KEYMAP.put('5', GridPoint.of(0, 0));
+        KEYMAP.put('6', GridPoint.of(0, 1));
+        KEYMAP.put('7', GridPoint.of(-1, -1));
+        KEYMAP.put('8', GridPoint.of(-1, 0));
+        KEYMAP.put('9', GridPoint.of(-1, 1));
     }
 
 
@@ -29,9 +45,32 @@ public class RacetrackNoGui {
         String filename = null;
         List<Integer> playerIndices = new ArrayList<>();
 
-        for (String arg : args) {
-            if (arg.length() == 1 && arg.charAt(0) >= '1' && arg.charAt(0) <= '9') {
+        boolean isAnsi = false;
+        int viewRows = BoardRenderer.FULL_BOARD;
+        int viewCols = BoardRenderer.FULL_BOARD;
+        String replayFilename = null;
+
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("-a")) {
+                isAnsi = true;
+            } else if (arg.equals("-v") && i + 1 < args.length && VIEWPORT_PATTERN.matcher(args[i + 1]).matches()) {
+                String size = args[++i];
+                int separator = size.indexOf('x');
+                viewRows = Integer.parseInt(size.substring(0, separator));
+                viewCols = Integer.parseInt(size.substring(separator + 1));
+                isAnsi = true;
+            } else if (arg.equals("-r") && i + 1 < args.length) {
+                replayFilename = args[++i];
+            } else if (PLAYER_NUMBER_PATTERN.matcher(arg).matches()) {
                 playerIndices.add(Integer.parseInt(arg) - 1);
+            } else if (PLAYER_RANGE_PATTERN.matcher(arg).matches()) {
+                int dash = arg.indexOf('-');
+                int first = Integer.parseInt(arg.substring(0, dash));
+                int last = Integer.parseInt(arg.substring(dash + 1));
+                for (int player = first; player <= last; player++) {
+                    playerIndices.add(player - 1);
+                }
             } else {
                 filename = arg;
             }
@@ -45,37 +84,86 @@ public class RacetrackNoGui {
 
         Track track;
         try {
-            track = new Track(new Scanner(new File(filename)));
+            track = TrackLoader.load(new File(filename));
         } catch (InvalidTrackFormatException e) {
             System.err.println(e.getMessage());
             return;
         } catch (FileNotFoundException e) {
             System.err.println("Could not find file '" + filename + "'");
             return;
+        } catch (IOException e) {
+            System.err.println("Could not read file '" + filename + "': " + e.getMessage());
+            return;
+        }
+
+        if (isAnsi) {
+            Writer out = new BufferedWriter(new OutputStreamWriter(System.out));
+            mRenderer = new BoardRenderer(track, out, viewRows, viewCols);
+        }
+
+        if (replayFilename != null) {
+            try {
+                mRecorder = ReplayWriter.append(new File(replayFilename));
+            } catch (IOException e) {
+                System.err.println("Could not open replay file '" + replayFilename + "': " + e.getMessage());
+                return;
+            }
+            // The recorder needs the layout hash when the game starts.
+            // Compute it before the planners start building the track's
+            // shared layout data, which would hold it up.
+            track.getLayoutHash();
         }
 
+        // Paths are found in the background, so the game can start right
+        // away. Computer players wait in place until their paths are
+        // ready.
+        ExecutorService planners = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        PlayerController.Factory factory = PathFollower.createAsyncFactory(planners);
         for (Integer playerIndex : playerIndices) {
             if (playerIndex >= track.getPlayerCount()) continue;
 
-            PathFinder playerFinder = new PathFinder(track, playerIndex);
-            PathFollower playerFollower = new PathFollower(track, playerFinder, playerIndex);
-            mComputerPlayers.put(playerIndex, playerFollower);
+            mComputerPlayers.put(playerIndex, factory.create(track, playerIndex, System.nanoTime()));
         }
 
-
-        runTextGame(track);
+        try {
+            runTextGame(track);
+        } catch (IOException e) {
+            System.err.println("Could not write the board or replay: " + e.getMessage());
+        } finally {
+            planners.shutdownNow();
+            if (mRecorder != null) {
+                // Leave out a game that was quit or failed partway
+                // through.
+                mRecorder.abort();
+                try {
+                    mRecorder.close();
+                } catch (IOException e) {
+                    System.err.println("Could not write replay file '" + replayFilename + "': " + e.getMessage());
+                }
+            }
+        }
     }
 
     private static void printUsage(final PrintStream outStream) {
         outStream.println("Usage:");
-        outStream.println("    <command> [n1 [n2...]] <filename>");
-        outStream.println("Where n1, n2, etc. are player numbers 1-9 for computer control,");
-        outStream.println("and <filename> is the path to a track file to load.");
+        outStream.println("    <command> [-a] [-v <rows>x<cols>] [-r <replayfile>] [n1 [n2...]] <filename>");
+        outStream.println("Where n1, n2, etc. are player numbers for computer control, or ranges");
+        outStream.println("of player numbers written as first-last, and <filename> is the path to");
+        outStream.println("a track file to load.");
+        outStream.println("    -a  Draw the board in place on an ANSI terminal, updating only the");
+        outStream.println("        spaces that change");
+        outStream.println("    -v  Like -a, but show only a window of the given size that follows");
+        outStream.println("        the current player, for tracks too big for the terminal");
+        outStream.println("    -r  Record the game, adding it to the end of the given replay file");
         outStream.println("");
         outStream.println("Example: <command> 2 4 tracks/mytrack.txt");
         outStream.println("    Loads the track file 'tracks/mytrack.txt', and (as long as the track");
         outStream.println("    is for at least 4 players) designates players 2 and 4 as computer");
         outStream.println("    controlled. All other players are keyboard controlled.");
+        outStream.println("Example: <command> 1-500 tracks/bigtrack.txt");
+        outStream.println("    Designates players 1 through 500 as computer controlled. On the");
+        outStream.println("    board, players after 9 are shown as letters, and players after");
+        outStream.println("    those as '@'.");
     }
 
     private static void printDirections() {
@@ -89,7 +177,7 @@ public class RacetrackNoGui {
         System.out.println(outStr);
     }
 
-    private static GridPoint getTextInput(final String prompt, final Track track) {
+    private static GridPoint getTextInput(final String prompt, final Track track) throws IOException {
         GridPoint result = null;
         do {
             System.out.print(prompt + ": ");
@@ -99,9 +187,9 @@ public class RacetrackNoGui {
                 if (inputChar == 'h') {
                     printDirections();
                 } else if (inputChar == 't') {
-                    System.out.println(track.toString());
+                    showBoard(track);
                 } else if (KEYMAP.containsKey(inputChar)) {
-                    result = new GridPoint(KEYMAP.get(inputChar));
+                    result = KEYMAP.get(inputChar);
                 }
             }
         } while (result == null);
@@ -109,12 +197,41 @@ public class RacetrackNoGui {
         return result;
     }
 
-    private static void runTextGame(final Track track) {
-        while (track.getWinner() == Track.NO_WINNER) {
+    private static void showBoard(final Track track) throws IOException {
+        if (mRenderer == null) {
             System.out.println(track.toString());
+        } else {
+            // Whatever was printed below the board may have scrolled it.
+            mRenderer.invalidate();
+            mRenderer.render(track.getCurrentPlayer());
+        }
+    }
+
+    private static void runTextGame(final Track track) throws IOException {
+        int playerCount = track.getPlayerCount();
+        int[] crashTurns = new int[playerCount];
+        int[] crashRows = new int[playerCount];
+        int[] crashCols = new int[playerCount];
+        Arrays.fill(crashTurns, GameResult.NOT_CRASHED);
+        if (mRecorder != null) {
+            String[] controllerTypes = new String[playerCount];
+            for (int player = 0; player < playerCount; player++) {
+                PlayerController follower = mComputerPlayers.get(player);
+                controllerTypes[player] = (follower == null) ? "Human" : follower.getClass().getSimpleName();
+            }
+            mRecorder.startGame(track, controllerTypes);
+        }
+
+        int turn = 0;
+        while (!track.isGameOver()) {
+            if (mRenderer == null) {
+                System.out.println(track.toString());
+            } else {
+                mRenderer.render(track.getCurrentPlayer());
+            }
             int currentPlayer = track.getCurrentPlayer();
             System.out.println("\nPLAYER " + (currentPlayer + 1) + ":");
-            PathFollower follower = mComputerPlayers.get(currentPlayer);
+            PlayerController follower = mComputerPlayers.get(currentPlayer);
             GridPoint acceleration;
             if (follower == null) {
                 // Get human input
@@ -125,11 +242,31 @@ public class RacetrackNoGui {
                 STDIN.nextLine();
                 acceleration = follower.getMove();
             }
+            if (mRecorder != null) mRecorder.recordTurn(track, acceleration);
             track.doPlayerTurn(acceleration);
+
+            if (track.isPlayerCrashed(currentPlayer) && crashTurns[currentPlayer] == GameResult.NOT_CRASHED) {
+                GridPoint crashPosition = track.getPlayerPos(currentPlayer);
+                crashTurns[currentPlayer] = turn;
+                crashRows[currentPlayer] = crashPosition.getRow();
+                crashCols[currentPlayer] = crashPosition.getCol();
+            }
+            turn++;
+        }
+        if (mRecorder != null) {
+            mRecorder.finishGame(new GameResult(track.getWinner(), turn, false, crashTurns, crashRows, crashCols));
+        }
+        if (mRenderer == null) {
+            System.out.println(track.toString());
+        } else {
+            mRenderer.render(track.getCurrentPlayer());
         }
-        System.out.println(track.toString());
         System.out.println();
-        System.out.println("Player " + (track.getWinner() + 1) + " WINS!!");
+        if (track.getWinner() == Track.NO_WINNER) {
+            System.out.println("Everybody crashed. Nobody wins.");
+        } else {
+            System.out.println("Player " + (track.getWinner() + 1) + " WINS!!");
+        }
     }
 
 }
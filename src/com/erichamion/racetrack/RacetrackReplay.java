@@ -0,0 +1,140 @@
+package com.erichamion.racetrack;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintStream;
+
+/**
+ * Replays recorded games without any display, checking each against its
+ * recorded result and reporting how fast they replay, or shows the board
+ * at any turn of a single game.
+ *
+ * Created by me on 10/16/26.
+ */
+public class RacetrackReplay {
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    public static void main(String[] args) {
+        if (args.length < 2 || args.length > 4) {
+            printUsage(System.err);
+            return;
+        }
+
+        String trackFilename = args[0];
+        String replayFilename = args[1];
+        int gameNumber = 0;
+        int turn = -1;
+        try {
+            if (args.length > 2) gameNumber = Integer.parseInt(args[2]);
+            if (args.length > 3) turn = Integer.parseInt(args[3]);
+        } catch (NumberFormatException e) {
+            printUsage(System.err);
+            return;
+        }
+        if (args.length > 2 && gameNumber < 1) {
+            printUsage(System.err);
+            return;
+        }
+
+        Track track;
+        try {
+            track = TrackLoader.load(new File(trackFilename));
+        } catch (InvalidTrackFormatException e) {
+            System.err.println(e.getMessage());
+            return;
+        } catch (FileNotFoundException e) {
+            System.err.println("Could not find file '" + trackFilename + "'");
+            return;
+        } catch (IOException e) {
+            System.err.println("Could not read file '" + trackFilename + "': " + e.getMessage());
+            return;
+        }
+
+        try (ReplayReader reader = ReplayReader.open(new File(replayFilename))) {
+            if (gameNumber == 0) {
+                checkAll(track, reader);
+            } else {
+                showGame(track, reader, gameNumber, turn);
+            }
+        } catch (FileNotFoundException e) {
+            System.err.println("Could not find file '" + replayFilename + "'");
+        } catch (IOException e) {
+            System.err.println("Could not read file '" + replayFilename + "': " + e.getMessage());
+        }
+    }
+
+    private static void printUsage(final PrintStream outStream) {
+        outStream.println("Usage:");
+        outStream.println("    <command> <trackfile> <replayfile> [game [turn]]");
+        outStream.println("Where <trackfile> is the path to the track the games were played on, and");
+        outStream.println("<replayfile> is the path to a replay file. With no game number, replays");
+        outStream.println("every game, checks that each ends the way it was recorded, and reports");
+        outStream.println("the number of turns replayed per second. With a game number (starting");
+        outStream.println("at 1), shows the board at the given turn of that game (starting at 0),");
+        outStream.println("or at the end of the game.");
+    }
+
+    private static void checkAll(final Track track, final ReplayReader reader) throws IOException {
+        int gameCount = 0;
+        int mismatchCount = 0;
+        long turnCount = 0;
+        long elapsedNanos = 0;
+        while (reader.hasNext()) {
+            Replay replay = reader.next();
+            gameCount++;
+            if (!replay.isPlayableOn(track)) {
+                System.out.println("Game " + gameCount + " was recorded on a different track");
+                mismatchCount++;
+                continue;
+            }
+
+            long startTime = System.nanoTime();
+            GameResult result = replay.play(new Track(track));
+            elapsedNanos += System.nanoTime() - startTime;
+            turnCount += replay.getTurnCount();
+            if (!result.equals(replay.getResult())) {
+                System.out.println("Game " + gameCount + " doesn't match its recording:");
+                System.out.println("    Recorded: " + replay.getResult());
+                System.out.println("    Replayed: " + result);
+                mismatchCount++;
+            }
+        }
+
+        if (reader.isTruncated()) {
+            System.out.println("The file ends partway through game " + (gameCount + 1) + ", which was skipped");
+        }
+        System.out.println("Games: " + gameCount + ", mismatched: " + mismatchCount);
+        if (elapsedNanos > 0) {
+            System.out.printf("Turns: %d, %.0f turns per second%n", turnCount,
+                    turnCount * NANOS_PER_SECOND / elapsedNanos);
+        }
+    }
+
+    private static void showGame(final Track track, final ReplayReader reader, final int gameNumber, final int turn)
+            throws IOException {
+        Replay replay = null;
+        for (int game = 1; game <= gameNumber; game++) {
+            if (!reader.hasNext()) {
+                System.err.println("There are only " + (game - 1) + " games in the file");
+                return;
+            }
+            replay = reader.next();
+        }
+        if (!replay.isPlayableOn(track)) {
+            System.err.println("Game " + gameNumber + " was recorded on a different track");
+            return;
+        }
+
+        int seekTurn = (turn < 0) ? replay.getTurnCount() : turn;
+        if (seekTurn > replay.getTurnCount()) {
+            System.err.println("Game " + gameNumber + " only has " + replay.getTurnCount() + " turns");
+            return;
+        }
+        Track gameTrack = new Track(track);
+        replay.seek(gameTrack, seekTurn);
+        System.out.println(gameTrack.toString());
+        System.out.println("Turn " + seekTurn + " of " + replay.getTurnCount() + ", player "
+                + (gameTrack.getCurrentPlayer() + 1) + " to move");
+    }
+}
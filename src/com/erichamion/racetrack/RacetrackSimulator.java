@@ -0,0 +1,78 @@
+package com.erichamion.racetrack;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Arrays;
+
+/**
+ * Plays computer-only games on a track without any display or input, and
+ * reports the results and the number of games played per second.
+ *
+ * Created by me on 10/16/26.
+ */
+public class RacetrackSimulator {
+    private static final int DEFAULT_GAME_COUNT = 100;
+
+    public static void main(String[] args) {
+        String replayFilename = null;
+        if (args.length >= 2 && args[0].equals("-r")) {
+            replayFilename = args[1];
+            args = Arrays.copyOfRange(args, 2, args.length);
+        }
+        if (args.length < 1 || args.length > 3) {
+            printUsage(System.err);
+            return;
+        }
+
+        String filename = args[0];
+        int gameCount = DEFAULT_GAME_COUNT;
+        int maxTurns = Simulation.DEFAULT_MAX_TURNS;
+        try {
+            if (args.length > 1) gameCount = Integer.parseInt(args[1]);
+            if (args.length > 2) maxTurns = Integer.parseInt(args[2]);
+        } catch (NumberFormatException e) {
+            printUsage(System.err);
+            return;
+        }
+
+        Track track;
+        try {
+            track = TrackLoader.load(new File(filename));
+        } catch (InvalidTrackFormatException e) {
+            System.err.println(e.getMessage());
+            return;
+        } catch (FileNotFoundException e) {
+            System.err.println("Could not find file '" + filename + "'");
+            return;
+        } catch (IOException e) {
+            System.err.println("Could not read file '" + filename + "': " + e.getMessage());
+            return;
+        }
+
+        if (replayFilename == null) {
+            GameStats stats = Simulation.playMany(track, PathFollower.FACTORY, System.nanoTime(), gameCount, maxTurns);
+            System.out.println(stats);
+            return;
+        }
+
+        try (ReplayWriter recorder = ReplayWriter.append(new File(replayFilename))) {
+            GameStats stats = Simulation.playMany(track, PathFollower.FACTORY, System.nanoTime(), gameCount, maxTurns,
+                    recorder);
+            System.out.println(stats);
+        } catch (IOException e) {
+            System.err.println("Could not write replay file '" + replayFilename + "': " + e.getMessage());
+        }
+    }
+
+    private static void printUsage(final PrintStream outStream) {
+        outStream.println("Usage:");
+        outStream.println("    <command> [-r <replayfile>] <filename> [games [maxturns]]");
+        outStream.println("Where <filename> is the path to a track file to load, games is the");
+        outStream.println("number of games to play (default " + DEFAULT_GAME_COUNT + "), and maxturns is");
+        outStream.println("the turn limit for each game (default " + Simulation.DEFAULT_MAX_TURNS + ").");
+        outStream.println("Every player is computer controlled. With -r, every game is added to the");
+        outStream.println("end of the given replay file.");
+    }
+}
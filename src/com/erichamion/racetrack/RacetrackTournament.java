@@ -0,0 +1,89 @@
+package com.erichamion.racetrack;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs a Tournament of computer players over one or more track files,
+ * using all available processors, and prints the results.
+ *
+ * Created by me on 10/16/26.
+ */
+public class RacetrackTournament {
+    private static final int DEFAULT_GAMES_PER_MATCHUP = 10;
+    // Search iterations per move. An iteration budget instead of a time
+    // budget keeps every game the same for the same seed, however busy
+    // the machine is.
+    private static final int MONTE_CARLO_ITERATIONS = 1000;
+    // Units of AnytimePlanner work per move, for the same reason
+    private static final int ANYTIME_WORK_LIMIT = 200000;
+
+    public static void main(String[] args) {
+        int threadCount = Runtime.getRuntime().availableProcessors();
+        int gamesPerMatchup = DEFAULT_GAMES_PER_MATCHUP;
+        long seed = 0;
+        List<String> filenames = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                if (arg.equals("-t") && i + 1 < args.length) {
+                    threadCount = Integer.parseInt(args[++i]);
+                } else if (arg.equals("-g") && i + 1 < args.length) {
+                    gamesPerMatchup = Integer.parseInt(args[++i]);
+                } else if (arg.equals("-s") && i + 1 < args.length) {
+                    seed = Long.parseLong(args[++i]);
+                } else {
+                    filenames.add(arg);
+                }
+            }
+        } catch (NumberFormatException e) {
+            printUsage(System.err);
+            return;
+        }
+
+        if (filenames.isEmpty()) {
+            System.err.println("No filename given\n");
+            printUsage(System.err);
+            return;
+        }
+
+        Tournament tournament = new Tournament(seed);
+        tournament.addEntry("PathFollower", PathFollower.FACTORY);
+        tournament.addEntry("JumpPointPathFollower", PathFollower.createFactory(PathFinder.Mode.JUMP_POINT));
+        tournament.addEntry("MonteCarloPlayer", MonteCarloPlayer.createFactory(MonteCarloPlayer.NO_TIME_LIMIT,
+                MONTE_CARLO_ITERATIONS, 1));
+        tournament.addEntry("AnytimePathFollower", PathFollower.createFixedWorkAnytimeFactory(ANYTIME_WORK_LIMIT));
+        tournament.addEntry("VelocityPlannerPlayer", VelocityPlannerPlayer.FACTORY);
+        tournament.setGamesPerMatchup(gamesPerMatchup);
+        for (String filename : filenames) {
+            try {
+                tournament.addTrack(TrackLoader.load(new File(filename)));
+            } catch (InvalidTrackFormatException e) {
+                System.err.println(filename + ": " + e.getMessage());
+                return;
+            } catch (FileNotFoundException e) {
+                System.err.println("Could not find file '" + filename + "'");
+                return;
+            } catch (IOException e) {
+                System.err.println("Could not read file '" + filename + "': " + e.getMessage());
+                return;
+            }
+        }
+
+        System.out.println(tournament.run(threadCount));
+    }
+
+    private static void printUsage(final PrintStream outStream) {
+        outStream.println("Usage:");
+        outStream.println("    <command> [-t threads] [-g games] [-s seed] <filename> [filename...]");
+        outStream.println("Plays games on every track file, with every player computer controlled.");
+        outStream.println("    -t  Number of worker threads (default: number of processors)");
+        outStream.println("    -g  Games per track and seat rotation (default " + DEFAULT_GAMES_PER_MATCHUP + ")");
+        outStream.println("    -s  Random seed (default 0)");
+    }
+}
@@ -0,0 +1,78 @@
+package com.erichamion.racetrack;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Replays every recorded game in a set of replay files, using all
+ * available processors, and reports any game that no longer plays out
+ * the way it was recorded.
+ *
+ * Created by me on 10/16/26.
+ */
+public class RacetrackVerifier {
+
+    public static void main(String[] args) {
+        int threadCount = Runtime.getRuntime().availableProcessors();
+        List<String> trackFilenames = new ArrayList<>();
+        List<File> replayFiles = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                if (arg.equals("-t") && i + 1 < args.length) {
+                    threadCount = Integer.parseInt(args[++i]);
+                } else if (arg.equals("-r") && i + 1 < args.length) {
+                    replayFiles.add(new File(args[++i]));
+                } else {
+                    trackFilenames.add(arg);
+                }
+            }
+        } catch (NumberFormatException e) {
+            printUsage(System.err);
+            return;
+        }
+
+        if (trackFilenames.isEmpty() || replayFiles.isEmpty()) {
+            System.err.println("Need at least one track file and one replay file\n");
+            printUsage(System.err);
+            return;
+        }
+
+        ReplayVerifier verifier = new ReplayVerifier();
+        for (String filename : trackFilenames) {
+            try {
+                verifier.addTrack(TrackLoader.load(new File(filename)));
+            } catch (InvalidTrackFormatException e) {
+                System.err.println(filename + ": " + e.getMessage());
+                return;
+            } catch (FileNotFoundException e) {
+                System.err.println("Could not find file '" + filename + "'");
+                return;
+            } catch (IOException e) {
+                System.err.println("Could not read file '" + filename + "': " + e.getMessage());
+                return;
+            }
+        }
+
+        VerificationReport report = verifier.run(replayFiles, threadCount);
+        System.out.println(report);
+        if (!report.isClean()) System.exit(1);
+    }
+
+    private static void printUsage(final PrintStream outStream) {
+        outStream.println("Usage:");
+        outStream.println("    <command> [-t threads] -r <replayfile> [-r <replayfile>...] <trackfile>");
+        outStream.println("        [trackfile...]");
+        outStream.println("Replays every game in the replay files on whichever of the tracks it was");
+        outStream.println("recorded on, and reports each game that plays out differently, with the");
+        outStream.println("first turn where it differs. Exits with status 1 if any game differs or");
+        outStream.println("can't be replayed.");
+        outStream.println("    -t  Number of worker threads (default: number of processors)");
+        outStream.println("    -r  A replay file to check");
+    }
+}
@@ -0,0 +1,475 @@
+package com.erichamion.racetrack;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A single recorded game, read by ReplayReader from the data written by
+ * ReplayWriter. It can replay the whole game on a Track at full speed, or
+ * jump to any turn by restoring the nearest earlier checkpoint and
+ * replaying only the moves after it.
+ *
+ * The moves stay in the replay data (which may be a memory-mapped file),
+ * and are only decoded as they are used. Each game is laid out as
+ * follows, with every number big-endian:
+ * <pre>
+ *     int    MAGIC
+ *     byte   VERSION
+ *     int    number of bytes in the rest of the game, L
+ *     L bytes:
+ *     long   Track.getLayoutHash() of the track
+ *     int    number of players, P
+ *     int    number of controller types, T
+ *     T x    controller type name, in DataOutput.writeUTF() format
+ *     P x    short, index of each player's controller type
+ *     int    checkpoint interval, N turns
+ *     one or more chunks, each holding up to N turns:
+ *         byte   TAG_CHUNK
+ *         int    first turn of the chunk (a multiple of N)
+ *         int    current player
+ *         int    winner, or Track.NO_WINNER
+ *         P x    int row, int column, int row velocity,
+ *                int column velocity, boolean crashed
+ *         int    number of moves in the chunk, M (N in all but the last)
+ *         (M + 1) / 2 bytes of moves, two per byte, first move in the
+ *                high four bits. Each move is the number pad digit for
+ *                its acceleration (see encodeAcceleration()), and an
+ *                unused final half byte is 0.
+ *     byte   TAG_END
+ *     int    number of turns
+ *     boolean whether the turn limit was reached
+ *     int    winner, or Track.NO_WINNER
+ *     int    number of crashed players, C
+ *     C x    int player, int turn, int row, int column
+ * </pre>
+ * Only whole games are written, so the data can end partway through a
+ * game only if writing it failed. The length tells where such a game was
+ * meant to end.
+ *
+ * Created by me on 10/16/26.
+ */
+public final class Replay {
+    static final int MAGIC = 0x52545250; // "RTRP"
+    static final int VERSION = 2;
+    // Size of the magic number, version, and length
+    static final int HEADER_SIZE = 9;
+    static final int TAG_CHUNK = 1;
+    static final int TAG_END = 2;
+
+    // A checkpoint takes 17 bytes per player, and the moves half a byte
+    // per turn, so space checkpoints out in proportion to the number of
+    // players. The moves between checkpoints then take 64 bytes per
+    // player, which keeps the checkpoints to about a fifth of the data.
+    private static final int MIN_CHECKPOINT_INTERVAL = 256;
+    private static final int CHECKPOINT_TURNS_PER_PLAYER = 128;
+    private static final int CHECKPOINT_HEADER_SIZE = 12;
+    private static final int CHECKPOINT_PLAYER_SIZE = 17;
+
+    // Accelerations by move code. Code 0 is never a valid move.
+    private static final GridPoint[] ACCELERATIONS = {
+            null,
+            GridPoint.of(1, -1), GridPoint.of(1, 0), GridPoint.of(1, 1),
+            GridPoint.of(0, -1), GridPoint.of(0, 0), GridPoint.of(0, 1),
+            GridPoint.of(-1, -1), GridPoint.of(-1, 0), GridPoint.of(-1, 1)
+    };
+
+    private final ByteBuffer mData;
+    private final long mStart;
+    private final long mEnd;
+    private final long mLayoutHash;
+    private final String[] mControllerTypes;
+    private final int mCheckpointInterval;
+    // Offset of each chunk's checkpoint, just past its tag
+    private final int[] mChunkOffsets;
+    private final GameResult mResult;
+
+
+    /**
+     * Read a game from replay data.
+     * @param data The game's data, from offset 0 to its limit. Its
+     *             position is ignored.
+     * @param start The offset of the game within the whole of the replay
+     *              data, which the offsets in errors are relative to
+     * @throws InvalidReplayFormatException If the game isn't valid
+     */
+    Replay(final ByteBuffer data, final long start) throws InvalidReplayFormatException {
+        mData = data.duplicate();
+        mStart = start;
+        mData.position(0);
+        try {
+            if (mData.getInt() != MAGIC) throw formatError("Not a replay", 0);
+            int version = mData.get();
+            if (version != VERSION) throw formatError("Unsupported replay version " + version, 4);
+            int length = mData.getInt();
+            if (length < 0 || length > mData.remaining()) {
+                throw formatError("Replay data ends in the middle of a game", mData.limit());
+            }
+            // Keep everything read within the game.
+            mData.limit(mData.position() + length);
+            mLayoutHash = mData.getLong();
+            int playerCount = mData.getInt();
+            if (playerCount < 1 || playerCount > Track.MAX_PLAYERS) {
+                throw formatError("Invalid number of players: " + playerCount, mData.position() - 4);
+            }
+
+            int typeCount = mData.getInt();
+            if (typeCount < 1 || typeCount > playerCount) {
+                throw formatError("Invalid number of controller types: " + typeCount, mData.position() - 4);
+            }
+            String[] typeNames = new String[typeCount];
+            for (int type = 0; type < typeCount; type++) {
+                typeNames[type] = readUtf();
+            }
+            mControllerTypes = new String[playerCount];
+            for (int player = 0; player < playerCount; player++) {
+                int type = mData.getShort() & 0xFFFF;
+                if (type >= typeCount) throw formatError("Invalid controller type", mData.position() - 2);
+                mControllerTypes[player] = typeNames[type];
+            }
+
+            mCheckpointInterval = mData.getInt();
+            if (mCheckpointInterval < 2) {
+                throw formatError("Invalid checkpoint interval: " + mCheckpointInterval, mData.position() - 4);
+            }
+
+            mChunkOffsets = readChunks(playerCount);
+            mResult = readResult(playerCount);
+            mEnd = mStart + mData.position();
+            if (mData.position() != mData.limit()) {
+                throw formatError("Extra data at the end of the game", mData.position());
+            }
+        } catch (BufferUnderflowException e) {
+            throw formatError("Game ends before its last field", mData.limit());
+        }
+    }
+
+    /**
+     * Return the checkpoint interval that ReplayWriter uses for a number
+     * of players.
+     * @param playerCount The number of players
+     * @return The number of turns between checkpoints
+     */
+    static int getCheckpointInterval(final int playerCount) {
+        return Math.max(MIN_CHECKPOINT_INTERVAL, CHECKPOINT_TURNS_PER_PLAYER * playerCount);
+    }
+
+    /**
+     * Return the code for an acceleration: its digit on the number pad,
+     * as in the text game, from 1 (down and left) to 9 (up and right).
+     * @param acceleration The acceleration, with each component in the
+     *                     range [-1, 1]
+     * @return The code, from 1 to 9
+     */
+    public static int encodeAcceleration(final GridPoint acceleration) {
+        int row = acceleration.getRow();
+        int col = acceleration.getCol();
+        if (row < -1 || row > 1 || col < -1 || col > 1) {
+            throw new IllegalArgumentException("Not a valid acceleration: " + acceleration);
+        }
+        return (1 - row) * 3 + col + 2;
+    }
+
+    /**
+     * Return the acceleration for a code from encodeAcceleration().
+     * @param code The code, from 1 to 9
+     * @return The acceleration
+     */
+    public static GridPoint decodeAcceleration(final int code) {
+        if (code < 1 || code >= ACCELERATIONS.length) throw new IllegalArgumentException("Not a move code: " + code);
+        return ACCELERATIONS[code];
+    }
+
+    /**
+     * Return the offset in the replay data just past the end of this
+     * game, where the next game (if any) starts.
+     * @return The end offset
+     */
+    public long getEndOffset() {
+        return mEnd;
+    }
+
+    /**
+     * Return the offset in the replay data where this game starts.
+     * @return The start offset
+     */
+    public long getStartOffset() {
+        return mStart;
+    }
+
+    /**
+     * Return the layout hash of the track the game was played on.
+     * @return The value of Track.getLayoutHash() for the track
+     */
+    public long getLayoutHash() {
+        return mLayoutHash;
+    }
+
+    public int getPlayerCount() {
+        return mControllerTypes.length;
+    }
+
+    /**
+     * Return the kind of controller that played for a player.
+     * @param player The zero-based player number
+     * @return The name given to ReplayWriter.startGame()
+     */
+    public String getControllerType(final int player) {
+        return mControllerTypes[player];
+    }
+
+    /**
+     * Return the number of turns in the game. Each player's move counts as
+     * a separate turn.
+     * @return The number of turns
+     */
+    public int getTurnCount() {
+        return mResult.getTurnCount();
+    }
+
+    /**
+     * Return the outcome of the game as it was recorded.
+     * @return The recorded result
+     */
+    public GameResult getResult() {
+        return mResult;
+    }
+
+    /**
+     * Return the number of turns between checkpoints. Seeking never
+     * replays more moves than this.
+     * @return The checkpoint interval
+     */
+    public int getCheckpointInterval() {
+        return mCheckpointInterval;
+    }
+
+    /**
+     * Return the number of chunks, each starting with a checkpoint.
+     * Chunk c starts at turn c * getCheckpointInterval().
+     * @return The number of chunks
+     */
+    public int getChunkCount() {
+        return mChunkOffsets.length;
+    }
+
+    /**
+     * Return the move made on a turn.
+     * @param turn The zero-based turn number
+     * @return The acceleration applied on that turn
+     */
+    public GridPoint getAcceleration(final int turn) {
+        if (turn < 0 || turn >= getTurnCount()) throw new IndexOutOfBoundsException("No turn " + turn);
+        int chunk = turn / mCheckpointInterval;
+        int move = turn % mCheckpointInterval;
+        int value = mData.get(getMovesOffset(chunk) + move / 2);
+        int code = (move % 2 == 0) ? (value >> 4) & 0xF : value & 0xF;
+        return ACCELERATIONS[code];
+    }
+
+    /**
+     * Determine whether the game can be replayed on a track.
+     * @param track The Track
+     * @return Returns true if the track has the same layout and number of
+     * players as the recorded game
+     */
+    public boolean isPlayableOn(final Track track) {
+        return track.getLayoutHash() == mLayoutHash && track.getPlayerCount() == getPlayerCount();
+    }
+
+    /**
+     * Return the state saved at the start of a chunk.
+     * @param track The Track the state belongs to
+     * @param chunk The zero-based chunk number
+     * @return The state at turn chunk * getCheckpointInterval()
+     */
+    public GameState getCheckpoint(final Track track, final int chunk) {
+        int playerCount = getPlayerCount();
+        int[] rows = new int[playerCount];
+        int[] cols = new int[playerCount];
+        int[] vRows = new int[playerCount];
+        int[] vCols = new int[playerCount];
+        boolean[] isCrashed = new boolean[playerCount];
+        int offset = mChunkOffsets[chunk] + 4;
+        int currentPlayer = mData.getInt(offset);
+        int winner = mData.getInt(offset + 4);
+        offset += 8;
+        for (int player = 0; player < playerCount; player++) {
+            rows[player] = mData.getInt(offset);
+            cols[player] = mData.getInt(offset + 4);
+            vRows[player] = mData.getInt(offset + 8);
+            vCols[player] = mData.getInt(offset + 12);
+            isCrashed[player] = mData.get(offset + 16) != 0;
+            offset += CHECKPOINT_PLAYER_SIZE;
+        }
+        return new GameState(track, rows, cols, vRows, vCols, isCrashed, currentPlayer, winner);
+    }
+
+    /**
+     * Put a Track into the state it was in at the start of a turn, by
+     * restoring the nearest earlier checkpoint and replaying the moves
+     * after it.
+     * @param track A Track with the layout the game was played on
+     * @param turn The zero-based turn number, or getTurnCount() for the
+     *             end of the game
+     */
+    public void seek(final Track track, final int turn) {
+        checkPlayable(track);
+        if (turn < 0 || turn > getTurnCount()) throw new IndexOutOfBoundsException("No turn " + turn);
+        int chunk = Math.min(turn / mCheckpointInterval, mChunkOffsets.length - 1);
+        track.restoreState(getCheckpoint(track, chunk));
+        for (int moveTurn = chunk * mCheckpointInterval; moveTurn < turn; moveTurn++) {
+            track.doPlayerTurn(getAcceleration(moveTurn));
+        }
+    }
+
+    /**
+     * Replay the whole game from the start, through Track.doPlayerTurn(),
+     * and return what happened. The result matches getResult() unless the
+     * rules of the game have changed since it was recorded.
+     * @param track A Track with the layout the game was played on. It is
+     *              reset to the starting state, and left in the final
+     *              state.
+     * @return The result of replaying the game
+     */
+    public GameResult play(final Track track) {
+        seek(track, 0);
+        PlayerController[] controllers = new PlayerController[getPlayerCount()];
+        RecordedMoves moves = new RecordedMoves();
+        for (int player = 0; player < controllers.length; player++) {
+            controllers[player] = moves;
+        }
+        return Simulation.play(track, controllers, getTurnCount());
+    }
+
+
+
+    private void checkPlayable(final Track track) {
+        if (!isPlayableOn(track)) {
+            throw new IllegalArgumentException("The replay was recorded on a different track");
+        }
+    }
+
+    private int getMovesOffset(final int chunk) {
+        return mChunkOffsets[chunk] + CHECKPOINT_HEADER_SIZE + CHECKPOINT_PLAYER_SIZE * getPlayerCount() + 4;
+    }
+
+    /**
+     * Read every chunk, checking the moves, and return where each one's
+     * checkpoint starts. Leaves the position just past the end tag.
+     */
+    private int[] readChunks(final int playerCount) throws InvalidReplayFormatException {
+        int[] offsets = new int[16];
+        int chunkCount = 0;
+        boolean isLastChunk = false;
+        while (true) {
+            int tagOffset = mData.position();
+            int tag = mData.get();
+            if (tag == TAG_END) break;
+            if (tag != TAG_CHUNK || isLastChunk) throw formatError("Expected a chunk or the end of the game", tagOffset);
+
+            if (chunkCount == offsets.length) offsets = Arrays.copyOf(offsets, chunkCount * 2);
+            offsets[chunkCount] = mData.position();
+            int firstTurn = mData.getInt();
+            if (firstTurn != chunkCount * mCheckpointInterval) {
+                throw formatError("Chunk starts on the wrong turn: " + firstTurn, mData.position() - 4);
+            }
+            chunkCount++;
+            skip(CHECKPOINT_HEADER_SIZE - 4 + CHECKPOINT_PLAYER_SIZE * playerCount);
+
+            int moveCount = mData.getInt();
+            if (moveCount < 0 || moveCount > mCheckpointInterval) {
+                throw formatError("Invalid number of moves: " + moveCount, mData.position() - 4);
+            }
+            isLastChunk = moveCount < mCheckpointInterval;
+            for (int move = 0; move < moveCount; move += 2) {
+                int value = mData.get() & 0xFF;
+                int high = value >> 4;
+                int low = value & 0xF;
+                boolean isLowUsed = move + 1 < moveCount;
+                if (high == 0 || high >= ACCELERATIONS.length || (isLowUsed ? low == 0 || low >= ACCELERATIONS.length
+                        : low != 0)) {
+                    throw formatError("Invalid move", mData.position() - 1);
+                }
+            }
+        }
+        if (chunkCount == 0) throw formatError("Game has no chunks", mData.position() - 1);
+        return Arrays.copyOf(offsets, chunkCount);
+    }
+
+    private GameResult readResult(final int playerCount) throws InvalidReplayFormatException {
+        int turnCount = mData.getInt();
+        int lastChunk = mChunkOffsets.length - 1;
+        int lastChunkMoves = mData.getInt(getMovesOffset(lastChunk) - 4);
+        if (turnCount != lastChunk * mCheckpointInterval + lastChunkMoves) {
+            throw formatError("Number of turns doesn't match the moves", mData.position() - 4);
+        }
+        boolean isTurnLimitReached = mData.get() != 0;
+        int winner = mData.getInt();
+        if (winner != Track.NO_WINNER && (winner < 0 || winner >= playerCount)) {
+            throw formatError("Invalid winner: " + winner, mData.position() - 4);
+        }
+
+        int[] crashTurns = new int[playerCount];
+        int[] crashRows = new int[playerCount];
+        int[] crashCols = new int[playerCount];
+        Arrays.fill(crashTurns, GameResult.NOT_CRASHED);
+        int crashCount = mData.getInt();
+        if (crashCount < 0 || crashCount > playerCount) {
+            throw formatError("Invalid number of crashes: " + crashCount, mData.position() - 4);
+        }
+        for (int i = 0; i < crashCount; i++) {
+            int player = mData.getInt();
+            if (player < 0 || player >= playerCount) throw formatError("Invalid player", mData.position() - 4);
+            crashTurns[player] = mData.getInt();
+            crashRows[player] = mData.getInt();
+            crashCols[player] = mData.getInt();
+        }
+        return new GameResult(winner, turnCount, isTurnLimitReached, crashTurns, crashRows, crashCols);
+    }
+
+    private void skip(final int count) {
+        if (count > mData.remaining()) throw new BufferUnderflowException();
+        mData.position(mData.position() + count);
+    }
+
+    /**
+     * Read a string written by DataOutput.writeUTF(). Names are short and
+     * only read once per game, so this doesn't need to be fast.
+     */
+    private String readUtf() throws InvalidReplayFormatException {
+        int offset = mData.position();
+        int length = mData.getShort() & 0xFFFF;
+        byte[] bytes = new byte[length + 2];
+        bytes[0] = (byte) (length >> 8);
+        bytes[1] = (byte) length;
+        mData.get(bytes, 2, length);
+        try {
+            return new DataInputStream(new ByteArrayInputStream(bytes)).readUTF();
+        } catch (IOException e) {
+            throw formatError("Invalid controller type name", offset);
+        }
+    }
+
+    /**
+     * Report a problem at an offset within the game.
+     */
+    private InvalidReplayFormatException formatError(final String message, final int offset) {
+        return new InvalidReplayFormatException(message, mStart + offset);
+    }
+
+    /**
+     * Plays the recorded moves in order, for every player.
+     */
+    private class RecordedMoves implements PlayerController {
+        private int mNextTurn = 0;
+
+        @Override
+        public GridPoint getMove() {
+            return getAcceleration(mNextTurn++);
+        }
+    }
+}
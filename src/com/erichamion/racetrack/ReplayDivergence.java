@@ -0,0 +1,56 @@
+package com.erichamion.racetrack;
+
+/**
+ * Describes the first point where a replayed game stopped matching its
+ * recording.
+ *
+ * Created by me on 10/16/26.
+ */
+public final class ReplayDivergence {
+    private final String mSource;
+    private final int mGameNumber;
+    private final int mTurn;
+    private final String mDescription;
+
+
+    /**
+     * @param source Where the game came from, such as the replay file name
+     * @param gameNumber The one-based number of the game within its source
+     * @param turn The zero-based turn where the replay first differed
+     * @param description What was different
+     */
+    public ReplayDivergence(final String source, final int gameNumber, final int turn, final String description) {
+        mSource = source;
+        mGameNumber = gameNumber;
+        mTurn = turn;
+        mDescription = description;
+    }
+
+    public String getSource() {
+        return mSource;
+    }
+
+    public int getGameNumber() {
+        return mGameNumber;
+    }
+
+    /**
+     * Return the first turn that played out differently. When the only
+     * difference is in the state saved at a checkpoint, this is the turn
+     * of the checkpoint, and the actual difference happened somewhere in
+     * the turns just before it.
+     * @return The zero-based turn number
+     */
+    public int getTurn() {
+        return mTurn;
+    }
+
+    public String getDescription() {
+        return mDescription;
+    }
+
+    @Override
+    public String toString() {
+        return mSource + ", game " + mGameNumber + ", turn " + mTurn + ": " + mDescription;
+    }
+}
@@ -0,0 +1,165 @@
+package com.erichamion.racetrack;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads the games written by ReplayWriter, one after another. Files are
+ * memory mapped, and each game is checked and indexed as it is read, but
+ * its moves are left in place until they are replayed. See Replay for the
+ * format.
+ *
+ * Files can be any size. They are mapped in windows, each starting at a
+ * game and holding at least that whole game, going by its length prefix.
+ * Small games share a window, so a file with many games doesn't need a
+ * mapping for each one. The mappings stay valid after the reader is
+ * closed, so games that have been read can still be replayed.
+ *
+ * If writing the last game failed partway through, the data ends in the
+ * middle of it. That game is skipped, so every game before it can still
+ * be read, and isTruncated() reports it.
+ *
+ * Created by me on 10/16/26.
+ */
+public final class ReplayReader implements Closeable {
+    // Windows hold at least this much of the file, when it has that much
+    // left, and more if a single game needs it.
+    private static final int WINDOW_SIZE = 1 << 26;
+
+    // Null when the data was already in memory
+    private final FileChannel mChannel;
+    private final long mSize;
+    private ByteBuffer mWindow;
+    // Offset of the window within the data
+    private long mWindowStart;
+    private long mOffset = 0;
+
+
+    /**
+     * Open a replay file. The file stays open until the reader is
+     * closed.
+     * @param file The replay file
+     * @return A new ReplayReader, starting at the first game in the file
+     * @throws java.io.FileNotFoundException If the file can't be opened
+     * @throws IOException If the file can't be read
+     */
+    public static ReplayReader open(final File file) throws IOException {
+        FileInputStream stream = new FileInputStream(file);
+        try {
+            return new ReplayReader(stream.getChannel());
+        } catch (IOException | RuntimeException e) {
+            stream.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @param data The replay data, from its current position to its
+     *             limit. The buffer is not modified.
+     */
+    public ReplayReader(final ByteBuffer data) {
+        mChannel = null;
+        mWindow = data.slice();
+        mWindowStart = 0;
+        mSize = mWindow.limit();
+    }
+
+    private ReplayReader(final FileChannel channel) throws IOException {
+        mChannel = channel;
+        mWindow = null;
+        mWindowStart = 0;
+        mSize = channel.size();
+    }
+
+    /**
+     * Determine whether there are more games to read.
+     * @return Returns true if there is at least one more game, false if
+     * there are no more, or if all that is left is a game that was cut
+     * short
+     * @throws IOException If the file can't be read
+     */
+    public boolean hasNext() throws IOException {
+        return mOffset < mSize && !isTruncated();
+    }
+
+    /**
+     * Determine whether the data ends partway through the next game.
+     * Other problems with the game, such as data that isn't a replay, are
+     * left for next() to report.
+     * @return Returns true if the next game was cut short
+     * @throws IOException If the file can't be read
+     */
+    public boolean isTruncated() throws IOException {
+        long remaining = mSize - mOffset;
+        if (remaining <= 0) return false;
+        if (remaining < Replay.HEADER_SIZE) return true;
+        int length = getGameLength();
+        return length >= 0 && length > remaining - Replay.HEADER_SIZE;
+    }
+
+    /**
+     * Read the next game.
+     * @return The next game
+     * @throws InvalidReplayFormatException If the next game isn't valid.
+     * The offset it reports is relative to the start of the data.
+     * @throws IOException If the file can't be read
+     */
+    public Replay next() throws IOException {
+        if (!hasNext()) throw new NoSuchElementException();
+        // A game with a bad header is left for Replay to report, with no
+        // more of the data than the header. So is one too big for a
+        // single buffer, which ReplayWriter can't write.
+        int length = getGameLength();
+        int size = (length < 0 || length > Integer.MAX_VALUE - Replay.HEADER_SIZE)
+                ? Replay.HEADER_SIZE : Replay.HEADER_SIZE + length;
+        Replay result = new Replay(getBytes(mOffset, size), mOffset);
+        mOffset = result.getEndOffset();
+        return result;
+    }
+
+    /**
+     * Close the file, if there is one. Games that have already been read
+     * can still be used.
+     * @throws IOException If the file can't be closed
+     */
+    @Override
+    public void close() throws IOException {
+        if (mChannel != null) mChannel.close();
+    }
+
+
+
+    /**
+     * Return the length in the header of the next game, not counting the
+     * header, or -1 if it isn't a replay. The whole header must be in the
+     * data.
+     */
+    private int getGameLength() throws IOException {
+        ByteBuffer header = getBytes(mOffset, Replay.HEADER_SIZE);
+        if (header.getInt(0) != Replay.MAGIC || header.get(4) != Replay.VERSION) return -1;
+        return header.getInt(5);
+    }
+
+    /**
+     * Return a buffer holding the given bytes of the data, mapping a new
+     * window if the current one doesn't hold all of them. The bytes must
+     * all be in the data.
+     */
+    private ByteBuffer getBytes(final long offset, final int length) throws IOException {
+        if (mWindow == null || offset < mWindowStart || offset + length > mWindowStart + mWindow.limit()) {
+            long size = Math.min(mSize - offset, Math.max(WINDOW_SIZE, length));
+            mWindow = mChannel.map(FileChannel.MapMode.READ_ONLY, offset, size);
+            mWindowStart = offset;
+        }
+        ByteBuffer result = mWindow.duplicate();
+        int start = (int) (offset - mWindowStart);
+        result.position(start);
+        result.limit(start + length);
+        return result.slice();
+    }
+}
@@ -0,0 +1,301 @@
+package com.erichamion.racetrack;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Replays a corpus of recorded games with the current rules, spread
+ * across worker threads, and reports every game that no longer plays out
+ * the way it was recorded. Use it after changing how moves are resolved,
+ * to find out whether any past game would now end differently.
+ *
+ * Each game is replayed by feeding its recorded moves straight into
+ * Track.doPlayerTurn(), and checked turn by turn against everything the
+ * recording knows: each player's crash turn and position, the turn the
+ * game ended and its winner, and the full state saved at each checkpoint.
+ * Checking stops at the first difference, since everything after it is
+ * expected to differ too.
+ *
+ * The replay files are read on the calling thread, which hands the games
+ * to the workers in batches. Only a few batches are in flight at once, so
+ * memory use doesn't grow with the size of the corpus. Divergences are
+ * reported in the order the games were read, no matter how many threads
+ * are used.
+ *
+ * Created by me on 10/16/26.
+ */
+public class ReplayVerifier {
+    // Games are grouped into batches of at least this many turns, so that
+    // handing them to the workers takes little time compared to replaying
+    // them.
+    private static final int TURNS_PER_BATCH = 1 << 16;
+    // Batches waiting or running per worker thread
+    private static final int BATCHES_PER_THREAD = 4;
+
+    // Starting tracks by layout hash
+    private final Map<Long, List<Track>> mTracks = new HashMap<>();
+
+
+    /**
+     * Add a track that games may have been played on. Its layout hash is
+     * computed right away, to match games to it, and a copy is kept, so
+     * later changes to the track don't affect the replays.
+     * @param track The Track, in its starting state. It is not modified.
+     */
+    public void addTrack(final Track track) {
+        long hash = track.getLayoutHash();
+        List<Track> tracks = mTracks.get(hash);
+        if (tracks == null) {
+            tracks = new ArrayList<>();
+            mTracks.put(hash, tracks);
+        }
+        tracks.add(new Track(track));
+    }
+
+    /**
+     * Replay every game in a set of replay files. A file that can't be
+     * read, or that stops following the replay format, is reported as an
+     * error, and the games before the problem are still checked.
+     * @param replayFiles The replay files
+     * @param threadCount The number of worker threads to use
+     * @return The results
+     */
+    public VerificationReport run(final List<File> replayFiles, final int threadCount) {
+        long startTime = System.nanoTime();
+        VerificationReport result = new VerificationReport();
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        Deque<Future<VerificationReport>> pending = new ArrayDeque<>();
+        int maxPending = threadCount * BATCHES_PER_THREAD;
+        try {
+            // Batches can hold games from more than one file.
+            Batch batch = new Batch();
+            for (File file : replayFiles) {
+                String error = null;
+                int gameNumber = 0;
+                try (ReplayReader reader = ReplayReader.open(file)) {
+                    while (reader.hasNext()) {
+                        batch.add(reader.next(), file.getPath(), ++gameNumber);
+                        if (batch.mTurnCount >= TURNS_PER_BATCH) {
+                            submit(executor, batch, pending, maxPending, result);
+                            batch = new Batch();
+                        }
+                    }
+                    if (reader.isTruncated()) error = "the last game was cut short and was skipped";
+                } catch (IOException e) {
+                    error = e.getMessage();
+                }
+
+                if (error != null) {
+                    // Check the games read so far before reporting the
+                    // problem, to keep everything in order.
+                    submit(executor, batch, pending, maxPending, result);
+                    batch = new Batch();
+                    while (!pending.isEmpty()) result.merge(getResult(pending.removeFirst()));
+                    result.addError(file.getPath() + ": " + error);
+                }
+            }
+            submit(executor, batch, pending, maxPending, result);
+            while (!pending.isEmpty()) result.merge(getResult(pending.removeFirst()));
+        } finally {
+            executor.shutdownNow();
+        }
+        result.addElapsedNanos(System.nanoTime() - startTime);
+        return result;
+    }
+
+    /**
+     * Replay a single game and find the first point where it differs from
+     * its recording.
+     * @param replay The game
+     * @param track A Track with the layout the game was played on. It is
+     *              left in the state where checking stopped.
+     * @param source Where the game came from, for the report
+     * @param gameNumber The one-based number of the game within its source
+     * @return The first difference, or null if the game matched
+     */
+    public static ReplayDivergence findDivergence(final Replay replay, final Track track, final String source,
+                                                  final int gameNumber) {
+        GameResult recorded = replay.getResult();
+        int turnCount = recorded.getTurnCount();
+        int interval = replay.getCheckpointInterval();
+        boolean[] isCrashed = new boolean[track.getPlayerCount()];
+        int turn = 0;
+        try {
+            replay.seek(track, 0);
+            for (; turn < turnCount; turn++) {
+                if (turn % interval == 0) {
+                    String difference = compareCheckpoint(track, replay.getCheckpoint(track, turn / interval));
+                    if (difference != null) {
+                        return new ReplayDivergence(source, gameNumber, turn, difference);
+                    }
+                }
+                if (track.isGameOver()) {
+                    return new ReplayDivergence(source, gameNumber, turn - 1, "The game ended after " + turn
+                            + " of " + turnCount + " turns");
+                }
+
+                int player = track.getCurrentPlayer();
+                track.doPlayerTurn(replay.getAcceleration(turn));
+
+                String difference = null;
+                if (track.isPlayerCrashed(player) && !isCrashed[player]) {
+                    isCrashed[player] = true;
+                    difference = compareCrash(recorded, player, turn, track.getPlayerPos(player));
+                } else if (recorded.getCrashTurn(player) == turn) {
+                    difference = "Player " + (player + 1) + " didn't crash, but was recorded crashing at "
+                            + recorded.getCrashPosition(player);
+                }
+                if (difference != null) return new ReplayDivergence(source, gameNumber, turn, difference);
+            }
+        } catch (RuntimeException e) {
+            return new ReplayDivergence(source, gameNumber, turn, "The replay failed: " + e);
+        }
+
+        int lastTurn = turnCount - 1;
+        if (track.isGameOver() == recorded.isTurnLimitReached()) {
+            String outcome = track.isGameOver() ? "ended" : "didn't end";
+            return new ReplayDivergence(source, gameNumber, lastTurn, "The game " + outcome + " after " + turnCount
+                    + " turns, but the recording says otherwise");
+        }
+        if (track.getWinner() != recorded.getWinner()) {
+            return new ReplayDivergence(source, gameNumber, lastTurn, "The winner was "
+                    + describePlayer(track.getWinner()) + ", but was recorded as "
+                    + describePlayer(recorded.getWinner()));
+        }
+        return null;
+    }
+
+
+
+    /**
+     * Return a description of how a player's new crash differs from the
+     * recording, or null if it matches.
+     */
+    private static String compareCrash(final GameResult recorded, final int player, final int turn,
+                                       final GridPoint position) {
+        String replayed = "Player " + (player + 1) + " crashed at " + position;
+        if (!recorded.isCrashed(player)) return replayed + ", but didn't crash in the recording";
+        if (recorded.getCrashTurn(player) != turn) {
+            return replayed + ", but was recorded crashing on turn " + recorded.getCrashTurn(player);
+        }
+        if (!recorded.getCrashPosition(player).equals(position)) {
+            return replayed + ", but was recorded crashing at " + recorded.getCrashPosition(player);
+        }
+        return null;
+    }
+
+    /**
+     * Return a description of the first difference between the track and
+     * a checkpoint, or null if they match.
+     */
+    private static String compareCheckpoint(final Track track, final GameState checkpoint) {
+        for (int player = 0; player < checkpoint.getPlayerCount(); player++) {
+            GridPoint position = track.getPlayerPos(player);
+            GridPoint velocity = track.getPlayerVelocity(player);
+            if (position.getRow() != checkpoint.getPlayerRow(player)
+                    || position.getCol() != checkpoint.getPlayerCol(player)
+                    || velocity.getRow() != checkpoint.getPlayerVelocityRow(player)
+                    || velocity.getCol() != checkpoint.getPlayerVelocityCol(player)
+                    || track.isPlayerCrashed(player) != checkpoint.isPlayerCrashed(player)) {
+                return "Player " + (player + 1) + " is at " + position + " moving " + velocity
+                        + (track.isPlayerCrashed(player) ? " (crashed)" : "") + ", but the checkpoint has "
+                        + GridPoint.of(checkpoint.getPlayerRow(player), checkpoint.getPlayerCol(player))
+                        + " moving "
+                        + GridPoint.of(checkpoint.getPlayerVelocityRow(player),
+                        checkpoint.getPlayerVelocityCol(player))
+                        + (checkpoint.isPlayerCrashed(player) ? " (crashed)" : "");
+            }
+        }
+        if (track.getCurrentPlayer() != checkpoint.getCurrentPlayer()) {
+            return "It is player " + (track.getCurrentPlayer() + 1) + "'s turn, but the checkpoint has player "
+                    + (checkpoint.getCurrentPlayer() + 1);
+        }
+        return null;
+    }
+
+    private static String describePlayer(final int player) {
+        return (player == Track.NO_WINNER) ? "nobody" : "player " + (player + 1);
+    }
+
+    /**
+     * Hand a batch to the workers, first waiting for the oldest batch if
+     * too many are already in flight. Does nothing with an empty batch.
+     */
+    private static void submit(final ExecutorService executor, final Batch batch,
+                               final Deque<Future<VerificationReport>> pending, final int maxPending,
+                               final VerificationReport result) {
+        if (batch.mReplays.isEmpty()) return;
+        if (pending.size() >= maxPending) result.merge(getResult(pending.removeFirst()));
+        pending.addLast(executor.submit(batch));
+    }
+
+    private static VerificationReport getResult(final Future<VerificationReport> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while verifying replays", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Replay verification failed", e.getCause());
+        }
+    }
+
+    /**
+     * Finds the track for a game, or returns null if there isn't one.
+     */
+    private Track findTrack(final Replay replay) {
+        List<Track> tracks = mTracks.get(replay.getLayoutHash());
+        if (tracks == null) return null;
+        for (Track track : tracks) {
+            if (replay.isPlayableOn(track)) return track;
+        }
+        return null;
+    }
+
+    /**
+     * A run of consecutive games, which may come from more than one
+     * replay file, checked by a single worker.
+     */
+    private class Batch implements Callable<VerificationReport> {
+        private final List<Replay> mReplays = new ArrayList<>();
+        // Where each game came from, and its one-based number there
+        private final List<String> mSources = new ArrayList<>();
+        private final List<Integer> mGameNumbers = new ArrayList<>();
+        private int mTurnCount = 0;
+
+        public void add(final Replay replay, final String source, final int gameNumber) {
+            mReplays.add(replay);
+            mSources.add(source);
+            mGameNumbers.add(gameNumber);
+            mTurnCount += replay.getTurnCount();
+        }
+
+        @Override
+        public VerificationReport call() {
+            VerificationReport result = new VerificationReport();
+            for (int i = 0; i < mReplays.size(); i++) {
+                Replay replay = mReplays.get(i);
+                Track track = findTrack(replay);
+                if (track == null) {
+                    result.addUnknownTrack();
+                    continue;
+                }
+                ReplayDivergence divergence = findDivergence(replay, new Track(track), mSources.get(i),
+                        mGameNumbers.get(i));
+                result.addGame(replay.getTurnCount(), divergence);
+            }
+            return result;
+        }
+    }
+}
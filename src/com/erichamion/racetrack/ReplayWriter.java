@@ -0,0 +1,242 @@
+package com.erichamion.racetrack;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Records games in the compact binary replay format read by ReplayReader.
+ * Games are appended one after another, so a single file can collect
+ * every game played, and writing never goes back to change anything
+ * already written. Each game is kept in memory until finishGame(), then
+ * written in one piece with its length in front. A game that is given up
+ * on with abort() leaves nothing behind, and a reader can tell where a
+ * game cut short by a failed write was meant to end. Output is buffered,
+ * and nothing is guaranteed to reach the underlying stream until flush()
+ * or close().
+ *
+ * A recorded game holds the track's layout hash, a name for the kind of
+ * controller behind each player, and one acceleration per turn, packed
+ * into four bits as the number pad digit used by the text game (1 through
+ * 9). The moves are split into chunks, each starting with a checkpoint of
+ * the full game state, so a reader can jump to any turn without replaying
+ * everything before it. The game ends with its GameResult, so a replay
+ * can be checked against what originally happened. See Replay for the
+ * exact layout.
+ *
+ * Usage, for each game:
+ * <pre>
+ *     writer.startGame(track, controllerTypes);
+ *     try {
+ *         while (...) {
+ *             writer.recordTurn(track, acceleration);
+ *             track.doPlayerTurn(acceleration);
+ *         }
+ *         writer.finishGame(result);
+ *     } finally {
+ *         // Does nothing once the game is finished
+ *         writer.abort();
+ *     }
+ * </pre>
+ *
+ * Created by me on 10/16/26.
+ */
+public final class ReplayWriter implements Closeable, Flushable {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final DataOutputStream mOut;
+    // Everything after the length of the game being recorded, until it
+    // is finished
+    private final ByteArrayOutputStream mGameBytes = new ByteArrayOutputStream(BUFFER_SIZE);
+    private final DataOutputStream mGame = new DataOutputStream(mGameBytes);
+
+    // State of the game being recorded
+    private boolean mIsRecording = false;
+    private int mPlayerCount;
+    private int mCheckpointInterval;
+    private int mTurn;
+    // Moves of the current chunk, two per byte
+    private byte[] mChunkMoves;
+    private int mChunkMoveCount;
+
+
+    /**
+     * Create a ReplayWriter that adds games to the end of a file,
+     * creating the file if needed.
+     * @param file The replay file
+     * @return A new ReplayWriter
+     * @throws IOException If the file can't be opened
+     */
+    public static ReplayWriter append(final File file) throws IOException {
+        return new ReplayWriter(new FileOutputStream(file, true));
+    }
+
+    /**
+     * @param out Where to write the games. Closed along with this
+     *            ReplayWriter.
+     */
+    public ReplayWriter(final OutputStream out) {
+        mOut = new DataOutputStream(new BufferedOutputStream(out, BUFFER_SIZE));
+    }
+
+    /**
+     * Start recording a game.
+     * @param track The Track, in the state the game starts from
+     * @param controllerTypes A name for the kind of controller behind
+     *                        each player, such as "PathFollower" or
+     *                        "Human". Players with the same name share a
+     *                        single copy of it in the output.
+     * @throws IOException If the game can't be written
+     */
+    public void startGame(final Track track, final String[] controllerTypes) throws IOException {
+        if (mIsRecording) throw new IllegalStateException("The previous game hasn't been finished");
+        mPlayerCount = track.getPlayerCount();
+        if (controllerTypes.length != mPlayerCount) {
+            throw new IllegalArgumentException("Need one controller type for each player");
+        }
+
+        mGameBytes.reset();
+        mGame.writeLong(track.getLayoutHash());
+        mGame.writeInt(mPlayerCount);
+
+        // Write each distinct name once, then each player's index into
+        // the names.
+        Map<String, Integer> typeIndices = new LinkedHashMap<>();
+        for (String type : controllerTypes) {
+            if (!typeIndices.containsKey(type)) typeIndices.put(type, typeIndices.size());
+        }
+        mGame.writeInt(typeIndices.size());
+        for (String type : typeIndices.keySet()) {
+            mGame.writeUTF(type);
+        }
+        for (String type : controllerTypes) {
+            mGame.writeShort(typeIndices.get(type));
+        }
+
+        mCheckpointInterval = Replay.getCheckpointInterval(mPlayerCount);
+        mGame.writeInt(mCheckpointInterval);
+        mChunkMoves = new byte[(mCheckpointInterval + 1) / 2];
+        mTurn = 0;
+        mIsRecording = true;
+        startChunk(track);
+    }
+
+    /**
+     * Record the current player's move. Call this before the move is
+     * made.
+     * @param track The Track, in its state before the move
+     * @param acceleration The current player's acceleration
+     * @throws IOException If the move can't be written
+     */
+    public void recordTurn(final Track track, final GridPoint acceleration) throws IOException {
+        if (!mIsRecording) throw new IllegalStateException("No game has been started");
+        if (mChunkMoveCount == mCheckpointInterval) {
+            finishChunk();
+            startChunk(track);
+        }
+
+        int code = Replay.encodeAcceleration(acceleration);
+        int index = mChunkMoveCount / 2;
+        if (mChunkMoveCount % 2 == 0) {
+            mChunkMoves[index] = (byte) (code << 4);
+        } else {
+            mChunkMoves[index] |= (byte) code;
+        }
+        mChunkMoveCount++;
+        mTurn++;
+    }
+
+    /**
+     * Finish recording a game, and write all of it.
+     * @param result The outcome of the game
+     * @throws IOException If the game can't be written
+     */
+    public void finishGame(final GameResult result) throws IOException {
+        if (!mIsRecording) throw new IllegalStateException("No game has been started");
+        if (result.getTurnCount() != mTurn) {
+            throw new IllegalArgumentException("The result has " + result.getTurnCount() + " turns, but "
+                    + mTurn + " were recorded");
+        }
+        finishChunk();
+
+        mGame.writeByte(Replay.TAG_END);
+        mGame.writeInt(result.getTurnCount());
+        mGame.writeBoolean(result.isTurnLimitReached());
+        mGame.writeInt(result.getWinner());
+        int crashCount = 0;
+        for (int player = 0; player < mPlayerCount; player++) {
+            if (result.isCrashed(player)) crashCount++;
+        }
+        mGame.writeInt(crashCount);
+        for (int player = 0; player < mPlayerCount; player++) {
+            if (!result.isCrashed(player)) continue;
+            GridPoint crashPosition = result.getCrashPosition(player);
+            mGame.writeInt(player);
+            mGame.writeInt(result.getCrashTurn(player));
+            mGame.writeInt(crashPosition.getRow());
+            mGame.writeInt(crashPosition.getCol());
+        }
+        mIsRecording = false;
+
+        mOut.writeInt(Replay.MAGIC);
+        mOut.writeByte(Replay.VERSION);
+        mOut.writeInt(mGameBytes.size());
+        mGameBytes.writeTo(mOut);
+        mGameBytes.reset();
+    }
+
+    /**
+     * Stop recording the current game without writing any of it, such as
+     * when the game is quit or fails partway through. Does nothing if no
+     * game is being recorded.
+     */
+    public void abort() {
+        mIsRecording = false;
+        mGameBytes.reset();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        mOut.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        mOut.close();
+    }
+
+
+
+    /**
+     * Start a chunk with a checkpoint of the current state.
+     */
+    private void startChunk(final Track track) throws IOException {
+        mGame.writeByte(Replay.TAG_CHUNK);
+        mGame.writeInt(mTurn);
+        mGame.writeInt(track.getCurrentPlayer());
+        mGame.writeInt(track.getWinner());
+        for (int player = 0; player < mPlayerCount; player++) {
+            GridPoint position = track.getPlayerPos(player);
+            GridPoint velocity = track.getPlayerVelocity(player);
+            mGame.writeInt(position.getRow());
+            mGame.writeInt(position.getCol());
+            mGame.writeInt(velocity.getRow());
+            mGame.writeInt(velocity.getCol());
+            mGame.writeBoolean(track.isPlayerCrashed(player));
+        }
+        mChunkMoveCount = 0;
+    }
+
+    private void finishChunk() throws IOException {
+        mGame.writeInt(mChunkMoveCount);
+        mGame.write(mChunkMoves, 0, (mChunkMoveCount + 1) / 2);
+    }
+}
@@ -0,0 +1,169 @@
+package com.erichamion.racetrack;
+
+import java.io.IOException;
+
+/**
+ * Runs games from start to finish without any input or output, with
+ * every player controlled by a PlayerController. Meant for running large
+ * numbers of computer-only games, for regression testing and for tuning.
+ *
+ * Created by me on 10/16/26.
+ */
+public final class Simulation {
+    public static final int DEFAULT_MAX_TURNS = 10000;
+
+    private Simulation() { }
+
+
+
+    /**
+     * Play a game until somebody wins, everybody crashes, or the turn
+     * limit is reached.
+     * @param track The Track to play on. It is modified by the game.
+     * @param controllers One controller for each player on the track
+     * @param maxTurns The maximum number of turns to play, counting each
+     *                 player's move as a separate turn
+     * @return The result of the game
+     */
+    public static GameResult play(final Track track, final PlayerController[] controllers, final int maxTurns) {
+        try {
+            return play(track, controllers, maxTurns, null);
+        } catch (IOException e) {
+            // Nothing is written without a recorder.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Play a game, recording it. Each player's controller type is recorded
+     * as the simple name of its class.
+     * @param track The Track to play on. It is modified by the game.
+     * @param controllers One controller for each player on the track
+     * @param maxTurns The maximum number of turns to play
+     * @param recorder Where to record the game, or null to not record it
+     * @return The result of the game
+     * @throws IOException If the game can't be recorded
+     */
+    public static GameResult play(final Track track, final PlayerController[] controllers, final int maxTurns,
+                                  final ReplayWriter recorder) throws IOException {
+        final int playerCount = track.getPlayerCount();
+        int[] crashTurns = new int[playerCount];
+        int[] crashRows = new int[playerCount];
+        int[] crashCols = new int[playerCount];
+        for (int player = 0; player < playerCount; player++) {
+            crashTurns[player] = GameResult.NOT_CRASHED;
+        }
+        if (recorder != null) recorder.startGame(track, getControllerTypes(controllers));
+        try {
+            int turn = 0;
+            while (!track.isGameOver() && turn < maxTurns) {
+                int player = track.getCurrentPlayer();
+                GridPoint acceleration = controllers[player].getMove();
+                if (recorder != null) recorder.recordTurn(track, acceleration);
+                track.doPlayerTurn(acceleration);
+
+                if (track.isPlayerCrashed(player) && crashTurns[player] == GameResult.NOT_CRASHED) {
+                    GridPoint crashPosition = track.getPlayerPos(player);
+                    crashTurns[player] = turn;
+                    crashRows[player] = crashPosition.getRow();
+                    crashCols[player] = crashPosition.getCol();
+                }
+                turn++;
+            }
+
+            GameResult result = new GameResult(track.getWinner(), turn, !track.isGameOver(), crashTurns,
+                    crashRows, crashCols);
+            if (recorder != null) recorder.finishGame(result);
+            return result;
+        } finally {
+            // Does nothing if the game was finished
+            if (recorder != null) recorder.abort();
+        }
+    }
+
+    /**
+     * Play a game with a new controller for every player.
+     * @param track The Track to play on. It is modified by the game.
+     * @param factory Creates the controllers
+     * @param seed The seed for the game. Each player's controller gets
+     *             its own seed derived from this one.
+     * @param maxTurns The maximum number of turns to play
+     * @return The result of the game
+     */
+    public static GameResult play(final Track track, final PlayerController.Factory factory, final long seed,
+                                  final int maxTurns) {
+        return play(track, createControllers(track, factory, seed), maxTurns);
+    }
+
+    /**
+     * Play a number of games in a row, each on a fresh copy of a Track,
+     * and collect the results.
+     * @param track The starting Track for each game. It is not modified.
+     * @param factory Creates the controllers for each game
+     * @param seed The seed for the whole batch. Each game gets its own
+     *             seed derived from this one.
+     * @param gameCount The number of games to play
+     * @param maxTurns The maximum number of turns in each game
+     * @return Statistics for all of the games, including the elapsed
+     * time
+     */
+    public static GameStats playMany(final Track track, final PlayerController.Factory factory, final long seed,
+                                     final int gameCount, final int maxTurns) {
+        try {
+            return playMany(track, factory, seed, gameCount, maxTurns, null);
+        } catch (IOException e) {
+            // Nothing is written without a recorder.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Play a number of games in a row, recording each one.
+     * @param track The starting Track for each game. It is not modified.
+     * @param factory Creates the controllers for each game
+     * @param seed The seed for the whole batch
+     * @param gameCount The number of games to play
+     * @param maxTurns The maximum number of turns in each game
+     * @param recorder Where to record the games, or null to not record
+     *                 them
+     * @return Statistics for all of the games, including the elapsed
+     * time
+     * @throws IOException If a game can't be recorded
+     */
+    public static GameStats playMany(final Track track, final PlayerController.Factory factory, final long seed,
+                                     final int gameCount, final int maxTurns, final ReplayWriter recorder)
+            throws IOException {
+        GameStats stats = new GameStats(track.getPlayerCount());
+        long startTime = System.nanoTime();
+        for (int game = 0; game < gameCount; game++) {
+            Track gameTrack = new Track(track);
+            PlayerController[] controllers = createControllers(gameTrack, factory, Util.mixSeed(seed, game));
+            stats.add(play(gameTrack, controllers, maxTurns, recorder));
+        }
+        stats.addElapsedNanos(System.nanoTime() - startTime);
+        return stats;
+    }
+
+
+
+    /**
+     * Create a controller for every player, each with its own seed derived
+     * from the game's seed.
+     */
+    private static PlayerController[] createControllers(final Track track, final PlayerController.Factory factory,
+                                                        final long seed) {
+        PlayerController[] result = new PlayerController[track.getPlayerCount()];
+        for (int player = 0; player < result.length; player++) {
+            result[player] = factory.create(track, player, Util.mixSeed(seed, player));
+        }
+        return result;
+    }
+
+    private static String[] getControllerTypes(final PlayerController[] controllers) {
+        String[] result = new String[controllers.length];
+        for (int player = 0; player < controllers.length; player++) {
+            result[player] = controllers[player].getClass().getSimpleName();
+        }
+        return result;
+    }
+}
@@ -0,0 +1,156 @@
+package com.erichamion.racetrack;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Plays every combination of tracks and player slot assignments for a
+ * set of entries (kinds of computer player), spread across a fork-join
+ * pool, and collects the results per entry.
+ *
+ * For each track, the entries are rotated through the player slots, so
+ * that entry e controls slot s in rotation r when (s + r) % entryCount
+ * == e. Each (track, rotation) matchup is played a configurable number of
+ * times. Every game gets its own seed, derived only from the tournament
+ * seed and the game's position in the schedule, and each worker keeps its
+ * own statistics until the end. As a result, the same seed always gives
+ * exactly the same statistics, no matter how many threads are used.
+ *
+ * Tracks are loaded once and each game runs on its own copy, which shares
+ * the track layout and distance fields with the original.
+ *
+ * Created by me on 10/16/26.
+ */
+public class Tournament {
+    // Below this many games, a task plays its games instead of splitting.
+    private static final int GAMES_PER_TASK = 4;
+
+    private final long mSeed;
+    private final List<Track> mTracks = new ArrayList<>();
+    private final List<String> mEntryNames = new ArrayList<>();
+    private final List<PlayerController.Factory> mEntryFactories = new ArrayList<>();
+    private int mGamesPerMatchup = 1;
+    private int mMaxTurns = Simulation.DEFAULT_MAX_TURNS;
+
+
+    /**
+     * Create an empty tournament.
+     * @param seed The seed that determines every game in the tournament
+     */
+    public Tournament(final long seed) {
+        mSeed = seed;
+    }
+
+    /**
+     * Add a track to the tournament. Whatever the track's default path
+     * finding needs (see PathFinder.Mode.getDefault()) is built right
+     * away, so the games don't wait on each other to build it. On tracks
+     * big enough to be searched hierarchically, that is only the
+     * ClusterGraph, not a DistanceField of the whole track.
+     * @param track The Track, in its starting state. It is not modified.
+     */
+    public void addTrack(final Track track) {
+        PathFinder.Mode.getDefault(track).prepare(track);
+        mTracks.add(new Track(track));
+    }
+
+    /**
+     * Add an entry (a kind of computer player) to the tournament.
+     * @param name A name for the entry, used in the results
+     * @param factory Creates the entry's controllers
+     */
+    public void addEntry(final String name, final PlayerController.Factory factory) {
+        mEntryNames.add(name);
+        mEntryFactories.add(factory);
+    }
+
+    public void setGamesPerMatchup(final int gamesPerMatchup) {
+        mGamesPerMatchup = gamesPerMatchup;
+    }
+
+    public void setMaxTurns(final int maxTurns) {
+        mMaxTurns = maxTurns;
+    }
+
+    /**
+     * Return the total number of games the tournament will play.
+     * @return The number of games
+     */
+    public int getGameCount() {
+        return mTracks.size() * mEntryNames.size() * mGamesPerMatchup;
+    }
+
+    /**
+     * Play the whole tournament.
+     * @param threadCount The number of worker threads to use
+     * @return The combined statistics of every game
+     */
+    public TournamentStats run(final int threadCount) {
+        if (mEntryNames.isEmpty()) throw new IllegalStateException("No entries");
+
+        long startTime = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(threadCount);
+        TournamentStats result;
+        try {
+            result = pool.invoke(new GameRangeTask(0, getGameCount()));
+        } finally {
+            pool.shutdown();
+        }
+        result.addElapsedNanos(System.nanoTime() - startTime);
+        return result;
+    }
+
+    /**
+     * Play a single game from the schedule. Games are numbered track by
+     * track, then rotation by rotation, then repetition by repetition.
+     */
+    private void playGame(final int gameIndex, final TournamentStats stats) {
+        final int entryCount = mEntryNames.size();
+        final int matchup = gameIndex / mGamesPerMatchup;
+        final Track track = new Track(mTracks.get(matchup / entryCount));
+        final int rotation = matchup % entryCount;
+        final long gameSeed = Util.mixSeed(mSeed, gameIndex);
+
+        int[] slotEntries = new int[track.getPlayerCount()];
+        PlayerController[] controllers = new PlayerController[track.getPlayerCount()];
+        for (int player = 0; player < controllers.length; player++) {
+            slotEntries[player] = (player + rotation) % entryCount;
+            controllers[player] = mEntryFactories.get(slotEntries[player])
+                    .create(track, player, Util.mixSeed(gameSeed, player));
+        }
+
+        stats.add(Simulation.play(track, controllers, mMaxTurns), slotEntries);
+    }
+
+
+
+    private class GameRangeTask extends RecursiveTask<TournamentStats> {
+        private final int mStart;
+        private final int mEnd;
+
+        public GameRangeTask(final int start, final int end) {
+            mStart = start;
+            mEnd = end;
+        }
+
+        @Override
+        protected TournamentStats compute() {
+            if (mEnd - mStart <= GAMES_PER_TASK) {
+                TournamentStats stats = new TournamentStats(mEntryNames.toArray(new String[mEntryNames.size()]));
+                for (int game = mStart; game < mEnd; game++) {
+                    playGame(game, stats);
+                }
+                return stats;
+            }
+
+            int middle = (mStart + mEnd) >>> 1;
+            GameRangeTask firstHalf = new GameRangeTask(mStart, middle);
+            firstHalf.fork();
+            TournamentStats result = new GameRangeTask(middle, mEnd).compute();
+            result.merge(firstHalf.join());
+            return result;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.erichamion.racetrack;
+
+/**
+ * Accumulates tournament results for each entrant (each kind of computer
+ * player), no matter which player slot the entrant was assigned in a
+ * given game. All totals are integer counts, so combining partial
+ * results in any order gives exactly the same final numbers.
+ *
+ * Created by me on 10/16/26.
+ */
+public final class TournamentStats {
+    private final String[] mEntryNames;
+    private long mGameCount = 0;
+    private long mNoWinnerCount = 0;
+    private long mTurnLimitCount = 0;
+    private long mTotalTurns = 0;
+    // Indexed by entry
+    private final long[] mGamesPlayed;
+    private final long[] mWins;
+    private final long[] mCrashes;
+    private final long[] mTurnsPlayed;
+    private long mElapsedNanos = 0;
+
+
+    /**
+     * Create an empty set of statistics.
+     * @param entryNames The names of the tournament entries, in entry
+     *                   order
+     */
+    public TournamentStats(final String[] entryNames) {
+        mEntryNames = entryNames.clone();
+        mGamesPlayed = new long[entryNames.length];
+        mWins = new long[entryNames.length];
+        mCrashes = new long[entryNames.length];
+        mTurnsPlayed = new long[entryNames.length];
+    }
+
+    /**
+     * Add the result of one game.
+     * @param result The result to add
+     * @param slotEntries The entry that controlled each player slot in
+     *                    the game
+     */
+    public void add(final GameResult result, final int[] slotEntries) {
+        mGameCount++;
+        mTotalTurns += result.getTurnCount();
+        if (result.getWinner() == Track.NO_WINNER) mNoWinnerCount++;
+        if (result.isTurnLimitReached()) mTurnLimitCount++;
+
+        for (int player = 0; player < result.getPlayerCount(); player++) {
+            int entry = slotEntries[player];
+            mGamesPlayed[entry]++;
+            mTurnsPlayed[entry] += result.getTurnCount();
+            if (result.getWinner() == player) mWins[entry]++;
+            if (result.isCrashed(player)) mCrashes[entry]++;
+        }
+    }
+
+    /**
+     * Add all of the results from another set of statistics for the same
+     * entries into this one.
+     * @param other The statistics to add
+     */
+    public void merge(final TournamentStats other) {
+        mGameCount += other.mGameCount;
+        mNoWinnerCount += other.mNoWinnerCount;
+        mTurnLimitCount += other.mTurnLimitCount;
+        mTotalTurns += other.mTotalTurns;
+        for (int entry = 0; entry < mEntryNames.length; entry++) {
+            mGamesPlayed[entry] += other.mGamesPlayed[entry];
+            mWins[entry] += other.mWins[entry];
+            mCrashes[entry] += other.mCrashes[entry];
+            mTurnsPlayed[entry] += other.mTurnsPlayed[entry];
+        }
+    }
+
+    /**
+     * Add to the wall-clock time spent playing the games, for computing
+     * throughput.
+     * @param nanos Elapsed time in nanoseconds
+     */
+    public void addElapsedNanos(final long nanos) {
+        mElapsedNanos += nanos;
+    }
+
+    public int getEntryCount() {
+        return mEntryNames.length;
+    }
+
+    public String getEntryName(final int entry) {
+        return mEntryNames[entry];
+    }
+
+    public long getGameCount() {
+        return mGameCount;
+    }
+
+    public long getNoWinnerCount() {
+        return mNoWinnerCount;
+    }
+
+    public long getTurnLimitCount() {
+        return mTurnLimitCount;
+    }
+
+    public long getGamesPlayed(final int entry) {
+        return mGamesPlayed[entry];
+    }
+
+    public long getWinCount(final int entry) {
+        return mWins[entry];
+    }
+
+    public long getCrashCount(final int entry) {
+        return mCrashes[entry];
+    }
+
+    /**
+     * Return the fraction of its games that an entry won.
+     * @param entry The entry number
+     * @return The win rate, between 0 and 1 (0 if the entry never played)
+     */
+    public double getWinRate(final int entry) {
+        return (mGamesPlayed[entry] == 0) ? 0.0 : (double) mWins[entry] / mGamesPlayed[entry];
+    }
+
+    /**
+     * Return the fraction of its games in which an entry crashed.
+     * @param entry The entry number
+     * @return The crash rate, between 0 and 1 (0 if the entry never
+     * played)
+     */
+    public double getCrashRate(final int entry) {
+        return (mGamesPlayed[entry] == 0) ? 0.0 : (double) mCrashes[entry] / mGamesPlayed[entry];
+    }
+
+    /**
+     * Return the average length of the games an entry played in.
+     * @param entry The entry number
+     * @return The mean number of turns (0 if the entry never played)
+     */
+    public double getMeanTurns(final int entry) {
+        return (mGamesPlayed[entry] == 0) ? 0.0 : (double) mTurnsPlayed[entry] / mGamesPlayed[entry];
+    }
+
+    /**
+     * Return the average length of all games.
+     * @return The mean number of turns (0 if there are no games)
+     */
+    public double getMeanTurns() {
+        return (mGameCount == 0) ? 0.0 : (double) mTotalTurns / mGameCount;
+    }
+
+    public long getElapsedNanos() {
+        return mElapsedNanos;
+    }
+
+    /**
+     * Return the number of games played per second of elapsed time.
+     * @return Throughput in games per second (0 if no time was recorded)
+     */
+    public double getGamesPerSecond() {
+        return (mElapsedNanos == 0) ? 0.0 : mGameCount * 1e9 / mElapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        result.append(String.format("Games: %d, mean turns: %.2f, no winner: %d, turn limit: %d, games/s: %.1f",
+                mGameCount, getMeanTurns(), mNoWinnerCount, mTurnLimitCount, getGamesPerSecond()));
+        for (int entry = 0; entry < mEntryNames.length; entry++) {
+            result.append(String.format("%n    %s: games %d, win rate %.4f, crash rate %.4f, mean turns %.2f",
+                    mEntryNames[entry], mGamesPlayed[entry], getWinRate(entry), getCrashRate(entry),
+                    getMeanTurns(entry)));
+        }
+        return result.toString();
+    }
+}
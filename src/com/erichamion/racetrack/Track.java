@@ -8,17 +8,45 @@ import java.util.*;
  * Created by me on 8/14/15.
  */
 public class Track {
-    public static final int MAX_PLAYERS = 9;
+    public static final int MAX_PLAYERS = 1 << 16;
     public static final int NO_WINNER = -1;
+    // Distances to the nearest wall are capped so they fit in a byte.
+    public static final int MAX_WALL_DISTANCE = 255;
+    // Shown in place of a crashed player
+    public static final char CRASH_INDICATOR = 'X';
 
-    private static final char CRASH_INDICATOR = 'X';
+    // Players are drawn with these symbols in order, and any players
+    // beyond them with OTHER_PLAYER_SYMBOL. None of them is a SpaceType
+    // character or the crash indicator.
+    private static final String PLAYER_SYMBOLS = "123456789ABCDEFGHIJKLMNOPQRSTUVWYZabcdefghijklmnopqrstuwxyz";
+    private static final char OTHER_PLAYER_SYMBOL = '@';
 
     private List<Player> mPlayers = new ArrayList<>();
     private int mWidth = 0;
     private int mHeight = 0;
-    private List<List<SpaceType>> mGrid = new ArrayList<>();
+    // One byte per grid space, holding the SpaceType ordinal, stored row
+    // by row. While the track is being read, this may be longer than
+    // needed.
+    private byte[] mGrid = new byte[0];
+    // Chebyshev distance from each space to the nearest wall (unsigned,
+    // capped at MAX_WALL_DISTANCE), in the same layout as mGrid.
+    private byte[] mWallDistances;
     private int mCurrentPlayer = 0;
     private int mWinner = NO_WINNER;
+    // Where the players are, for constant-time collision checks
+    private OccupancyIndex mOccupancy;
+    // Where the crashed and stopped players are, for
+    // isBlockedByOtherPlayer()
+    private OccupancyIndex mObstacles;
+    // Packed starting space of each player. Never changes, so copies
+    // share it.
+    private long[] mStartPositions;
+    // Players who haven't crashed, in turn order
+    private ActivePlayers mActivePlayers;
+    private final MoveResolver mMoveResolver = new MoveResolver();
+    // Data that depends only on the track layout, computed when first
+    // needed and shared by all copies of this Track.
+    private final LayoutCache mLayoutCache;
 
 
     public enum SpaceType {
@@ -29,13 +57,43 @@ public class Track {
         FINISH_LEFT('<'),
         FINISH_RIGHT('>');
 
+        private static final SpaceType[] VALUES = values();
+        // SpaceType ordinal for each ASCII character, or NOT_A_SPACE
+        private static final byte NOT_A_SPACE = -1;
+        private static final byte[] ORDINALS_BY_CHAR = new byte[128];
+        static {
+            Arrays.fill(ORDINALS_BY_CHAR, NOT_A_SPACE);
+            for (SpaceType spaceType : VALUES) {
+                ORDINALS_BY_CHAR[spaceType.value] = (byte) spaceType.ordinal();
+            }
+        }
+
         private final char value;
 
         SpaceType(final char c) {
             value = c;
         }
 
+        /**
+         * Return the character that represents this SpaceType in track
+         * data and in toString().
+         * @return The character
+         */
+        public char getSymbol() {
+            return value;
+        }
 
+        /**
+         * Look up the SpaceType that a character represents in track data,
+         * without considering the border character.
+         * @param c A character (or Unicode code point)
+         * @return The ordinal of the SpaceType, or a negative number if the
+         * character doesn't represent a SpaceType (so it is either the
+         * border character or a player)
+         */
+        static int ordinalOf(final int c) {
+            return (c >= 0 && c < ORDINALS_BY_CHAR.length) ? ORDINALS_BY_CHAR[c] : NOT_A_SPACE;
+        }
     }
 
 
@@ -55,9 +113,13 @@ public class Track {
      *                the starting position for a car, and there must be
      *                between 1 and MAX_PLAYERS of these (one for each
      *                player - either the same or different characters).
+     *                Players are numbered in reading order, so a track
+     *                for many players can simply mark every start with
+     *                the same character.
      * @throws InvalidTrackFormatException
      */
     public Track(final Scanner scanner) throws InvalidTrackFormatException {
+        mLayoutCache = new LayoutCache();
         char borderChar = '\0';
         while (scanner.hasNextLine()) {
             String currentLine = scanner.nextLine();
@@ -89,39 +151,101 @@ public class Track {
         if (mHeight == 0) throw new InvalidTrackFormatException("No track data supplied");
         if (mPlayers.size() == 0) throw new InvalidTrackFormatException("No player positions");
 
+        if (mGrid.length != mWidth * mHeight) {
+            mGrid = Arrays.copyOf(mGrid, mWidth * mHeight);
+        }
+        computeWallDistances();
+        initStartPositions();
+        initPlayerIndex();
+
+        mCurrentPlayer = 0;
+    }
+
+    /**
+     * Initialize a Track from a grid that has already been read, for
+     * TrackLoader.
+     * @param width The number of columns
+     * @param height The number of rows
+     * @param grid The SpaceType ordinal of every space, row by row. Must
+     *             be exactly width * height long. The array is used
+     *             directly, not copied.
+     * @param players The starting position of each player, between 1 and
+     *                MAX_PLAYERS of them
+     */
+    Track(final int width, final int height, final byte[] grid, final List<Player> players) {
+        mLayoutCache = new LayoutCache();
+        mWidth = width;
+        mHeight = height;
+        mGrid = grid;
+        mPlayers.addAll(players);
+        computeWallDistances();
+        initStartPositions();
+        initPlayerIndex();
+
         mCurrentPlayer = 0;
     }
 
+    /**
+     * Create a copy of a Track, including the current positions and
+     * velocities of all players, the current player, and the winner. The
+     * copy shares the unchanging track layout with the original, so it is
+     * cheap to create, and the two can then be played independently.
+     * @param other The Track to copy
+     */
+    public Track(final Track other) {
+        mWidth = other.mWidth;
+        mHeight = other.mHeight;
+        mGrid = other.mGrid;
+        mWallDistances = other.mWallDistances;
+        mLayoutCache = other.mLayoutCache;
+        for (Player player : other.mPlayers) {
+            mPlayers.add(new Player(player));
+        }
+        mOccupancy = new OccupancyIndex(other.mOccupancy);
+        mObstacles = new OccupancyIndex(other.mObstacles);
+        mActivePlayers = new ActivePlayers(other.mActivePlayers);
+        mCurrentPlayer = other.mCurrentPlayer;
+        mWinner = other.mWinner;
+        mStartPositions = other.mStartPositions;
+    }
+
     /**
      * Return a String representation of the track, including the
      * player locations.
      * @return A String representation of the track
      */
     public String toString() {
-        StringBuilder result = new StringBuilder();
-        for (int rowIndex = 0; rowIndex < mGrid.size(); rowIndex++) {
-            List<SpaceType> currentRow = mGrid.get(rowIndex);
-            for (int colIndex = 0; colIndex < currentRow.size(); colIndex++) {
-                SpaceType currentSpace = currentRow.get(colIndex);
-                boolean hasPlayer = false;
-                for (int playerNum = 0; playerNum < mPlayers.size(); playerNum++) {
-                    Player player = mPlayers.get(playerNum);
-                    if (player.getPos().getCol() == colIndex && player.getPos().getRow() == rowIndex) {
-                        hasPlayer = true;
-                        result.append(player.isCrashed() ? CRASH_INDICATOR : Integer.toString(playerNum + 1));
-
-                        // Only put one player indicator in a given space
-                        break;
-                    }
-                }
-                if (!hasPlayer) {
-                    result.append(currentSpace.value);
-                }
+        // Draw the track, then draw the players over it. Players are
+        // drawn from last to first, so when players share a space, the
+        // lowest numbered one shows.
+        char[] board = new char[mHeight * (mWidth + 1)];
+        for (int rowIndex = 0; rowIndex < mHeight; rowIndex++) {
+            int rowStart = rowIndex * (mWidth + 1);
+            for (int colIndex = 0; colIndex < mWidth; colIndex++) {
+                board[rowStart + colIndex] = SpaceType.VALUES[mGrid[rowIndex * mWidth + colIndex]].value;
             }
-            result.append('\n');
+            board[rowStart + mWidth] = '\n';
         }
+        for (int playerNum = mPlayers.size() - 1; playerNum >= 0; playerNum--) {
+            Player player = mPlayers.get(playerNum);
+            int row = player.getPos().getRow();
+            int col = player.getPos().getCol();
+            if (row < 0 || row >= mHeight || col < 0 || col >= mWidth) continue;
+            board[row * (mWidth + 1) + col] = player.isCrashed() ? CRASH_INDICATOR : getPlayerSymbol(playerNum);
+        }
+
+        return new String(board);
+    }
 
-        return result.toString();
+    /**
+     * Return the character that represents a player in toString(). The
+     * first nine players are shown as their one-based player numbers,
+     * 1 through 9, the next ones as letters, and any beyond those as '@'.
+     * @param player The zero-based player number
+     * @return The character that represents the player
+     */
+    public static char getPlayerSymbol(final int player) {
+        return (player < PLAYER_SYMBOLS.length()) ? PLAYER_SYMBOLS.charAt(player) : OTHER_PLAYER_SYMBOL;
     }
 
     /**
@@ -140,6 +264,116 @@ public class Track {
         return mHeight;
     }
 
+    /**
+     * Return the distance from every space to the nearest finish line,
+     * using PathFinder move costs and respecting finish line directions.
+     * Computed the first time it is requested, then shared (including
+     * with copies of this Track).
+     * @return A DistanceField of move costs
+     */
+    public DistanceField getFinishDistances() {
+        synchronized (mLayoutCache) {
+            if (mLayoutCache.mFinishDistances == null) {
+                mLayoutCache.mFinishDistances = DistanceField.createCostField(this);
+            }
+            return mLayoutCache.mFinishDistances;
+        }
+    }
+
+    /**
+     * Return the number of 8-connected steps from every space to the
+     * nearest finish line, ignoring finish line directions. Computed the
+     * first time it is requested, then shared (including with copies of
+     * this Track).
+     * @return A DistanceField of step counts
+     */
+    public DistanceField getFinishSteps() {
+        synchronized (mLayoutCache) {
+            if (mLayoutCache.mFinishSteps == null) {
+                mLayoutCache.mFinishSteps = DistanceField.createStepField(this);
+            }
+            return mLayoutCache.mFinishSteps;
+        }
+    }
+
+    /**
+     * Return the hierarchical abstraction of the track used to find paths
+     * on tracks too big for a DistanceField. Computed the first time it is
+     * requested, then shared (including with copies of this Track).
+     * @return The ClusterGraph
+     */
+    public ClusterGraph getClusterGraph() {
+        synchronized (mLayoutCache) {
+            if (mLayoutCache.mClusterGraph == null) {
+                mLayoutCache.mClusterGraph = new ClusterGraph(this);
+            }
+            return mLayoutCache.mClusterGraph;
+        }
+    }
+
+    /**
+     * Return the jump distances used to find paths with Jump Point
+     * Search. Computed the first time it is requested, then shared
+     * (including with copies of this Track).
+     * @return The JumpTable
+     */
+    public JumpTable getJumpTable() {
+        synchronized (mLayoutCache) {
+            if (mLayoutCache.mJumpTable == null) {
+                mLayoutCache.mJumpTable = new JumpTable(this);
+            }
+            return mLayoutCache.mJumpTable;
+        }
+    }
+
+    /**
+     * Return the calling thread's cache of PathFollower move rankings for
+     * this layout, so every PathFollower in every game on the track (or a
+     * copy of it) played on the same thread shares one, without locking.
+     * Created the first time the thread requests it, sized for this
+     * Track's number of players.
+     * @return The MoveCache
+     */
+    MoveCache getMoveCache() {
+        ThreadLocal<MoveCache> moveCaches;
+        synchronized (mLayoutCache) {
+            if (mLayoutCache.mMoveCaches == null) {
+                mLayoutCache.mMoveCaches = new ThreadLocal<>();
+            }
+            moveCaches = mLayoutCache.mMoveCaches;
+        }
+        MoveCache result = moveCaches.get();
+        if (result == null) {
+            result = new MoveCache(MoveCache.getCapacity(getPlayerCount()));
+            moveCaches.set(result);
+        }
+        return result;
+    }
+
+    /**
+     * Return a 64-bit hash of the track layout: its size and the type of
+     * every space. Tracks loaded from the same data always have the same
+     * hash, no matter where the players are. Computed the first time it
+     * is requested, then shared (including with copies of this Track).
+     * @return The hash
+     */
+    public long getLayoutHash() {
+        synchronized (mLayoutCache) {
+            if (!mLayoutCache.mHasLayoutHash) {
+                // 64-bit FNV-1a
+                long hash = 0xCBF29CE484222325L;
+                hash = (hash ^ mWidth) * 0x100000001B3L;
+                hash = (hash ^ mHeight) * 0x100000001B3L;
+                for (byte space : mGrid) {
+                    hash = (hash ^ space) * 0x100000001B3L;
+                }
+                mLayoutCache.mLayoutHash = hash;
+                mLayoutCache.mHasLayoutHash = true;
+            }
+            return mLayoutCache.mLayoutHash;
+        }
+    }
+
     /**
      * Return the number of players.
      * @return Number of players
@@ -185,6 +419,46 @@ public class Track {
         return mWinner;
     }
 
+    /**
+     * Determine whether the specified player has crashed.
+     * @param player The zero-based player number
+     * @return Returns true if the player has crashed, false otherwise
+     */
+    public boolean isPlayerCrashed(final int player) {
+        return mPlayers.get(player).isCrashed();
+    }
+
+    /**
+     * Determine whether the game has ended, either because a player has
+     * won or because every player has crashed.
+     * @return Returns true if no more moves can be made, false otherwise
+     */
+    public boolean isGameOver() {
+        return mWinner != NO_WINNER || mActivePlayers.getCount() == 0;
+    }
+
+    /**
+     * Put every player, the current player, and the winner into the
+     * state held by a GameState, such as one saved earlier from this
+     * Track or from a copy of it.
+     * @param state The state to restore. Must have the same number of
+     *              players as this Track.
+     */
+    public void restoreState(final GameState state) {
+        if (state.getPlayerCount() != mPlayers.size()) {
+            throw new IllegalArgumentException("State has " + state.getPlayerCount() + " players, but the track has "
+                    + mPlayers.size());
+        }
+        for (int i = 0; i < mPlayers.size(); i++) {
+            mPlayers.set(i, new Player(new GridPoint(state.getPlayerRow(i), state.getPlayerCol(i)),
+                    GridPoint.of(state.getPlayerVelocityRow(i), state.getPlayerVelocityCol(i)),
+                    state.isPlayerCrashed(i)));
+        }
+        mCurrentPlayer = state.getCurrentPlayer();
+        mWinner = state.getWinner();
+        initPlayerIndex();
+    }
+
     /**
      * Accelerate the current player, and update the track state.
      * @param acceleration The current player's acceleration in each
@@ -194,25 +468,18 @@ public class Track {
         Player player = mPlayers.get(mCurrentPlayer);
         if (player.isCrashed() || mWinner != NO_WINNER) return;
 
+        if (isObstacle(mCurrentPlayer)) mObstacles.remove(player.getPos());
         player.accelerate(acceleration);
+        mOccupancy.remove(player.getPos());
         moveCurrentPlayer();
+        mOccupancy.add(player.getPos());
+        if (isObstacle(mCurrentPlayer)) mObstacles.add(player.getPos());
 
         if (player.isCrashed()) {
-            int winCandidate = -1;
-            for (int i = 0; i < mPlayers.size(); i++) {
-                if (!mPlayers.get(i).isCrashed()) {
-                    if (winCandidate == -1) {
-                        winCandidate = i;
-                    } else {
-                        // More than one uncrashed players. Can't declare
-                        // a winner.
-                        winCandidate = -2;
-                        break;
-                    }
-                }
-            }
-            if (winCandidate >= 0) {
-                mWinner = winCandidate;
+            mActivePlayers.remove(mCurrentPlayer);
+            // If only one uncrashed player is left, that player wins.
+            if (mActivePlayers.getCount() == 1) {
+                mWinner = mActivePlayers.getNext(mCurrentPlayer);
             }
         }
 
@@ -226,96 +493,67 @@ public class Track {
      * @return The next active player
      */
     private int getNextPlayer() {
-        int result = mCurrentPlayer;
-        do {
-            result += 1;
-            if (result >= getPlayerCount()) {
-                result = 0;
-            }
-        } while (mPlayers.get(result).isCrashed());
-        return result;
+        // Once everyone has crashed, nobody is left to take a turn.
+        return (mActivePlayers.getCount() == 0) ? mCurrentPlayer : mActivePlayers.getNext(mCurrentPlayer);
     }
 
     /**
-     * Returns all of the grid spaces in the path between two spaces, for
-     * use in determining line of sight.
-     * @param startPoint Starting point as a GridPoint
-     * @param endPoint Ending point as a GridPoint
-     * @return Intervening grid spaces, as a List of GridPoints. Also
-     * includes the starting and ending grid spaces. Each space is given
-     * by a an array of length 2, with row first, followed by column.
-     */
-    public Set<GridPoint> getPath(final GridPoint startPoint, final GridPoint endPoint) {
-        // First, pick the axis that has the largest movement.
-        // For every grid boundary along that axis, test the line of
-        // motion at both the center and the edges of the the cell,
-        // identifying the position along the other axis.
-        // For each of the identified positions, if the position is
-        // within a grid cell, add that cell to the result set.
-        // Do nothing if the position is on the boundary between two
-        // cells. This means we can squeeze through diagonal corners under
-        // the right conditions.
-
-        final double EPS = 1e-8;
-
-        Set<GridPoint> result = new HashSet<>();
-
-        // If there's no movement, no need to do anything. Just return the
-        // starting position.
-        if (startPoint.equals(endPoint)) {
-            result.add(new GridPoint(startPoint));
-            return result;
+     * Set up the occupancy indices and the list of uncrashed players from
+     * the current players.
+     */
+    private void initPlayerIndex() {
+        int playerCount = mPlayers.size();
+        mOccupancy = new OccupancyIndex(playerCount);
+        mObstacles = new OccupancyIndex(playerCount);
+        boolean[] isCrashed = new boolean[playerCount];
+        for (int i = 0; i < playerCount; i++) {
+            Player player = mPlayers.get(i);
+            mOccupancy.add(player.getPos());
+            if (isObstacle(i)) mObstacles.add(player.getPos());
+            isCrashed[i] = player.isCrashed();
         }
+        mActivePlayers = new ActivePlayers(isCrashed);
+    }
 
-        GridPoint difference = new GridPoint(endPoint.getRow() - startPoint.getRow(),
-                endPoint.getCol() - startPoint.getCol());
-        GridPoint distance = new GridPoint(Math.abs(difference.getRow()), Math.abs(difference.getCol()));
-
-        GridPoint.Axis mainAxis =
-                (distance.getValueOnAxis(GridPoint.Axis.ROW) > distance.getValueOnAxis(GridPoint.Axis.COL)) ?
-                        GridPoint.Axis.ROW : GridPoint.Axis.COL;
-        GridPoint.Axis secondAxis = (mainAxis == GridPoint.Axis.ROW) ? GridPoint.Axis.COL : GridPoint.Axis.ROW;
-        double slope = (double) difference.getValueOnAxis(secondAxis) / difference.getValueOnAxis(mainAxis);
-        int stepDirection = (difference.getValueOnAxis(mainAxis) > 0) ? 1 : -1;
-
-        int mainCoord = startPoint.getValueOnAxis(mainAxis);
-        while (mainCoord != endPoint.getValueOnAxis(mainAxis)) {
-            // Integer coordinate - if applicable, add just the single
-            // grid space.
-            double secondCoord = Util.getHeightOfLine(slope, startPoint.getValueOnAxis(mainAxis),
-                    startPoint.getValueOnAxis(secondAxis), mainCoord);
-            if (!Util.isHalfInteger(secondCoord, EPS)) {
-                GridPoint newPoint = new GridPoint();
-                newPoint.setValueOnAxis(mainAxis, mainCoord);
-                newPoint.setValueOnAxis(secondAxis, (int) Math.round(secondCoord));
-                result.add(newPoint);
-            }
-            // Half-integer coordinate - if applicable, add the grid
-            // spaces to either side
-            double mainHalfCoord = mainCoord + (stepDirection * 0.5);
-            double secondHalfCoord = Util.getHeightOfLine(slope, startPoint.getValueOnAxis(mainAxis),
-                    startPoint.getValueOnAxis(secondAxis), mainHalfCoord);
-            if (!Util.isHalfInteger(secondHalfCoord, EPS)) {
-                // Probably not the best names here, but I'm not sure what
-                // would be better. If the main axis is the column axis,
-                // and if the endPoint is to the right of the startPoint,
-                // then the names leftPoint and rightPoint are accurate.
-                GridPoint leftPoint = new GridPoint();
-                GridPoint rightPoint = new GridPoint();
-                int secondHalfInt = (int) Math.round(secondHalfCoord);
-                leftPoint.setValueOnAxis(secondAxis, secondHalfInt);
-                rightPoint.setValueOnAxis(secondAxis, secondHalfInt);
-                leftPoint.setValueOnAxis(mainAxis, mainCoord);
-                rightPoint.setValueOnAxis(mainAxis, mainCoord + stepDirection);
-                result.add(leftPoint);
-                result.add(rightPoint);
-            }
-
-            mainCoord += stepDirection;
+    private void initStartPositions() {
+        mStartPositions = new long[mPlayers.size()];
+        for (int i = 0; i < mStartPositions.length; i++) {
+            mStartPositions[i] = mPlayers.get(i).getPos().toPacked();
         }
+    }
 
-        result.add(new GridPoint(endPoint));
+    /**
+     * Determine whether a player counts as an obstacle for
+     * isBlockedByOtherPlayer(): it has crashed, or it has left its
+     * starting space and stopped. Players still waiting on the start
+     * line aren't obstacles, since they are about to move.
+     */
+    private boolean isObstacle(final int playerIndex) {
+        Player player = mPlayers.get(playerIndex);
+        if (player.isCrashed()) return true;
+        GridPoint velocity = player.getVelocity();
+        return velocity.getRow() == 0 && velocity.getCol() == 0
+                && player.getPos().toPacked() != mStartPositions[playerIndex];
+    }
 
+    /**
+     * Returns all of the grid spaces in the path between two spaces, for
+     * use in determining line of sight. Allocates a new GridPoint for
+     * every space, so code that runs often should use a PathCursor
+     * directly instead.
+     * @param startPoint Starting point as a GridPoint
+     * @param endPoint Ending point as a GridPoint
+     * @return Intervening grid spaces, as a List of GridPoints, in order
+     * from startPoint to endPoint. Also includes the starting and ending
+     * grid spaces. Each space appears only once.
+     */
+    public List<GridPoint> getPath(final GridPoint startPoint, final GridPoint endPoint) {
+        List<GridPoint> result = new ArrayList<>();
+        PathCursor cursor = new PathCursor();
+        cursor.reset(startPoint, endPoint);
+        while (cursor.next()) {
+            result.add(new GridPoint(cursor.getRow(), cursor.getCol()));
+        }
         return result;
     }
 
@@ -326,97 +564,176 @@ public class Track {
      * @return The type of track space at the given location
      */
     public SpaceType getSpace(final GridPoint space) {
+        return getSpace(space.getRow(), space.getCol());
+    }
+
+    /**
+     * Find the type of track space at the given location. If the location
+     * is outside the track bounds, it is considered a wall.
+     * @param row The row of the space to examine
+     * @param col The column of the space to examine
+     * @return The type of track space at the given location
+     */
+    public SpaceType getSpace(final int row, final int col) {
         // Anything out of bounds acts like a wall
-        if (space.getRow() >= mHeight || space.getRow() < 0 || space.getCol() >= mWidth || space.getCol() < 0) {
+        if (row >= mHeight || row < 0 || col >= mWidth || col < 0) {
             return SpaceType.WALL;
         }
 
-        return mGrid.get(space.getRow()).get(space.getCol());
+        return SpaceType.VALUES[mGrid[row * mWidth + col]];
+    }
+
+    /**
+     * Determine whether the space at the given location is a wall. If the
+     * location is outside the track bounds, it is considered a wall.
+     * @param row The row of the space to examine
+     * @param col The column of the space to examine
+     * @return Returns true if the space is a wall, false otherwise
+     */
+    public boolean isWall(final int row, final int col) {
+        return row >= mHeight || row < 0 || col >= mWidth || col < 0 ||
+                mGrid[row * mWidth + col] == SpaceType.WALL.ordinal();
+    }
+
+    /**
+     * Return the distance from a space to the nearest wall, counting
+     * diagonal steps the same as horizontal and vertical ones. Anything
+     * outside the track counts as a wall.
+     * @param row The row of the space to examine
+     * @param col The column of the space to examine
+     * @return 0 for a wall or a location outside the track, 1 for a
+     * space next to a wall (including diagonally), and so on, up to a
+     * maximum of MAX_WALL_DISTANCE
+     */
+    public int getWallDistance(final int row, final int col) {
+        if (row >= mHeight || row < 0 || col >= mWidth || col < 0) return 0;
+        return mWallDistances[row * mWidth + col] & 0xFF;
+    }
+
+    /**
+     * Determine whether the space at the given location is part of a
+     * finish line (in any direction).
+     * @param row The row of the space to examine
+     * @param col The column of the space to examine
+     * @return Returns true if the space is a finish line space, false
+     * otherwise, including if the location is outside the track bounds
+     */
+    public boolean isFinish(final int row, final int col) {
+        if (row >= mHeight || row < 0 || col >= mWidth || col < 0) return false;
+        byte value = mGrid[row * mWidth + col];
+        return value != SpaceType.WALL.ordinal() && value != SpaceType.TRACK.ordinal();
     }
 
     public boolean willPlayerCrash(int playerIndex, GridPoint position) {
-        return (getSpace(position) == SpaceType.WALL || testPlayerCollision(playerIndex, position));
+        return (getSpace(position) == SpaceType.WALL ||
+                isOccupiedByOtherPlayer(playerIndex, position.getRow(), position.getCol()));
+    }
+
+    /**
+     * Determine whether any player other than the given one is at a
+     * location, without checking for walls.
+     * @param playerIndex The zero-based player number to ignore
+     * @param row The row of the location
+     * @param col The column of the location
+     * @return Returns true if another player is at the location, false
+     * otherwise
+     */
+    public boolean isOccupiedByOtherPlayer(final int playerIndex, final int row, final int col) {
+        int count = mOccupancy.getCount(row, col);
+        if (count == 0) return false;
+
+        // Don't count the player itself
+        GridPoint position = mPlayers.get(playerIndex).getPos();
+        if (position.getRow() == row && position.getCol() == col) count--;
+        return count > 0;
+    }
+
+    /**
+     * Determine whether a crashed or stopped player other than the given
+     * one is at a location. Players who haven't left their starting
+     * spaces don't count. Takes constant time no matter how many players
+     * there are.
+     * @param playerIndex The zero-based player number to ignore
+     * @param row The row of the location
+     * @param col The column of the location
+     * @return Returns true if another player who has crashed, or who has
+     * left its starting space and stopped, is at the location, false
+     * otherwise
+     */
+    public boolean isBlockedByOtherPlayer(final int playerIndex, final int row, final int col) {
+        int count = mObstacles.getCount(row, col);
+        if (count == 0) return false;
+
+        // Don't count the player itself
+        GridPoint position = mPlayers.get(playerIndex).getPos();
+        if (isObstacle(playerIndex) && position.getRow() == row && position.getCol() == col) count--;
+        return count > 0;
     }
 
 
     private void moveCurrentPlayer() {
         Player player = mPlayers.get(mCurrentPlayer);
+        GridPoint position = player.getPos();
+        GridPoint velocity = player.getVelocity();
+        // The moving player has already been taken out of the occupancy
+        // index, so anyone there is another player.
+        mMoveResolver.resolve(this, mOccupancy, position.getRow(), position.getCol(), velocity.getRow(),
+                velocity.getCol());
+        if (mMoveResolver.isCrashed()) player.crash();
+        if (mMoveResolver.isWinner()) mWinner = mCurrentPlayer;
+        player.setPos(new GridPoint(mMoveResolver.getRow(), mMoveResolver.getCol()));
+    }
 
-        // Check for collisions and for winning
-        GridPoint startPoint = player.getPos();
-        GridPoint endPoint = player.getNextPos();
-
-        Set<GridPoint> pathPoints = getPath(startPoint, endPoint);
-        GridPoint winPoint = null;
-        GridPoint winDirection = new GridPoint(0, 0);
-        for (GridPoint currentPoint : pathPoints) {
-            switch(getSpace(currentPoint)) {
-                case TRACK:
-                    // As long as we don't collide with another car, do
-                    // nothing.
-                    if (testPlayerCollision(mCurrentPlayer, endPoint)) {
-                        player.crash();
-                    }
-                    break;
-                case WALL:
-                    // Crash, and move directly to the location that
-                    // caused the crash. No need to keep going
-                    player.crash();
-                    player.setPos(currentPoint);
-                    return;
-                case FINISH_UP:
-                    // For all of the finishes, set up a potential win,
-                    // but don't act on it yet. We still might crash.
-                    winDirection.setRow(-1);
-                    winPoint = currentPoint;
-                    break;
-                case FINISH_DOWN:
-                    winDirection.setRow(1);
-                    winPoint = currentPoint;
-                    break;
-                case FINISH_LEFT:
-                    winDirection.setCol(-1);
-                    winPoint = currentPoint;
-                    break;
-                case FINISH_RIGHT:
-                    winDirection.setCol(1);
-                    winPoint = currentPoint;
-                    break;
-            }
-        }
 
-        // Test for win
-        if (winPoint != null) {
-            boolean isValidWin = true;
-            if ((winDirection.getRow() != 0 && !Util.isSignSame(winDirection.getRow(), player.getVelocity().getRow()))
-                    ||
-                    (winDirection.getCol() != 0 &&
-                            !Util.isSignSame(winDirection.getCol(), player.getVelocity().getCol()))) {
-                isValidWin = false;
-            }
-            if (isValidWin) {
-                mWinner = mCurrentPlayer;
-                player.setPos(winPoint);
-                return;
+    /**
+     * Fill in mWallDistances with a two-pass chamfer distance transform.
+     * For the chessboard (8-connected) metric, one forward pass and one
+     * backward pass over the grid give exact distances. The passes work
+     * on the capped byte values directly, which still gives exact capped
+     * distances (a neighbor at the cap can only give the cap), so no
+     * wider temporary grid is needed.
+     */
+    private void computeWallDistances() {
+        mWallDistances = new byte[mWidth * mHeight];
+        for (int row = 0; row < mHeight; row++) {
+            for (int col = 0; col < mWidth; col++) {
+                int index = row * mWidth + col;
+                if (mGrid[index] == SpaceType.WALL.ordinal()) continue;
+
+                // Start with the distance to the outside of the track,
+                // which also counts as a wall.
+                int distance = Math.min(Math.min(row + 1, mHeight - row), Math.min(col + 1, mWidth - col));
+                if (col > 0) distance = Math.min(distance, getStoredWallDistance(index - 1) + 1);
+                if (row > 0) {
+                    int above = index - mWidth;
+                    distance = Math.min(distance, getStoredWallDistance(above) + 1);
+                    if (col > 0) distance = Math.min(distance, getStoredWallDistance(above - 1) + 1);
+                    if (col < mWidth - 1) distance = Math.min(distance, getStoredWallDistance(above + 1) + 1);
+                }
+                mWallDistances[index] = (byte) Math.min(distance, MAX_WALL_DISTANCE);
             }
         }
 
-
-        player.move();
-    }
-
-    private boolean testPlayerCollision(int playerIndex, GridPoint location) {
-        for (int i = 0; i < mPlayers.size(); i++) {
-            // Don't check the player against itself
-            if (i == playerIndex) continue;
-
-            if (mPlayers.get(i).getPos().equals(location)) {
-                return true;
+        for (int row = mHeight - 1; row >= 0; row--) {
+            for (int col = mWidth - 1; col >= 0; col--) {
+                int index = row * mWidth + col;
+                int distance = getStoredWallDistance(index);
+                if (distance == 0) continue;
+                if (col < mWidth - 1) distance = Math.min(distance, getStoredWallDistance(index + 1) + 1);
+                if (row < mHeight - 1) {
+                    int below = index + mWidth;
+                    distance = Math.min(distance, getStoredWallDistance(below) + 1);
+                    if (col > 0) distance = Math.min(distance, getStoredWallDistance(below - 1) + 1);
+                    if (col < mWidth - 1) distance = Math.min(distance, getStoredWallDistance(below + 1) + 1);
+                }
+                mWallDistances[index] = (byte) Math.min(distance, MAX_WALL_DISTANCE);
             }
         }
-        return false;
     }
 
+    private int getStoredWallDistance(final int index) {
+        return mWallDistances[index] & 0xFF;
+    }
 
     /**
      * Convert a string into a single row, adding it to the bottom of the
@@ -426,39 +743,42 @@ public class Track {
      */
     private void addGridRow(final String rowString, final char border) throws InvalidTrackFormatException {
         int rowLength = rowString.length();
-        List<SpaceType> row = new ArrayList<>(rowLength);
+        int rowStart = mHeight * mWidth;
+        if (rowStart + rowLength > mGrid.length) {
+            // Grow geometrically, so reading a tall track doesn't copy
+            // the whole grid for every row.
+            mGrid = Arrays.copyOf(mGrid, Math.max(rowStart + rowLength, mGrid.length * 2));
+        }
+
         for (int i = 0; i < rowLength; i++) {
             char currentChar = rowString.charAt(i);
-            if (currentChar == border) {
-                row.add(SpaceType.WALL);
-            } else if (currentChar == SpaceType.TRACK.value) {
-                row.add(SpaceType.TRACK);
-            } else if (currentChar == SpaceType.FINISH_LEFT.value) {
-                row.add(SpaceType.FINISH_LEFT);
-            } else if (currentChar == SpaceType.FINISH_RIGHT.value) {
-                row.add(SpaceType.FINISH_RIGHT);
-            } else if (currentChar == SpaceType.FINISH_UP.value) {
-                row.add(SpaceType.FINISH_UP);
-            } else if (currentChar == SpaceType.FINISH_DOWN.value) {
-                row.add(SpaceType.FINISH_DOWN);
-            } else {
+            int ordinal = (currentChar == border) ? SpaceType.WALL.ordinal() : SpaceType.ordinalOf(currentChar);
+            if (ordinal < 0) {
                 // Unexpected character is a player, as long as we don't
                 // have too many players. Since mHeight hasn't yet been
                 // updated, the row is mHeight (not mHeight - 1).
                 mPlayers.add(new Player(mHeight, i));
-                row.add(SpaceType.TRACK);
+                ordinal = SpaceType.TRACK.ordinal();
                 if (mPlayers.size() > MAX_PLAYERS) {
                     throw new InvalidTrackFormatException("Unexpected character in row " + Integer.toString(mHeight) +
                             " and column " + Integer.toString(i) + ": " + Character.toString(currentChar));
                 }
             }
+            mGrid[rowStart + i] = (byte) ordinal;
         }
 
-        mGrid.add(row);
         mHeight++;
     }
 
 
 
-
+    private static final class LayoutCache {
+        private DistanceField mFinishDistances = null;
+        private DistanceField mFinishSteps = null;
+        private ClusterGraph mClusterGraph = null;
+        private JumpTable mJumpTable = null;
+        private ThreadLocal<MoveCache> mMoveCaches = null;
+        private long mLayoutHash;
+        private boolean mHasLayoutHash = false;
+    }
 }
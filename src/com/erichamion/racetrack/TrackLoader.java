@@ -0,0 +1,380 @@
+package com.erichamion.racetrack;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads a Track directly from the raw bytes of a track file, without
+ * going through a Scanner or creating a String for every line. Large files
+ * are memory mapped, and every byte is classified with a single table
+ * lookup straight into the Track's packed grid.
+ *
+ * The format rules are exactly the same as for Track(Scanner), reading
+ * the data as UTF-8. Lines may end with "\n", "\r\n", or "\r". Empty lines
+ * before the track are skipped, and the track ends at the first empty line
+ * after it (or at the end of the data). The first character of the first
+ * line is the border (wall) character, every line must be the same width,
+ * and there must be between 1 and Track.MAX_PLAYERS player characters.
+ * Width is measured in characters, so a multi-byte character occupies a
+ * single space. When the data doesn't follow the rules, the
+ * InvalidTrackFormatException reports the exact byte offset of the
+ * problem.
+ *
+ * Created by me on 10/16/26.
+ */
+public final class TrackLoader {
+    // Files at least this large are memory mapped instead of read into
+    // the heap.
+    private static final long MAPPING_THRESHOLD = 1 << 20;
+    // Starting size of the grid while the first line is read
+    private static final int INITIAL_GRID_CAPACITY = 256;
+
+    // Character classes that aren't SpaceType ordinals
+    private static final byte CLASS_PLAYER = -1;
+    private static final byte CLASS_LINE_END = -2;
+    private static final byte CLASS_MULTIBYTE = -3;
+
+    private static final int REPLACEMENT_CHARACTER = 0xFFFD;
+
+    private TrackLoader() {}
+
+
+
+    /**
+     * Read a Track from a file.
+     * @param file The track file
+     * @return A new Track
+     * @throws java.io.FileNotFoundException If the file can't be opened
+     * @throws IOException If the file can't be read
+     * @throws InvalidTrackFormatException If the file doesn't hold valid
+     * track data
+     */
+    public static Track load(final File file) throws IOException, InvalidTrackFormatException {
+        try (FileInputStream stream = new FileInputStream(file);
+             FileChannel channel = stream.getChannel()) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Track file is too large: " + file);
+            }
+
+            ByteBuffer data;
+            if (size >= MAPPING_THRESHOLD) {
+                data = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            } else {
+                data = ByteBuffer.allocate((int) size);
+                while (data.hasRemaining() && channel.read(data) >= 0) {
+                    // Keep reading until full
+                }
+                data.flip();
+            }
+            return load(data);
+        }
+    }
+
+    /**
+     * Read a Track from an array of bytes.
+     * @param data The track data, encoded as UTF-8
+     * @return A new Track
+     * @throws InvalidTrackFormatException If the data isn't valid track
+     * data
+     */
+    public static Track load(final byte[] data) throws InvalidTrackFormatException {
+        return load(ByteBuffer.wrap(data));
+    }
+
+    /**
+     * Read a Track from a buffer of bytes. The buffer's position and limit
+     * are left unchanged.
+     * @param data The track data, encoded as UTF-8, from the buffer's
+     *             position to its limit. Offsets in errors are counted from
+     *             the position.
+     * @return A new Track
+     * @throws InvalidTrackFormatException If the data isn't valid track
+     * data
+     */
+    public static Track load(final ByteBuffer data) throws InvalidTrackFormatException {
+        return new Parser(data).parse();
+    }
+
+
+
+    private static class Parser {
+        private final ByteBuffer mData;
+        private final int mStart;
+        private final int mLimit;
+        private int mPos;
+
+        // Grows while the first line is read, and then holds as many rows
+        // as the rest of the data could.
+        private byte[] mGrid = new byte[0];
+        private final List<Player> mPlayers = new ArrayList<>();
+        private final byte[] mClasses = new byte[256];
+        private int mBorder;
+        private int mWidth = 0;
+        private int mHeight = 0;
+
+
+        public Parser(final ByteBuffer data) {
+            mData = data;
+            mStart = data.position();
+            mLimit = data.limit();
+            mPos = mStart;
+
+            for (int b = 0; b < mClasses.length; b++) {
+                mClasses[b] = (b < 0x80) ? (byte) Track.SpaceType.ordinalOf(b) : CLASS_MULTIBYTE;
+            }
+            mClasses['\n'] = CLASS_LINE_END;
+            mClasses['\r'] = CLASS_LINE_END;
+        }
+
+        public Track parse() throws InvalidTrackFormatException {
+            while (mPos < mLimit) {
+                if (!parseLine()) break;
+            }
+
+            // Final sanity checks
+            if (mHeight == 0) throw new InvalidTrackFormatException("No track data supplied", mPos - mStart);
+            if (mPlayers.isEmpty()) throw new InvalidTrackFormatException("No player positions", mPos - mStart);
+
+            // The grid is usually exactly the right size already.
+            byte[] grid = (mGrid.length == mWidth * mHeight) ? mGrid : Arrays.copyOf(mGrid, mWidth * mHeight);
+            return new Track(mWidth, mHeight, grid, mPlayers);
+        }
+
+        /**
+         * Read one line, including its line ending, into the grid.
+         * Returns false if the line ends the track.
+         */
+        private boolean parseLine() throws InvalidTrackFormatException {
+            final int rowStart = mHeight * mWidth;
+            int col = 0;
+
+            while (mPos < mLimit) {
+                final int charOffset = mPos;
+                int b = mData.get(mPos) & 0xFF;
+                int spaceClass = mClasses[b];
+
+                if (spaceClass == CLASS_LINE_END) break;
+
+                if (spaceClass == CLASS_MULTIBYTE) {
+                    int codePoint = readCodePoint();
+                    if (isLineSeparator(codePoint)) {
+                        // Scanner also ends lines at these. Leave them to
+                        // be consumed as the line ending.
+                        mPos = charOffset;
+                        break;
+                    }
+                    spaceClass = (codePoint == mBorder) ? Track.SpaceType.WALL.ordinal() : CLASS_PLAYER;
+                } else {
+                    mPos++;
+                }
+
+                if (mHeight == 0 && col == 0) {
+                    // The first character of the track is the border.
+                    startTrack(charOffset);
+                    spaceClass = Track.SpaceType.WALL.ordinal();
+                }
+                if (mHeight > 0 && col == mWidth) {
+                    throw new InvalidTrackFormatException("Track does not have a consistent width",
+                            charOffset - mStart);
+                }
+
+                if (spaceClass == CLASS_PLAYER) {
+                    // Unexpected character is a player, as long as we
+                    // don't have too many players.
+                    mPlayers.add(new Player(mHeight, col));
+                    spaceClass = Track.SpaceType.TRACK.ordinal();
+                    if (mPlayers.size() > Track.MAX_PLAYERS) {
+                        // A line with the wrong width is reported first,
+                        // even if the width problem comes later in the
+                        // line.
+                        checkRestOfLineWidth(col + 1);
+                        throw new InvalidTrackFormatException("Unexpected character in row " +
+                                Integer.toString(mHeight) + " and column " + Integer.toString(col) + ": " +
+                                describeCharacter(charOffset), charOffset - mStart);
+                    }
+                }
+                if (rowStart + col == mGrid.length) growGrid();
+                mGrid[rowStart + col] = (byte) spaceClass;
+                col++;
+            }
+
+            final int lineEndOffset = mPos;
+            skipLineEnding();
+
+            if (col == 0) {
+                // Empty lines are skipped before the track, and end it
+                // after.
+                return mHeight == 0;
+            }
+            if (mHeight == 0) {
+                mWidth = col;
+                sizeGrid();
+            } else if (col != mWidth) {
+                throw new InvalidTrackFormatException("Track does not have a consistent width",
+                        lineEndOffset - mStart);
+            }
+            mHeight++;
+            return true;
+        }
+
+        /**
+         * Make room for more of the first line, or for a line that turns
+         * out to be too short for the track width.
+         */
+        private void growGrid() {
+            // After the first line, one more row is always enough.
+            int capacity = (mHeight == 0) ? Math.max(2 * mGrid.length, INITIAL_GRID_CAPACITY)
+                    : mGrid.length + mWidth;
+            mGrid = Arrays.copyOf(mGrid, capacity);
+        }
+
+        /**
+         * Once the first line has been read, resize the grid to hold as
+         * many rows as the rest of the data has room for. Every row after
+         * the first takes at least a byte per space, and every row but the
+         * last ends with at least one byte, so this only runs short if a
+         * row is too short, which is an error anyway. It is exact for a
+         * file of single-byte characters that holds nothing but the track.
+         */
+        private void sizeGrid() {
+            int moreRows = (mLimit - mPos + 1) / (mWidth + 1);
+            mGrid = Arrays.copyOf(mGrid, mWidth * (1 + moreRows));
+        }
+
+        /**
+         * Throw an exception if the rest of the current line, from the
+         * current position, doesn't bring it to the track width. Doesn't
+         * alter the current position.
+         */
+        private void checkRestOfLineWidth(int col) throws InvalidTrackFormatException {
+            if (mHeight == 0) return;
+            int savedPos = mPos;
+            while (mPos < mLimit) {
+                int offset = mPos;
+                int b = mData.get(mPos) & 0xFF;
+                if (mClasses[b] == CLASS_LINE_END) break;
+                if (mClasses[b] == CLASS_MULTIBYTE) {
+                    if (isLineSeparator(readCodePoint())) {
+                        mPos = offset;
+                        break;
+                    }
+                } else {
+                    mPos++;
+                }
+                if (col == mWidth) {
+                    throw new InvalidTrackFormatException("Track does not have a consistent width", offset - mStart);
+                }
+                col++;
+            }
+            int lineEndOffset = mPos;
+            mPos = savedPos;
+            if (col != mWidth) {
+                throw new InvalidTrackFormatException("Track does not have a consistent width",
+                        lineEndOffset - mStart);
+            }
+        }
+
+        /**
+         * Set up the border character from the character at the given
+         * offset, which is the first character of the track.
+         */
+        private void startTrack(final int offset) {
+            int savedPos = mPos;
+            mPos = offset;
+            int b = mData.get(mPos) & 0xFF;
+            if (b < 0x80) {
+                mBorder = b;
+                mClasses[b] = (byte) Track.SpaceType.WALL.ordinal();
+            } else {
+                mBorder = readCodePoint();
+            }
+            mPos = savedPos;
+        }
+
+        private void skipLineEnding() {
+            if (mPos >= mLimit) return;
+            int b = mData.get(mPos) & 0xFF;
+            if (b == '\r') {
+                mPos++;
+                if (mPos < mLimit && mData.get(mPos) == '\n') mPos++;
+            } else if (b == '\n') {
+                mPos++;
+            } else {
+                // A multi-byte line separator
+                readCodePoint();
+            }
+        }
+
+        /**
+         * Decode the UTF-8 sequence at the current position, advance past
+         * it, and return the code point. If the sequence is malformed,
+         * only its first byte is consumed, and it becomes a replacement
+         * character.
+         */
+        private int readCodePoint() {
+            int lead = mData.get(mPos) & 0xFF;
+            int length;
+            int codePoint;
+            int minimum;
+            if (lead < 0x80) {
+                mPos++;
+                return lead;
+            } else if (lead >= 0xC2 && lead <= 0xDF) {
+                length = 2;
+                codePoint = lead & 0x1F;
+                minimum = 0x80;
+            } else if (lead >= 0xE0 && lead <= 0xEF) {
+                length = 3;
+                codePoint = lead & 0x0F;
+                minimum = 0x800;
+            } else if (lead >= 0xF0 && lead <= 0xF4) {
+                length = 4;
+                codePoint = lead & 0x07;
+                minimum = 0x10000;
+            } else {
+                mPos++;
+                return REPLACEMENT_CHARACTER;
+            }
+
+            if (mPos + length > mLimit) {
+                mPos++;
+                return REPLACEMENT_CHARACTER;
+            }
+            for (int i = 1; i < length; i++) {
+                int continuation = mData.get(mPos + i) & 0xFF;
+                if ((continuation & 0xC0) != 0x80) {
+                    mPos++;
+                    return REPLACEMENT_CHARACTER;
+                }
+                codePoint = (codePoint << 6) | (continuation & 0x3F);
+            }
+            if (codePoint < minimum || codePoint > Character.MAX_CODE_POINT
+                    || (codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE)) {
+                mPos++;
+                return REPLACEMENT_CHARACTER;
+            }
+
+            mPos += length;
+            return codePoint;
+        }
+
+        private String describeCharacter(final int offset) {
+            int savedPos = mPos;
+            mPos = offset;
+            String result = new String(Character.toChars(readCodePoint()));
+            mPos = savedPos;
+            return result;
+        }
+
+        private static boolean isLineSeparator(final int codePoint) {
+            return codePoint == 0x85 || codePoint == 0x2028 || codePoint == 0x2029;
+        }
+    }
+}
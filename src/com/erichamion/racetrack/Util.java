@@ -85,5 +85,20 @@ public class Util {
         return null;
     }
 
-
+    /**
+     * Derive a new random seed from a base seed and an index, so that
+     * related things (games in a batch, players in a game) can each get
+     * their own well-mixed seed that depends only on the base seed and
+     * the index, not on the order in which they are created. Uses the
+     * SplitMix64 finalizer.
+     * @param seed The base seed
+     * @param index The index of the thing that needs a seed
+     * @return A seed for that index
+     */
+    public static long mixSeed(final long seed, final long index) {
+        long result = seed + (index + 1) * 0x9E3779B97F4A7C15L;
+        result = (result ^ (result >>> 30)) * 0xBF58476D1CE4E5B9L;
+        result = (result ^ (result >>> 27)) * 0x94D049BB133111EBL;
+        return result ^ (result >>> 31);
+    }
 }
@@ -0,0 +1,479 @@
+package com.erichamion.racetrack;
+
+import java.util.*;
+
+/**
+ * Plans a complete race for a single player by searching the real game
+ * state (position and velocity) instead of just the grid cells, so the
+ * result accounts for the physics of the game. Uses A* with one turn per
+ * move as the cost. The result is a sequence of accelerations that reaches
+ * a finish line in the fewest possible turns, as long as no other player
+ * gets in the way.
+ *
+ * The heuristic is based on the number of 8-connected steps through open
+ * track from a position to the nearest finish line. A single move with a
+ * speed of S (the larger of the two velocity components) can cover at
+ * most S such steps, and the speed can only grow by 1 per turn, so the
+ * heuristic never overestimates the number of turns remaining. On very
+ * large tracks, the heuristic can be inflated by a weight greater than 1,
+ * which finds a path much faster but only guarantees that the path is
+ * within that factor of the best possible path.
+ *
+ * The number of states grows quickly with the size of the track and the
+ * speeds it allows: a race that needs a full lap of a 150x150 ring takes
+ * seconds to plan optimally, and bigger tracks can run out of memory. An
+ * expansion limit bounds the work and memory of a search, which then
+ * fails instead of finishing. VelocityPlannerPlayer plans within such a
+ * limit.
+ *
+ * Created by me on 10/16/26.
+ */
+public class VelocityPlanner {
+    public static final double OPTIMAL_WEIGHT = 1.0;
+    public static final int NO_EXPANSION_LIMIT = Integer.MAX_VALUE;
+
+    private static final int NO_NODE = -1;
+
+    private static final GridPoint[] ALL_ACCELERATIONS = new GridPoint[9];
+    static {
+        int i = 0;
+        for (int row = -1; row <= 1; row++) {
+            for (int col = -1; col <= 1; col++) {
+                ALL_ACCELERATIONS[i++] = GridPoint.of(row, col);
+            }
+        }
+    }
+
+    private enum MoveResult {
+        CRASH,
+        WIN,
+        MOVE
+    }
+
+    private final Deque<GridPoint> mAccelerations = new LinkedList<>();
+    private final boolean mIsPathFound;
+
+
+
+    /**
+     * Plan the fastest possible race for the specified player, starting
+     * from the player's current position and velocity.
+     * @param track The Track on which to plan
+     * @param playerIndex The zero-based player number
+     */
+    public VelocityPlanner(final Track track, final int playerIndex) {
+        this(track, track.getPlayerPos(playerIndex), track.getPlayerVelocity(playerIndex), OPTIMAL_WEIGHT);
+    }
+
+    /**
+     * Plan a race from an arbitrary position and velocity.
+     * @param track The Track on which to plan
+     * @param position The starting position
+     * @param velocity The starting velocity
+     * @param heuristicWeight The factor by which to inflate the
+     *                        heuristic. Must be at least 1. A value of
+     *                        OPTIMAL_WEIGHT finds the fastest possible
+     *                        race, and larger values trade race length
+     *                        for planning speed.
+     */
+    public VelocityPlanner(final Track track, final GridPoint position, final GridPoint velocity,
+                           final double heuristicWeight) {
+        this(track, position, velocity, heuristicWeight, NO_EXPANSION_LIMIT);
+    }
+
+    /**
+     * Plan a race from an arbitrary position and velocity, giving up
+     * after a fixed amount of work.
+     * @param track The Track on which to plan
+     * @param position The starting position
+     * @param velocity The starting velocity
+     * @param heuristicWeight The factor by which to inflate the
+     *                        heuristic. Must be at least 1.
+     * @param expansionLimit The most states to expand before giving up,
+     *                       or NO_EXPANSION_LIMIT. Memory use grows with
+     *                       the number of states expanded.
+     */
+    public VelocityPlanner(final Track track, final GridPoint position, final GridPoint velocity,
+                           final double heuristicWeight, final int expansionLimit) {
+        if (heuristicWeight < OPTIMAL_WEIGHT) {
+            throw new IllegalArgumentException("Heuristic weight must be at least " + OPTIMAL_WEIGHT);
+        }
+
+        Search search = new Search(track, heuristicWeight, expansionLimit);
+        int goalNode = search.run(position, velocity);
+        mIsPathFound = (goalNode != NO_NODE);
+
+        int currentNode = goalNode;
+        while (currentNode != NO_NODE && search.mPrev[currentNode] != NO_NODE) {
+            mAccelerations.addFirst(ALL_ACCELERATIONS[search.mAccelerationIndex[currentNode]]);
+            currentNode = search.mPrev[currentNode];
+        }
+    }
+
+    /**
+     * Determine whether any way to reach the finish line was found.
+     * @return Returns true if a path to the finish was found, false
+     * otherwise, including if the expansion limit ran out first
+     */
+    public boolean isPathFound() {
+        return mIsPathFound;
+    }
+
+    /**
+     * Return the number of turns remaining in the plan.
+     * @return The number of accelerations that have not yet been
+     * retrieved with getNextAcceleration()
+     */
+    public int getTurnCount() {
+        return mAccelerations.size();
+    }
+
+    /**
+     * Returns the next acceleration in the plan without altering the
+     * plan.
+     * @return The next acceleration, or null if the plan is exhausted
+     */
+    public GridPoint peekNextAcceleration() {
+        return (mAccelerations.isEmpty()) ? null : mAccelerations.peekFirst();
+    }
+
+    /**
+     * Removes and returns the next acceleration in the plan.
+     * @return The next acceleration, or null if the plan is exhausted
+     */
+    public GridPoint getNextAcceleration() {
+        return (mAccelerations.isEmpty()) ? null : mAccelerations.removeFirst();
+    }
+
+    /**
+     * Returns all remaining accelerations in the plan without altering
+     * the plan.
+     * @return A List of accelerations, in the order they should be
+     * applied
+     */
+    public List<GridPoint> getAccelerations() {
+        return new ArrayList<>(mAccelerations);
+    }
+
+
+
+    /**
+     * Determine the outcome of moving from a position with a given
+     * velocity (after acceleration has already been applied). Follows the
+     * same rules as Track: any wall in the path of motion is a crash, and
+     * crossing a finish line wins only if the velocity points in the
+     * direction of the finish line. Other players are ignored.
+     */
+    private static MoveResult testMove(final Track track, final PathCursor cursor, final int row, final int col,
+                                       final int vRow, final int vCol) {
+        boolean hasFinish = false;
+        int winDirectionRow = 0;
+        int winDirectionCol = 0;
+        cursor.reset(row, col, row + vRow, col + vCol);
+        while (cursor.next()) {
+            switch (track.getSpace(cursor.getRow(), cursor.getCol())) {
+                case WALL:
+                    return MoveResult.CRASH;
+                case FINISH_UP:
+                    winDirectionRow = -1;
+                    hasFinish = true;
+                    break;
+                case FINISH_DOWN:
+                    winDirectionRow = 1;
+                    hasFinish = true;
+                    break;
+                case FINISH_LEFT:
+                    winDirectionCol = -1;
+                    hasFinish = true;
+                    break;
+                case FINISH_RIGHT:
+                    winDirectionCol = 1;
+                    hasFinish = true;
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        if (hasFinish
+                && (winDirectionRow == 0 || Util.isSignSame(winDirectionRow, vRow))
+                && (winDirectionCol == 0 || Util.isSignSame(winDirectionCol, vCol))) {
+            return MoveResult.WIN;
+        }
+        return MoveResult.MOVE;
+    }
+
+    /**
+     * Determine whether a move runs into a wall, by the same rules as
+     * Track. Other players are ignored.
+     * @param track The Track the move is made on
+     * @param row The row the move starts on
+     * @param col The column the move starts on
+     * @param velocityRow The row velocity, after acceleration
+     * @param velocityCol The column velocity, after acceleration
+     * @return Returns true if the move crashes into a wall
+     */
+    static boolean isWallCrash(final Track track, final int row, final int col, final int velocityRow,
+                               final int velocityCol) {
+        return testMove(track, new PathCursor(), row, col, velocityRow, velocityCol) == MoveResult.CRASH;
+    }
+
+    /**
+     * Returns a lower bound on the number of turns needed to cover the
+     * given number of steps, starting at the given speed. A state that
+     * isn't a goal always needs at least one more turn.
+     */
+    static int estimateTurns(final int steps, final int speed) {
+        // Find the smallest t such that the distance covered by
+        // accelerating every turn, t * S + t * (t + 1) / 2, is at least
+        // the number of steps.
+        long b = 2L * speed + 1;
+        long turns = (long) Math.ceil((Math.sqrt(b * b + 8.0 * steps) - b) / 2);
+        while (turns > 0 && (turns - 1) * speed + (turns - 1) * turns / 2 >= steps) turns--;
+        while (turns * speed + turns * (turns + 1) / 2 < steps) turns++;
+
+        return (int) Math.max(1, turns);
+    }
+
+
+
+    /**
+     * Holds the state of a single search. Nodes are stored in parallel
+     * primitive arrays and referred to by index, and the open list is a
+     * binary heap of node indices, so expanding a node doesn't allocate
+     * anything except for the occasional array growth.
+     */
+    private static class Search {
+        private static final int INITIAL_CAPACITY = 1024;
+
+        private final Track mTrack;
+        private final double mWeight;
+        private int mExpansionsLeft;
+        private final DistanceField mStepsToFinish;
+        private final PathCursor mPathCursor = new PathCursor();
+
+        // Node storage
+        private int mNodeCount = 0;
+        private int[] mRow = new int[INITIAL_CAPACITY];
+        private int[] mCol = new int[INITIAL_CAPACITY];
+        private int[] mVRow = new int[INITIAL_CAPACITY];
+        private int[] mVCol = new int[INITIAL_CAPACITY];
+        private int[] mTurns = new int[INITIAL_CAPACITY];
+        private int[] mPrev = new int[INITIAL_CAPACITY];
+        private byte[] mAccelerationIndex = new byte[INITIAL_CAPACITY];
+        private double[] mPriority = new double[INITIAL_CAPACITY];
+        private boolean[] mIsGoal = new boolean[INITIAL_CAPACITY];
+
+        // Open list
+        private int mHeapSize = 0;
+        private int[] mHeap = new int[INITIAL_CAPACITY];
+
+        // Best known node for each (position, velocity) state
+        private final StateTable mBestNodes = new StateTable();
+
+
+        public Search(final Track track, final double weight, final int expansionLimit) {
+            mTrack = track;
+            mWeight = weight;
+            mExpansionsLeft = expansionLimit;
+            mStepsToFinish = track.getFinishSteps();
+        }
+
+        public int run(final GridPoint start, final GridPoint startVelocity) {
+            int startNode = addNode(start.getRow(), start.getCol(), startVelocity.getRow(), startVelocity.getCol(),
+                    0, NO_NODE, -1, false);
+            if (startNode == NO_NODE) return NO_NODE;
+            mBestNodes.put(getKey(startNode), startNode);
+            heapPush(startNode);
+
+            while (mHeapSize > 0) {
+                int currentNode = heapPop();
+                if (mIsGoal[currentNode]) return currentNode;
+
+                // A state may be in the open list more than once if a
+                // cheaper way to reach it was found after it was first
+                // added. Only expand the cheapest copy.
+                if (mBestNodes.get(getKey(currentNode)) != currentNode) continue;
+
+                if (mExpansionsLeft != NO_EXPANSION_LIMIT && mExpansionsLeft-- == 0) return NO_NODE;
+                expand(currentNode);
+            }
+
+            return NO_NODE;
+        }
+
+        private void expand(final int node) {
+            final int row = mRow[node];
+            final int col = mCol[node];
+            final int turns = mTurns[node] + 1;
+
+            for (int i = 0; i < ALL_ACCELERATIONS.length; i++) {
+                int vRow = mVRow[node] + ALL_ACCELERATIONS[i].getRow();
+                int vCol = mVCol[node] + ALL_ACCELERATIONS[i].getCol();
+
+                MoveResult result = testMove(mTrack, mPathCursor, row, col, vRow, vCol);
+                if (result == MoveResult.CRASH) continue;
+
+                if (result == MoveResult.WIN) {
+                    heapPush(addNode(row + vRow, col + vCol, vRow, vCol, turns, node, i, true));
+                    continue;
+                }
+
+                long key = getKey(row + vRow, col + vCol, vRow, vCol);
+                int oldNode = mBestNodes.get(key);
+                if (oldNode != NO_NODE && mTurns[oldNode] <= turns) continue;
+
+                int newNode = addNode(row + vRow, col + vCol, vRow, vCol, turns, node, i, false);
+                if (newNode == NO_NODE) continue;
+                mBestNodes.put(key, newNode);
+                heapPush(newNode);
+            }
+        }
+
+        /**
+         * Store a new node. Returns NO_NODE without storing anything if
+         * the node can never reach the finish.
+         */
+        private int addNode(final int row, final int col, final int vRow, final int vCol, final int turns,
+                            final int prev, final int accelerationIndex, final boolean isGoal) {
+            double estimate = 0.0;
+            if (!isGoal) {
+                if (!mStepsToFinish.isReachable(row, col)) return NO_NODE;
+                int steps = (int) mStepsToFinish.getDistance(row, col);
+                estimate = estimateTurns(steps, Math.max(Math.abs(vRow), Math.abs(vCol)));
+            }
+
+            if (mNodeCount == mRow.length) {
+                int newCapacity = mRow.length * 2;
+                mRow = Arrays.copyOf(mRow, newCapacity);
+                mCol = Arrays.copyOf(mCol, newCapacity);
+                mVRow = Arrays.copyOf(mVRow, newCapacity);
+                mVCol = Arrays.copyOf(mVCol, newCapacity);
+                mTurns = Arrays.copyOf(mTurns, newCapacity);
+                mPrev = Arrays.copyOf(mPrev, newCapacity);
+                mAccelerationIndex = Arrays.copyOf(mAccelerationIndex, newCapacity);
+                mPriority = Arrays.copyOf(mPriority, newCapacity);
+                mIsGoal = Arrays.copyOf(mIsGoal, newCapacity);
+            }
+
+            int node = mNodeCount++;
+            mRow[node] = row;
+            mCol[node] = col;
+            mVRow[node] = vRow;
+            mVCol[node] = vCol;
+            mTurns[node] = turns;
+            mPrev[node] = prev;
+            mAccelerationIndex[node] = (byte) accelerationIndex;
+            mPriority[node] = turns + mWeight * estimate;
+            mIsGoal[node] = isGoal;
+            return node;
+        }
+
+        private long getKey(final int node) {
+            return getKey(mRow[node], mCol[node], mVRow[node], mVCol[node]);
+        }
+
+        /**
+         * Packs a position and velocity into a single value that uniquely
+         * identifies the state: 20 bits each for row and column, and 12
+         * bits each for the velocity components.
+         */
+        private static long getKey(final int row, final int col, final int vRow, final int vCol) {
+            return ((long) (row & 0xFFFFF) << 44) | ((long) (col & 0xFFFFF) << 24)
+                    | ((long) (vRow & 0xFFF) << 12) | (long) (vCol & 0xFFF);
+        }
+
+        /**
+         * Orders nodes by estimated total number of turns. Ties go to the
+         * node that has already taken more turns, since it is likely
+         * closer to the finish.
+         */
+        private boolean isBefore(final int node1, final int node2) {
+            if (mPriority[node1] != mPriority[node2]) return mPriority[node1] < mPriority[node2];
+            return mTurns[node1] > mTurns[node2];
+        }
+
+        private void heapPush(final int node) {
+            if (mHeapSize == mHeap.length) {
+                mHeap = Arrays.copyOf(mHeap, mHeap.length * 2);
+            }
+            int index = mHeapSize++;
+            while (index > 0) {
+                int parent = (index - 1) / 2;
+                if (!isBefore(node, mHeap[parent])) break;
+                mHeap[index] = mHeap[parent];
+                index = parent;
+            }
+            mHeap[index] = node;
+        }
+
+        private int heapPop() {
+            int result = mHeap[0];
+            int last = mHeap[--mHeapSize];
+            int index = 0;
+            while (true) {
+                int child = 2 * index + 1;
+                if (child >= mHeapSize) break;
+                if (child + 1 < mHeapSize && isBefore(mHeap[child + 1], mHeap[child])) child++;
+                if (!isBefore(mHeap[child], last)) break;
+                mHeap[index] = mHeap[child];
+                index = child;
+            }
+            mHeap[index] = last;
+            return result;
+        }
+    }
+
+    /**
+     * A minimal open-addressing hash map from packed state keys to node
+     * indices, to avoid boxing every key and value.
+     */
+    private static class StateTable {
+        private long[] mKeys = new long[1024];
+        private int[] mValues = new int[1024];
+        private int mSize = 0;
+
+        public StateTable() {
+            Arrays.fill(mValues, NO_NODE);
+        }
+
+        public int get(final long key) {
+            int mask = mKeys.length - 1;
+            for (int slot = hash(key) & mask; mValues[slot] != NO_NODE; slot = (slot + 1) & mask) {
+                if (mKeys[slot] == key) return mValues[slot];
+            }
+            return NO_NODE;
+        }
+
+        public void put(final long key, final int value) {
+            int mask = mKeys.length - 1;
+            int slot = hash(key) & mask;
+            for (; mValues[slot] != NO_NODE; slot = (slot + 1) & mask) {
+                if (mKeys[slot] == key) {
+                    mValues[slot] = value;
+                    return;
+                }
+            }
+            mKeys[slot] = key;
+            mValues[slot] = value;
+            if (++mSize * 2 > mKeys.length) grow();
+        }
+
+        private void grow() {
+            long[] oldKeys = mKeys;
+            int[] oldValues = mValues;
+            mKeys = new long[oldKeys.length * 2];
+            mValues = new int[oldValues.length * 2];
+            Arrays.fill(mValues, NO_NODE);
+            mSize = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldValues[i] != NO_NODE) put(oldKeys[i], oldValues[i]);
+            }
+        }
+
+        private static int hash(final long key) {
+            long mixed = key * 0x9E3779B97F4A7C15L;
+            return (int) (mixed ^ (mixed >>> 32));
+        }
+    }
+}
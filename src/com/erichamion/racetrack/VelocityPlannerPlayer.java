@@ -0,0 +1,164 @@
+package com.erichamion.racetrack;
+
+/**
+ * A computer player that plans its whole race with a VelocityPlanner,
+ * which searches positions and velocities together, and then plays the
+ * planned accelerations one per turn. The plan accounts for the physics
+ * of the game, so it takes far fewer turns than following waypoints, but
+ * it ignores the other players.
+ *
+ * When the next planned move would end on another player, the player
+ * takes the move that doesn't crash and ends closest to the finish
+ * instead, and plans again from there on its next turn. Each plan has a
+ * fixed expansion limit, so planning takes the same work every time; if
+ * a plan can't be found within the limit, the player follows a
+ * PathFollower for the rest of the game. Tracks big enough that
+ * PathFinder searches them hierarchically are far too big to plan this
+ * way, and the planner would need a DistanceField of the whole track, so
+ * there the player is a PathFollower from the start.
+ * VelocityPlannerPlayers make no random choices.
+ *
+ * Created by me on 10/16/26.
+ */
+public class VelocityPlannerPlayer implements PlayerController {
+    public static final double DEFAULT_HEURISTIC_WEIGHT = 2.0;
+    public static final int DEFAULT_EXPANSION_LIMIT = 200000;
+
+    /**
+     * Creates players that plan with DEFAULT_HEURISTIC_WEIGHT and
+     * DEFAULT_EXPANSION_LIMIT.
+     */
+    public static final PlayerController.Factory FACTORY =
+            createFactory(DEFAULT_HEURISTIC_WEIGHT, DEFAULT_EXPANSION_LIMIT);
+
+    private static final GridPoint[] ALL_ACCELERATIONS = new GridPoint[9];
+    static {
+        int i = 0;
+        for (int row = -1; row <= 1; row++) {
+            for (int col = -1; col <= 1; col++) {
+                ALL_ACCELERATIONS[i++] = GridPoint.of(row, col);
+            }
+        }
+    }
+
+    private final Track mTrack;
+    private final int mPlayerIndex;
+    private final double mHeuristicWeight;
+    private final int mExpansionLimit;
+    // Null until the first move, and after a move that left the plan
+    private VelocityPlanner mPlanner = null;
+    // Set once planning fails
+    private PathFollower mFallback = null;
+
+
+
+    /**
+     * Create a Factory for players that plan with the given settings.
+     * @param heuristicWeight The VelocityPlanner's heuristic weight, at
+     *                        least VelocityPlanner.OPTIMAL_WEIGHT
+     * @param expansionLimit The most states each plan may expand, or
+     *                       VelocityPlanner.NO_EXPANSION_LIMIT
+     * @return A new Factory
+     */
+    public static PlayerController.Factory createFactory(final double heuristicWeight, final int expansionLimit) {
+        return new PlayerController.Factory() {
+            @Override
+            public PlayerController create(final Track track, final int playerIndex, final long seed) {
+                return new VelocityPlannerPlayer(track, playerIndex, heuristicWeight, expansionLimit);
+            }
+        };
+    }
+
+    /**
+     * The race isn't planned until the first call to getMove(), so
+     * creating a player takes almost no time.
+     * @param track The Track the game is played on
+     * @param playerIndex The zero-based player number to control
+     * @param heuristicWeight The VelocityPlanner's heuristic weight, at
+     *                        least VelocityPlanner.OPTIMAL_WEIGHT
+     * @param expansionLimit The most states each plan may expand, or
+     *                       VelocityPlanner.NO_EXPANSION_LIMIT
+     */
+    public VelocityPlannerPlayer(final Track track, final int playerIndex, final double heuristicWeight,
+                                 final int expansionLimit) {
+        if (heuristicWeight < VelocityPlanner.OPTIMAL_WEIGHT) {
+            throw new IllegalArgumentException("Heuristic weight must be at least "
+                    + VelocityPlanner.OPTIMAL_WEIGHT);
+        }
+        mTrack = track;
+        mPlayerIndex = playerIndex;
+        mHeuristicWeight = heuristicWeight;
+        mExpansionLimit = expansionLimit;
+    }
+
+    /**
+     * Return the next planned acceleration, planning first if there is
+     * no plan.
+     * @return A GridPoint containing the row and column acceleration to
+     * apply. The acceleration in each dimension will be in the range
+     * [-1, 1].
+     */
+    @Override
+    public GridPoint getMove() {
+        if (mFallback != null) return mFallback.getMove();
+
+        if (PathFinder.Mode.getDefault(mTrack) == PathFinder.Mode.HIERARCHICAL) {
+            mFallback = new PathFollower(mTrack, new PathFinder(mTrack, mPlayerIndex), mPlayerIndex);
+            return mFallback.getMove();
+        }
+
+        GridPoint position = mTrack.getPlayerPos(mPlayerIndex);
+        GridPoint velocity = mTrack.getPlayerVelocity(mPlayerIndex);
+        if (mPlanner == null) {
+            mPlanner = new VelocityPlanner(mTrack, position, velocity, mHeuristicWeight, mExpansionLimit);
+            if (!mPlanner.isPathFound()) {
+                mFallback = new PathFollower(mTrack, new PathFinder(mTrack, mPlayerIndex), mPlayerIndex);
+                return mFallback.getMove();
+            }
+        }
+
+        GridPoint acceleration = mPlanner.peekNextAcceleration();
+        if (acceleration != null && !isOccupiedAfter(position, velocity, acceleration)) {
+            return mPlanner.getNextAcceleration();
+        }
+
+        // Someone is in the way, so step aside and plan again next turn.
+        mPlanner = null;
+        return getDetour(position, velocity);
+    }
+
+
+
+    private boolean isOccupiedAfter(final GridPoint position, final GridPoint velocity,
+                                    final GridPoint acceleration) {
+        int endRow = position.getRow() + velocity.getRow() + acceleration.getRow();
+        int endCol = position.getCol() + velocity.getCol() + acceleration.getCol();
+        return mTrack.isOccupiedByOtherPlayer(mPlayerIndex, endRow, endCol);
+    }
+
+    /**
+     * Find the acceleration that neither runs into a wall nor ends on
+     * another player, and ends the fewest steps from the finish. If every
+     * move crashes, slow down.
+     */
+    private GridPoint getDetour(final GridPoint position, final GridPoint velocity) {
+        DistanceField stepsToFinish = mTrack.getFinishSteps();
+        GridPoint result = GridPoint.of(-Integer.signum(velocity.getRow()), -Integer.signum(velocity.getCol()));
+        double bestSteps = Double.POSITIVE_INFINITY;
+        for (GridPoint acceleration : ALL_ACCELERATIONS) {
+            int velocityRow = velocity.getRow() + acceleration.getRow();
+            int velocityCol = velocity.getCol() + acceleration.getCol();
+            if (VelocityPlanner.isWallCrash(mTrack, position.getRow(), position.getCol(), velocityRow, velocityCol)
+                    || isOccupiedAfter(position, velocity, acceleration)) {
+                continue;
+            }
+            double steps = stepsToFinish.getDistance(position.getRow() + velocityRow,
+                    position.getCol() + velocityCol);
+            if (steps < bestSteps) {
+                bestSteps = steps;
+                result = acceleration;
+            }
+        }
+        return result;
+    }
+}
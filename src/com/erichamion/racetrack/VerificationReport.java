@@ -0,0 +1,132 @@
+package com.erichamion.racetrack;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Accumulates the results of replaying recorded games and comparing them
+ * against their recordings: how many games and turns were checked, every
+ * divergence found, and any replay data that couldn't be read.
+ *
+ * Created by me on 10/16/26.
+ */
+public final class VerificationReport {
+    private long mGameCount = 0;
+    private long mTurnCount = 0;
+    private long mUnknownTrackCount = 0;
+    private final List<ReplayDivergence> mDivergences = new ArrayList<>();
+    private final List<String> mErrors = new ArrayList<>();
+    private long mElapsedNanos = 0;
+
+
+    /**
+     * Add a game that was replayed.
+     * @param turnCount The number of turns replayed
+     * @param divergence Where the game stopped matching its recording, or
+     *                   null if it matched
+     */
+    void addGame(final int turnCount, final ReplayDivergence divergence) {
+        mGameCount++;
+        mTurnCount += turnCount;
+        if (divergence != null) mDivergences.add(divergence);
+    }
+
+    /**
+     * Add a game that couldn't be replayed, because it was recorded on a
+     * track that wasn't given.
+     */
+    void addUnknownTrack() {
+        mUnknownTrackCount++;
+    }
+
+    /**
+     * Add a problem reading the replay data.
+     * @param message A description of the problem
+     */
+    void addError(final String message) {
+        mErrors.add(message);
+    }
+
+    /**
+     * Add everything from another report. Divergences and errors from the
+     * other report come after this one's.
+     * @param other The report to add
+     */
+    void merge(final VerificationReport other) {
+        mGameCount += other.mGameCount;
+        mTurnCount += other.mTurnCount;
+        mUnknownTrackCount += other.mUnknownTrackCount;
+        mDivergences.addAll(other.mDivergences);
+        mErrors.addAll(other.mErrors);
+    }
+
+    void addElapsedNanos(final long nanos) {
+        mElapsedNanos += nanos;
+    }
+
+    /**
+     * Return the number of games replayed, not counting games on unknown
+     * tracks.
+     * @return The number of games
+     */
+    public long getGameCount() {
+        return mGameCount;
+    }
+
+    public long getTurnCount() {
+        return mTurnCount;
+    }
+
+    public long getUnknownTrackCount() {
+        return mUnknownTrackCount;
+    }
+
+    /**
+     * Return the games that didn't match their recordings, in the order
+     * they were read.
+     * @return The divergences
+     */
+    public List<ReplayDivergence> getDivergences() {
+        return Collections.unmodifiableList(mDivergences);
+    }
+
+    public List<String> getErrors() {
+        return Collections.unmodifiableList(mErrors);
+    }
+
+    /**
+     * Determine whether every game was replayed and matched.
+     * @return Returns true if there were no divergences, unknown tracks,
+     * or errors
+     */
+    public boolean isClean() {
+        return mDivergences.isEmpty() && mUnknownTrackCount == 0 && mErrors.isEmpty();
+    }
+
+    public long getElapsedNanos() {
+        return mElapsedNanos;
+    }
+
+    /**
+     * Return the number of turns replayed per second of elapsed time.
+     * @return Throughput in turns per second (0 if no time was recorded)
+     */
+    public double getTurnsPerSecond() {
+        return (mElapsedNanos == 0) ? 0.0 : mTurnCount * 1e9 / mElapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        result.append(String.format("Games: %d, turns: %d, diverged: %d, unknown track: %d, turns/s: %.0f",
+                mGameCount, mTurnCount, mDivergences.size(), mUnknownTrackCount, getTurnsPerSecond()));
+        for (ReplayDivergence divergence : mDivergences) {
+            result.append(String.format("%n    %s", divergence));
+        }
+        for (String error : mErrors) {
+            result.append(String.format("%n    Error: %s", error));
+        }
+        return result.toString();
+    }
+}